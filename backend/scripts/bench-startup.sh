@@ -0,0 +1,89 @@
+#!/usr/bin/env bash
+# Время старта и память: обычный JAR против сборки fast-startup (Spring AOT + AppCDS + ленивая инициализация).
+# Для каждого режима RUNS запусков: время от запуска JVM до readiness (UP на /actuator/health/readiness),
+# время старта по логу Spring ("Started ... in"), RSS в момент готовности. Печатаются медианы.
+#
+# Нужны собранные JAR (mvn -B package -DskipTests && mvn -B -Pfast-startup package -DskipTests),
+# запущенная БД (make db-up), curl и procfs (Linux).
+#
+#   scripts/bench-startup.sh
+#   RUNS=10 PROFILES=docker EXTRA_ARGS="--spring.datasource.url=jdbc:postgresql://localhost:5432/cte_grouping" \
+#     scripts/bench-startup.sh
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+JAR=${JAR:-$(ls target/*.jar 2>/dev/null | grep -v plain | head -1)}
+FAST_DIR=${FAST_DIR:-target/fast-startup}
+PORT=${PORT:-8091}
+RUNS=${RUNS:-5}
+PROFILES=${PROFILES:-docker}  # совпадает с aot.profiles сборки fast-startup
+JAVA_OPTS=${JAVA_OPTS:-"-Xmx512m"}
+EXTRA_ARGS=${EXTRA_ARGS:-}
+WORK_DIR=$(mktemp -d)
+
+if [[ -z "$JAR" ]]; then
+  echo "JAR not found, run: mvn -B package -DskipTests" >&2
+  exit 1
+fi
+FAST_JAR=$(ls "$FAST_DIR"/*.jar 2>/dev/null | head -1 || true)
+if [[ -z "$FAST_JAR" || ! -f "$FAST_DIR/application.jsa" ]]; then
+  echo "Fast-startup build not found in $FAST_DIR, run: mvn -B -Pfast-startup package -DskipTests" >&2
+  exit 1
+fi
+
+APP_PID=""
+cleanup() {
+  [[ -n "$APP_PID" ]] && kill "$APP_PID" 2>/dev/null && wait "$APP_PID" 2>/dev/null || true
+  rm -rf "$WORK_DIR"
+}
+trap cleanup EXIT
+
+now_ms() { date +%s%3N; }
+rss_kb() { awk '/VmRSS/ {print $2}' "/proc/$1/status"; }
+
+# Один запуск: печатает "время_до_готовности_мс время_старта_spring_мс rss_кб"
+measure() {
+  local mode=$1 log="$WORK_DIR/app-$1.log" started ready
+  local profiles=$PROFILES
+  started=$(now_ms)
+  # shellcheck disable=SC2086
+  if [[ "$mode" == fast ]]; then
+    (cd "$FAST_DIR" && exec java -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true $JAVA_OPTS \
+      -jar "$(basename "$FAST_JAR")" --spring.profiles.active="$profiles,fast-startup" --server.port="$PORT" $EXTRA_ARGS) > "$log" 2>&1 &
+  else
+    java $JAVA_OPTS -jar "$JAR" --spring.profiles.active="$profiles" --server.port="$PORT" $EXTRA_ARGS > "$log" 2>&1 &
+  fi
+  APP_PID=$!
+  for _ in $(seq 1 1200); do
+    if curl -sf "http://localhost:$PORT/actuator/health/readiness" > /dev/null; then
+      ready=$(now_ms)
+      local spring_ms
+      spring_ms=$(grep -oE 'Started [A-Za-z]+ in [0-9.]+ seconds' "$log" | grep -oE '[0-9.]+' | awk '{printf "%d", $1 * 1000}')
+      echo "$((ready - started)) ${spring_ms:-0} $(rss_kb "$APP_PID")"
+      kill "$APP_PID" 2>/dev/null || true
+      wait "$APP_PID" 2>/dev/null || true
+      APP_PID=""
+      return 0
+    fi
+    kill -0 "$APP_PID" 2>/dev/null || break
+    sleep 0.05
+  done
+  echo "Application did not start ($mode), log:" >&2
+  tail -50 "$log" >&2
+  exit 1
+}
+
+median() { sort -n | awk '{ v[NR] = $1 } END { print v[int((NR + 1) / 2)] }'; }
+
+printf "%-8s %5s %12s %12s %9s\n" mode runs ready,ms spring,ms rss,MB
+for mode in default fast; do
+  : > "$WORK_DIR/results-$mode"
+  for _ in $(seq 1 "$RUNS"); do
+    measure "$mode" >> "$WORK_DIR/results-$mode"
+  done
+  ready=$(awk '{print $1}' "$WORK_DIR/results-$mode" | median)
+  spring=$(awk '{print $2}' "$WORK_DIR/results-$mode" | median)
+  rss=$(awk '{print int($3 / 1024)}' "$WORK_DIR/results-$mode" | median)
+  printf "%-8s %5d %12d %12d %9d\n" "$mode" "$RUNS" "$ready" "$spring" "$rss"
+done
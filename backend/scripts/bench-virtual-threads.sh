@@ -0,0 +1,112 @@
+#!/usr/bin/env bash
+# Сравнение режимов обработки запросов: платформенные потоки (пул Tomcat) и виртуальные потоки.
+# Для каждого режима и уровня параллелизма: пропускная способность, задержки, ошибки,
+# пиковые RSS и число потоков JVM, прирост RSS на одно одновременное соединение.
+#
+# Нужны собранный JAR (mvn package), запущенная БД (make db-up), curl и procfs (Linux).
+#
+#   scripts/bench-virtual-threads.sh
+#   CONCURRENCY="50 200 1000" REQUESTS=5000 BENCH_PATH="/api/grouping/{taskId}/results?size=20" \
+#     EXTRA_ARGS="--spring.datasource.hikari.maximum-pool-size=50" scripts/bench-virtual-threads.sh
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+JAR=${JAR:-$(ls target/*.jar 2>/dev/null | grep -v plain | head -1)}
+PORT=${PORT:-8090}
+CONCURRENCY=${CONCURRENCY:-"50 200 800"}
+REQUESTS=${REQUESTS:-4000}
+BENCH_PATH=${BENCH_PATH:-"/api/grouping/tasks?size=50"}
+JAVA_OPTS=${JAVA_OPTS:-"-Xmx512m"}
+EXTRA_ARGS=${EXTRA_ARGS:-}
+WORK_DIR=$(mktemp -d)
+
+if [[ -z "$JAR" ]]; then
+  echo "JAR not found, run: mvn -B package -DskipTests" >&2
+  exit 1
+fi
+
+APP_PID=""
+cleanup() {
+  [[ -n "$APP_PID" ]] && kill "$APP_PID" 2>/dev/null && wait "$APP_PID" 2>/dev/null || true
+  rm -rf "$WORK_DIR"
+}
+trap cleanup EXIT
+
+rss_kb() { awk '/VmRSS/ {print $2}' "/proc/$1/status"; }
+threads() { ls "/proc/$1/task" | wc -l; }
+
+start_app() {
+  local virtual=$1
+  # shellcheck disable=SC2086
+  java $JAVA_OPTS -jar "$JAR" --server.port="$PORT" --spring.threads.virtual.enabled="$virtual" \
+    --logging.level.root=WARN --logging.level.ru.tenderhack=WARN --logging.level.org.hibernate.SQL=WARN \
+    $EXTRA_ARGS > "$WORK_DIR/app-$virtual.log" 2>&1 &
+  APP_PID=$!
+  for _ in $(seq 1 240); do
+    if curl -sf "http://localhost:$PORT/actuator/health" > /dev/null; then
+      return 0
+    fi
+    kill -0 "$APP_PID" 2>/dev/null || break
+    sleep 0.5
+  done
+  echo "Application did not start, log: " >&2
+  tail -50 "$WORK_DIR/app-$virtual.log" >&2
+  exit 1
+}
+
+stop_app() {
+  kill "$APP_PID" 2>/dev/null || true
+  wait "$APP_PID" 2>/dev/null || true
+  APP_PID=""
+}
+
+# Пиковые RSS и число потоков, пока идет нагрузка
+sample_peaks() {
+  local pid=$1 out=$2 peak_rss=0 peak_threads=0 rss t
+  while [[ -f "$WORK_DIR/running" ]]; do
+    rss=$(rss_kb "$pid"); t=$(threads "$pid")
+    (( rss > peak_rss )) && peak_rss=$rss
+    (( t > peak_threads )) && peak_threads=$t
+    sleep 0.1
+  done
+  echo "$peak_rss $peak_threads" > "$out"
+}
+
+run_level() {
+  local mode=$1 concurrency=$2 url="http://localhost:$PORT$BENCH_PATH"
+  local idle_rss; idle_rss=$(rss_kb "$APP_PID")
+  touch "$WORK_DIR/running"
+  sample_peaks "$APP_PID" "$WORK_DIR/peaks" &
+  local sampler=$!
+  local started; started=$(date +%s.%N)
+  seq "$REQUESTS" | xargs -P "$concurrency" -I{} \
+    curl -s -o /dev/null --max-time 60 -w '%{http_code} %{time_total}\n' "$url" > "$WORK_DIR/results" || true
+  local finished; finished=$(date +%s.%N)
+  rm -f "$WORK_DIR/running"
+  wait "$sampler"
+  read -r peak_rss peak_threads < "$WORK_DIR/peaks"
+
+  sort -k2 -n "$WORK_DIR/results" | awk -v mode="$mode" -v c="$concurrency" -v started="$started" \
+      -v finished="$finished" -v idle="$idle_rss" -v peak="$peak_rss" -v threads="$peak_threads" '
+    { n++; if ($1 != 200) errors++; lat[n] = $2 * 1000 }
+    END {
+      p50 = lat[int((n + 1) * 0.5)]; p99 = lat[int(n * 0.99 + 0.999)]
+      printf "%-9s %6d %8.0f %8.1f %8.1f %7d %9.0f %8d %10.1f\n", mode, c, n / (finished - started),
+        p50, p99, errors, peak / 1024, threads, (peak - idle) / c
+    }'
+}
+
+printf "%-9s %6s %8s %8s %8s %7s %9s %8s %10s\n" \
+  mode conc req/s p50,ms p99,ms errors rss,MB threads KB/conn
+for virtual in false true; do
+  mode=$([[ "$virtual" == true ]] && echo virtual || echo platform)
+  start_app "$virtual"
+  # Прогрев JIT и пулов
+  seq 500 | xargs -P 20 -I{} curl -s -o /dev/null "http://localhost:$PORT$BENCH_PATH" || true
+  for concurrency in $CONCURRENCY; do
+    run_level "$mode" "$concurrency"
+  done
+  grep -h "Virtual thread pinned" "$WORK_DIR/app-$virtual.log" | sort | uniq -c || true
+  stop_app
+done
@@ -0,0 +1,40 @@
+-- Планы отбора товаров по запросу группировки (RawProductRepository.streamIdsByQuery / streamIdsByQueries).
+-- Generic plan, как у подготовленного оператора JDBC после нескольких выполнений: параметры не подставляются
+-- константами. Ожидается BitmapOr из Bitmap Index Scan по idx_raw_products_search_vector и
+-- idx_raw_products_model_trgm (условие % ANY по массиву токенов, по одному проходу индекса на токен).
+--
+--   docker-compose -f docker-compose.dev.yml exec -T postgres psql -U postgres -d cte_grouping \
+--     -v query='шины sks-5 ind80' -v tokens='sks-5 ind80' < scripts/explain-product-query.sql
+
+\if :{?query}
+\else
+\set query 'шины sks-5 ind80'
+\endif
+\if :{?tokens}
+\else
+\set tokens 'sks-5 ind80'
+\endif
+
+SET plan_cache_mode = force_generic_plan;
+
+PREPARE product_ids(text, text) AS
+SELECT p.id FROM raw_products p
+WHERE p.search_vector @@ websearch_to_tsquery('russian', $1)
+   OR lower(p.model) % ANY (string_to_array($2, ' '));
+
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE product_ids(:'query', :'tokens');
+
+PREPARE batch_product_ids(text[], text[]) AS
+SELECT CAST(q.idx - 1 AS INTEGER) AS query_index, m.id AS product_id
+FROM unnest($1, $2) WITH ORDINALITY AS q(query, model_tokens, idx)
+CROSS JOIN LATERAL (
+    SELECT p.id FROM raw_products p
+    WHERE p.search_vector @@ websearch_to_tsquery('russian', q.query)
+       OR lower(p.model) % ANY (string_to_array(q.model_tokens, ' '))
+) m;
+
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE batch_product_ids(ARRAY[:'query', :'query'], ARRAY[:'tokens', split_part(:'tokens', ' ', 1)]);
+
+DEALLOCATE product_ids;
+DEALLOCATE batch_product_ids;
+RESET plan_cache_mode;
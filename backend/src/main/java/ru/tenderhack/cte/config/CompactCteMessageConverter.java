@@ -0,0 +1,55 @@
+package ru.tenderhack.cte.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import ru.tenderhack.cte.dto.CteDetail;
+import ru.tenderhack.cte.dto.PagedCteResponse;
+import ru.tenderhack.cte.mapper.CompactCteMapper;
+
+import java.io.IOException;
+
+/**
+ * Конвертер ответов результатов и деталей СТЕ в компактный формат application/vnd.cte.compact+json.
+ * Выбирается по заголовку Accept; без него клиенты получают обычный JSON.
+ */
+public class CompactCteMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.cte.compact+json";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    private final ObjectMapper objectMapper;
+    private final CompactCteMapper compactCteMapper;
+
+    public CompactCteMessageConverter(ObjectMapper objectMapper, CompactCteMapper compactCteMapper) {
+        super(MEDIA_TYPE);
+        this.objectMapper = objectMapper;
+        this.compactCteMapper = compactCteMapper;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return PagedCteResponse.class == clazz || CteDetail.class == clazz;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Compact format is response-only", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object body, HttpOutputMessage outputMessage) throws IOException {
+        Object compact = body instanceof PagedCteResponse page
+                ? compactCteMapper.toCompact(page)
+                : compactCteMapper.toCompact((CteDetail) body);
+        objectMapper.writeValue(outputMessage.getBody(), compact);
+    }
+}
@@ -0,0 +1,18 @@
+package ru.tenderhack.cte.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class GroupingConfig {
+
+    /**
+     * Пул для параллельной обработки партиций группировки (work stealing между партициями)
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool groupingPool(GroupingProperties groupingProperties) {
+        return new ForkJoinPool(groupingProperties.parallelism());
+    }
+}
@@ -0,0 +1,63 @@
+package ru.tenderhack.cte.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Конфигурация движка группировки
+ */
+@ConfigurationProperties(prefix = "grouping")
+public record GroupingProperties(
+        Integer parallelism,
+        Integer maxPartitionSize,
+        Integer saveBatchSize,
+        String snapshotDir,
+        Integer retainedVersions,
+        Double attributeLlmConfidence,
+        Integer attributeLlmMaxCategories,
+        Integer previewSize,
+        DataSize memoryBudget,
+        String spillDir,
+        Integer maxConcurrentRuns,
+        Boolean snapshotWarmup
+) {
+
+    public GroupingProperties {
+        if (parallelism == null || parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        if (maxPartitionSize == null || maxPartitionSize <= 0) {
+            maxPartitionSize = 20_000;
+        }
+        if (saveBatchSize == null || saveBatchSize <= 0) {
+            saveBatchSize = 500;
+        }
+        if (snapshotDir == null || snapshotDir.isBlank()) {
+            snapshotDir = System.getProperty("java.io.tmpdir") + "/cte-snapshots";
+        }
+        if (retainedVersions == null || retainedVersions < 0) {
+            retainedVersions = 2;
+        }
+        if (attributeLlmConfidence == null || attributeLlmConfidence < 0) {
+            attributeLlmConfidence = 0.5;
+        }
+        if (attributeLlmMaxCategories == null || attributeLlmMaxCategories < 0) {
+            attributeLlmMaxCategories = 20;
+        }
+        if (previewSize == null || previewSize < 0) {
+            previewSize = 5_000;
+        }
+        if (memoryBudget == null || memoryBudget.toBytes() <= 0) {
+            memoryBudget = DataSize.ofMegabytes(256);
+        }
+        if (spillDir == null || spillDir.isBlank()) {
+            spillDir = System.getProperty("java.io.tmpdir") + "/cte-spill";
+        }
+        if (maxConcurrentRuns == null || maxConcurrentRuns <= 0) {
+            maxConcurrentRuns = 8;
+        }
+        if (snapshotWarmup == null) {
+            snapshotWarmup = false;
+        }
+    }
+}
@@ -2,13 +2,64 @@ package ru.tenderhack.cte.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+import java.util.List;
+
 /**
  * Конфигурация для LLM клиента
+ *
+ * @param endpoints           пул бэкендов LLM; если не задан - единственный бэкенд url
+ * @param contextWindow       размер контекста модели (num_ctx), в токенах
+ * @param tokenBudget         бюджет промпта при упаковке нескольких решений в один запрос, в токенах
+ * @param maxAttempts         сколько раз решение отправляется повторно, если ответ на него невалиден
+ * @param readTimeout         таймаут ответа одного бэкенда
+ * @param hedgeAfter          через сколько без ответа дублировать запрос на другой бэкенд (0 - не дублировать)
+ * @param healthCheckInterval период активной проверки бэкендов
+ * @param failureThreshold    число ошибок подряд, после которого бэкенд исключается (circuit breaker)
+ * @param openDuration        на сколько исключается бэкенд, прежде чем получить пробный запрос
  */
 @ConfigurationProperties(prefix = "llm")
 public record LlmConfigProperties(
         String url,
-        String model
+        String model,
+        List<String> endpoints,
+        Integer contextWindow,
+        Integer tokenBudget,
+        Integer maxAttempts,
+        Duration readTimeout,
+        Duration hedgeAfter,
+        Duration healthCheckInterval,
+        Integer failureThreshold,
+        Duration openDuration
 ) {
-}
 
+    public LlmConfigProperties {
+        if (endpoints == null || endpoints.isEmpty()) {
+            endpoints = url == null ? List.of() : List.of(url);
+        }
+        if (contextWindow == null || contextWindow <= 0) {
+            contextWindow = 8192;
+        }
+        if (tokenBudget == null || tokenBudget <= 0) {
+            tokenBudget = 3000;
+        }
+        if (maxAttempts == null || maxAttempts <= 0) {
+            maxAttempts = 3;
+        }
+        if (readTimeout == null || readTimeout.isZero() || readTimeout.isNegative()) {
+            readTimeout = Duration.ofMinutes(2);
+        }
+        if (hedgeAfter == null || hedgeAfter.isNegative()) {
+            hedgeAfter = Duration.ZERO;
+        }
+        if (healthCheckInterval == null || healthCheckInterval.isZero() || healthCheckInterval.isNegative()) {
+            healthCheckInterval = Duration.ofSeconds(10);
+        }
+        if (failureThreshold == null || failureThreshold <= 0) {
+            failureThreshold = 3;
+        }
+        if (openDuration == null || openDuration.isNegative()) {
+            openDuration = Duration.ofSeconds(30);
+        }
+    }
+}
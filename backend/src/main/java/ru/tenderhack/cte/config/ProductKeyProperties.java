@@ -0,0 +1,24 @@
+package ru.tenderhack.cte.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Дозаполнение канонических ключей товаров (model_key, manufacturer_id)
+ */
+@ConfigurationProperties(prefix = "product-keys")
+public record ProductKeyProperties(
+        Duration backfillInterval,
+        Integer backfillBatchSize
+) {
+
+    public ProductKeyProperties {
+        if (backfillInterval == null || backfillInterval.isNegative() || backfillInterval.isZero()) {
+            backfillInterval = Duration.ofMinutes(10);
+        }
+        if (backfillBatchSize == null || backfillBatchSize <= 0) {
+            backfillBatchSize = 5000;
+        }
+    }
+}
@@ -1,24 +1,37 @@
 package ru.tenderhack.cte.config;
 
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
-import org.springframework.web.client.RestClient;
+import org.springframework.core.env.Environment;
 
+import java.net.http.HttpClient;
 import java.time.Duration;
+import java.util.concurrent.Executors;
 
 @Configuration
 public class RestClientConfig {
 
+    /**
+     * Клиент запросов к LLM: асинхронная отправка позволяет прервать HTTP-обмен при отмене запроса.
+     * Таймаут ответа задается на каждый запрос (llm.read-timeout).
+     */
     @Bean
-    public RestClient restClient() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(Duration.ofSeconds(30));
-        factory.setReadTimeout(Duration.ofMinutes(5)); // LLM может долго отвечать
+    public HttpClient llmHttpClient(Environment environment) {
+        return httpClient(Duration.ofSeconds(5), Threading.VIRTUAL.isActive(environment));
+    }
 
-        return RestClient.builder()
-                .requestFactory(factory)
-                .build();
+    /**
+     * HTTP-клиент JDK: блокирующий вызов на виртуальном потоке не занимает поток-носитель.
+     * В режиме виртуальных потоков на них же выполняются и внутренние задачи клиента.
+     */
+    public static HttpClient httpClient(Duration connectTimeout, boolean virtualThreads) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout);
+        if (virtualThreads) {
+            builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+        return builder.build();
     }
 }
-
@@ -0,0 +1,32 @@
+package ru.tenderhack.cte.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Политика хранения задач группировки и секций cte_entities
+ */
+@ConfigurationProperties(prefix = "retention")
+public record RetentionProperties(
+        Duration unapprovedTtl,
+        String cleanupCron,
+        Integer partitionsAhead,
+        Integer batchSize
+) {
+
+    public RetentionProperties {
+        if (unapprovedTtl == null || unapprovedTtl.isNegative() || unapprovedTtl.isZero()) {
+            unapprovedTtl = Duration.ofDays(30);
+        }
+        if (cleanupCron == null || cleanupCron.isBlank()) {
+            cleanupCron = "0 30 3 * * *";
+        }
+        if (partitionsAhead == null || partitionsAhead < 0) {
+            partitionsAhead = 2;
+        }
+        if (batchSize == null || batchSize <= 0) {
+            batchSize = 500;
+        }
+    }
+}
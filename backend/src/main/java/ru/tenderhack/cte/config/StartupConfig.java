@@ -0,0 +1,44 @@
+package ru.tenderhack.cte.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Настройка ленивой инициализации (spring.main.lazy-initialization, профиль fast-startup).
+ * Бины создаются при первом обращении, поэтому springdoc, пул группировки, экспорт и клиент LLM
+ * не замедляют старт. Бины с @Scheduled остаются eager: ленивый бин не был бы зарегистрирован в планировщике.
+ * <p>
+ * В сборке Spring AOT условия автоконфигурации вычислены при сборке для aot.profiles, поэтому
+ * spring.flyway.enabled=false профиля cds-training не убирает Flyway; миграцию выключает стратегия ниже.
+ */
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter scheduledBeansExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> beanType != null && hasScheduledMethods(beanType);
+    }
+
+    @Bean
+    FlywayMigrationStrategy flywayMigrationStrategy(Environment environment) {
+        return flyway -> {
+            if (environment.getProperty("spring.flyway.enabled", Boolean.class, true)) {
+                flyway.migrate();
+            }
+        };
+    }
+
+    private static boolean hasScheduledMethods(Class<?> beanType) {
+        boolean[] found = {false};
+        ReflectionUtils.doWithMethods(beanType,
+                method -> found[0] = true,
+                method -> !found[0] && AnnotatedElementUtils.hasAnnotation(method, Scheduled.class));
+        return found[0];
+    }
+}
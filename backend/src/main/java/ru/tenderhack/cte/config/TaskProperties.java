@@ -0,0 +1,28 @@
+package ru.tenderhack.cte.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Конфигурация учета задач группировки: кэш метаданных и счетчики по статусам
+ */
+@ConfigurationProperties(prefix = "tasks")
+public record TaskProperties(
+        Duration statusCountsResync,
+        Duration metadataCacheTtl,
+        Integer metadataCacheSize
+) {
+
+    public TaskProperties {
+        if (statusCountsResync == null || statusCountsResync.isNegative() || statusCountsResync.isZero()) {
+            statusCountsResync = Duration.ofMinutes(5);
+        }
+        if (metadataCacheTtl == null || metadataCacheTtl.isNegative()) {
+            metadataCacheTtl = Duration.ofSeconds(30);
+        }
+        if (metadataCacheSize == null || metadataCacheSize < 0) {
+            metadataCacheSize = 10_000;
+        }
+    }
+}
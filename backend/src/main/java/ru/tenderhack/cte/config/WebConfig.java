@@ -1,15 +1,25 @@
 package ru.tenderhack.cte.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.tenderhack.cte.mapper.CompactCteMapper;
+
+import java.util.List;
 
 /**
  * Конфигурация веб-слоя
  */
 @Configuration
+@RequiredArgsConstructor
 public class WebConfig implements WebMvcConfigurer {
 
+    private final ObjectMapper objectMapper;
+    private final CompactCteMapper compactCteMapper;
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/api/**")
@@ -18,5 +28,10 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedHeaders("*")
                 .allowCredentials(true);
     }
-}
 
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Добавляется в конец: при Accept: */* или application/json остается обычный JSON
+        converters.add(new CompactCteMessageConverter(objectMapper, compactCteMapper));
+    }
+}
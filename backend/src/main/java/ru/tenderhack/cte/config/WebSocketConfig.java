@@ -1,6 +1,11 @@
 package ru.tenderhack.cte.config;
 
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
@@ -8,8 +13,11 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final Environment environment;
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         // Точка подключения (Handshake)
@@ -26,6 +34,26 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
         // Префикс для сообщений, которые клиент отправляет на сервер (нам пока не нужно, но стандарт)
         registry.setApplicationDestinationPrefixes("/app");
+
+        // Без пула потоков сообщения одной сессии могут обогнать друг друга (прогресс задачи)
+        if (Threading.VIRTUAL.isActive(environment)) {
+            registry.setPreservePublishOrder(true);
+        }
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-inbound-"));
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Отправка в медленный сокет блокирует только виртуальный поток
+        if (Threading.VIRTUAL.isActive(environment)) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-outbound-"));
+        }
     }
 }
 
@@ -3,9 +3,14 @@ package ru.tenderhack.cte.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.tenderhack.cte.dto.*;
+import ru.tenderhack.cte.entity.Status;
 import ru.tenderhack.cte.facade.GroupingFacade;
 
 import java.util.List;
@@ -35,6 +40,20 @@ public class GroupingController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * 15) Пакет запросов на группировку: задача на каждый запрос, отбор товаров общий для пакета,
+     * группировки идут параллельно. Прогресс каждого запроса - в топике его задачи /topic/tasks/{taskId}/status.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchTaskResponse> createGroupingBatch(
+            @Valid @RequestBody BatchGroupingRequest request
+    ) {
+        log.info("POST /api/grouping/batch - {} queries", request.requests().size());
+        BatchTaskResponse response = groupingFacade.createGroupingBatch(
+                request.requests().stream().map(GroupingRequest::query).toList());
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * 2) Получение результатов группировки (Карточек)
      */
@@ -106,5 +125,110 @@ public class GroupingController {
         groupingFacade.rateGrouping(taskId, request.rating());
         return ResponseEntity.ok().build();
     }
-}
 
+    /**
+     * 8) Получение сохраненных версий результатов группировки
+     */
+    @GetMapping("/{taskId}/versions")
+    public ResponseEntity<List<ResultVersion>> getResultVersions(
+            @PathVariable UUID taskId
+    ) {
+        log.info("GET /api/grouping/{}/versions", taskId);
+        return ResponseEntity.ok(groupingFacade.getResultVersions(taskId));
+    }
+
+    /**
+     * 9) Откат группировки к сохраненной версии
+     */
+    @PostMapping("/{taskId}/rollback")
+    public ResponseEntity<Void> rollbackGrouping(
+            @PathVariable UUID taskId,
+            @Valid @RequestBody RollbackRequest request
+    ) {
+        log.info("POST /api/grouping/{}/rollback - version: {}", taskId, request.version());
+        groupingFacade.rollbackGrouping(taskId, request.version());
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * 11) Объединение СТЕ: товары sourceIds переходят в targetId, исходные СТЕ удаляются.
+     * Изменения также отправляются в топик /topic/tasks/{taskId}/changes.
+     */
+    @PostMapping("/{taskId}/cte/merge")
+    public ResponseEntity<CteChange> mergeCtes(
+            @PathVariable UUID taskId,
+            @Valid @RequestBody MergeCteRequest request
+    ) {
+        log.info("POST /api/grouping/{}/cte/merge - target: {}, sources: {}",
+                taskId, request.targetId(), request.sourceIds());
+        return ResponseEntity.ok(groupingFacade.mergeCtes(taskId, request.targetId(), request.sourceIds()));
+    }
+
+    /**
+     * 12) Разделение СТЕ: перечисленные товары выделяются в новую СТЕ
+     */
+    @PostMapping("/{taskId}/cte/{cteId}/split")
+    public ResponseEntity<CteChange> splitCte(
+            @PathVariable UUID taskId,
+            @PathVariable UUID cteId,
+            @Valid @RequestBody SplitCteRequest request
+    ) {
+        log.info("POST /api/grouping/{}/cte/{}/split - products: {}", taskId, cteId, request.productIds().size());
+        return ResponseEntity.ok(groupingFacade.splitCte(taskId, cteId, request.productIds()));
+    }
+
+    /**
+     * 13) Перенос товаров между СТЕ; опустевшая СТЕ удаляется
+     */
+    @PostMapping("/{taskId}/cte/move")
+    public ResponseEntity<CteChange> moveProducts(
+            @PathVariable UUID taskId,
+            @Valid @RequestBody MoveProductsRequest request
+    ) {
+        log.info("POST /api/grouping/{}/cte/move - from: {}, to: {}, products: {}",
+                taskId, request.fromId(), request.toId(), request.productIds().size());
+        return ResponseEntity.ok(groupingFacade.moveProducts(taskId, request.fromId(), request.toId(),
+                request.productIds()));
+    }
+
+    /**
+     * 14) Список задач группировки с keyset-пагинацией и счетчиками по статусам.
+     * Смены статусов всех задач отправляются в общий топик /topic/tasks/status.
+     */
+    @GetMapping("/tasks")
+    public ResponseEntity<TaskPage> listTasks(
+            @RequestParam(required = false) List<Status> status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        log.info("GET /api/grouping/tasks - status: {}, cursor: {}, size: {}", status, cursor, size);
+        return ResponseEntity.ok(groupingFacade.listTasks(status, cursor, size));
+    }
+
+    /**
+     * 10) Потоковая выгрузка подтвержденной группировки (NDJSON/CSV, опционально gzip).
+     * Записи идут в порядке id СТЕ; прерванную выгрузку можно продолжить параметром after.
+     */
+    @GetMapping("/{taskId}/export")
+    public ResponseEntity<StreamingResponseBody> exportGrouping(
+            @PathVariable UUID taskId,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) UUID after
+    ) {
+        log.info("GET /api/grouping/{}/export - format: {}, gzip: {}, after: {}", taskId, format, gzip, after);
+        CteExport export = groupingFacade.prepareExport(taskId, ExportFormat.fromString(format), gzip, after);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(export.format().mediaType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("grouping-" + taskId + "." + export.format().extension())
+                        .build()
+                        .toString());
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        StreamingResponseBody body = out -> groupingFacade.writeExport(export, out);
+        return response.body(body);
+    }
+}
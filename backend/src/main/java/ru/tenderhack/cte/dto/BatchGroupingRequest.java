@@ -0,0 +1,17 @@
+package ru.tenderhack.cte.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Пакет запросов на группировку (например, по запросу на категорию)
+ */
+public record BatchGroupingRequest(
+        @NotEmpty(message = "Requests cannot be empty")
+        @Size(max = 100, message = "Batch cannot contain more than 100 requests")
+        List<@Valid GroupingRequest> requests
+) {
+}
@@ -0,0 +1,11 @@
+package ru.tenderhack.cte.dto;
+
+import java.util.List;
+
+/**
+ * Задачи группировки пакета в порядке запросов
+ */
+public record BatchTaskResponse(
+        List<TaskResponse> tasks
+) {
+}
@@ -0,0 +1,17 @@
+package ru.tenderhack.cte.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Детальная информация о СТЕ в компактном представлении (характеристики - индексы в таблице строк)
+ */
+public record CompactCteDetail(
+        List<String> strings,
+        UUID id,
+        String imageUrl,
+        int[] importantAttributes,
+        int[] secondaryAttributes,
+        List<Long> productIds
+) {
+}
@@ -0,0 +1,15 @@
+package ru.tenderhack.cte.dto;
+
+import java.util.UUID;
+
+/**
+ * Краткая информация о СТЕ в компактном представлении
+ *
+ * @param attributes индексы в таблице строк страницы: [имя, значение, имя, значение, ...]
+ */
+public record CompactCteSummary(
+        UUID id,
+        String imageUrl,
+        int[] attributes
+) {
+}
@@ -0,0 +1,18 @@
+package ru.tenderhack.cte.dto;
+
+import java.util.List;
+
+/**
+ * Компактное представление страницы СТЕ: имена и значения характеристик вынесены в общую таблицу строк,
+ * характеристики каждой СТЕ - плоский массив индексов [имя, значение, имя, значение, ...]
+ */
+public record CompactPagedCteResponse(
+        List<String> strings,
+        List<CompactCteSummary> content,
+        int totalPages,
+        long totalElements,
+        int size,
+        int number,
+        boolean preview
+) {
+}
@@ -0,0 +1,30 @@
+package ru.tenderhack.cte.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Результат правки СТЕ: измененные и удаленные карточки.
+ * Отправляется также в топик /topic/tasks/{taskId}/changes.
+ *
+ * @param version опубликованная правкой версия результатов; СТЕ в ней получают новые идентификаторы,
+ *                правки принимают и идентификаторы предыдущих версий
+ * @param updated затронутые правкой СТЕ новой версии (измененные и созданные)
+ * @param removed прежние идентификаторы затронутых СТЕ: карточки с ними заменены updated или удалены
+ */
+public record CteChange(
+        UUID taskId,
+        Operation operation,
+        int version,
+        List<CteSummary> updated,
+        List<UUID> removed,
+        Instant timestamp
+) {
+
+    public enum Operation {
+        MERGE,
+        SPLIT,
+        MOVE
+    }
+}
@@ -0,0 +1,17 @@
+package ru.tenderhack.cte.dto;
+
+import java.util.UUID;
+
+/**
+ * Параметры выгрузки результатов группировки, проверенные до начала записи ответа
+ *
+ * @param afterId id последней уже полученной СТЕ (для продолжения прерванной выгрузки) или null
+ */
+public record CteExport(
+        UUID taskId,
+        int version,
+        ExportFormat format,
+        boolean gzip,
+        UUID afterId
+) {
+}
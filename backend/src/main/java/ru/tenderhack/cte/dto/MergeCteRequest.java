@@ -0,0 +1,18 @@
+package ru.tenderhack.cte.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Запрос на объединение СТЕ: товары sourceIds переходят в targetId, исходные СТЕ удаляются
+ */
+public record MergeCteRequest(
+        @NotNull(message = "Target CTE is required")
+        UUID targetId,
+        @NotEmpty(message = "Source CTEs are required")
+        List<UUID> sourceIds
+) {
+}
@@ -0,0 +1,20 @@
+package ru.tenderhack.cte.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Запрос на перенос товаров из одной СТЕ в другую
+ */
+public record MoveProductsRequest(
+        @NotNull(message = "Source CTE is required")
+        UUID fromId,
+        @NotNull(message = "Target CTE is required")
+        UUID toId,
+        @NotEmpty(message = "Product IDs are required")
+        List<Long> productIds
+) {
+}
@@ -4,13 +4,16 @@ import java.util.List;
 
 /**
  * Пагинированный ответ со списком СТЕ
+ *
+ * @param preview true - результат предварительный (по выборке товаров), полная группировка еще идет
  */
 public record PagedCteResponse(
         List<CteSummary> content,
         int totalPages,
         long totalElements,
         int size,
-        int number
+        int number,
+        boolean preview
 ) {
 }
 
@@ -0,0 +1,11 @@
+package ru.tenderhack.cte.dto;
+
+/**
+ * Сохраненная версия результата группировки
+ */
+public record ResultVersion(
+        int version,
+        long cteCount,
+        boolean current
+) {
+}
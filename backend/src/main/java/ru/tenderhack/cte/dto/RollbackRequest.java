@@ -0,0 +1,14 @@
+package ru.tenderhack.cte.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Запрос на откат группировки к сохраненной версии
+ */
+public record RollbackRequest(
+        @NotNull(message = "Version is required")
+        @Min(value = 1, message = "Version must be at least 1")
+        Integer version
+) {
+}
@@ -0,0 +1,14 @@
+package ru.tenderhack.cte.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+/**
+ * Запрос на разделение СТЕ: перечисленные товары выделяются в новую СТЕ
+ */
+public record SplitCteRequest(
+        @NotEmpty(message = "Product IDs are required")
+        List<Long> productIds
+) {
+}
@@ -0,0 +1,19 @@
+package ru.tenderhack.cte.dto;
+
+import ru.tenderhack.cte.entity.Status;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Страница списка задач (новые сначала)
+ *
+ * @param nextCursor курсор следующей страницы, null - страница последняя
+ * @param statusCounts количество задач в каждом статусе
+ */
+public record TaskPage(
+        List<TaskSummary> content,
+        String nextCursor,
+        Map<Status, Long> statusCounts
+) {
+}
@@ -0,0 +1,21 @@
+package ru.tenderhack.cte.dto;
+
+import ru.tenderhack.cte.entity.Status;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Смена статуса задачи; отправляется в общий топик /topic/tasks/status вместе с новыми счетчиками по статусам
+ *
+ * @param previous прежний статус, null - задача создана
+ */
+public record TaskStatusChange(
+        UUID taskId,
+        Status previous,
+        Status status,
+        Map<Status, Long> statusCounts,
+        Instant timestamp
+) {
+}
@@ -0,0 +1,21 @@
+package ru.tenderhack.cte.dto;
+
+import ru.tenderhack.cte.entity.Status;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Краткая информация о задаче группировки для списка задач
+ */
+public record TaskSummary(
+        UUID taskId,
+        String query,
+        Status status,
+        Integer rating,
+        Integer currentVersion,
+        boolean reused,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt
+) {
+}
@@ -5,6 +5,7 @@ import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.Type;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -25,6 +26,19 @@ public class CteEntity {
     @Column(name = "task_id", nullable = false)
     private UUID taskId;
 
+    /**
+     * Версия результата группировки задачи; строки версии после публикации не меняются
+     */
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer version = 1;
+
+    /**
+     * Время создания задачи - ключ секционирования: все СТЕ задачи лежат в секции месяца ее создания
+     */
+    @Column(name = "task_created_at", nullable = false, updatable = false)
+    private LocalDateTime taskCreatedAt;
+
     @Column(name = "image_url")
     private String imageUrl;
 
@@ -35,6 +35,35 @@ public class GroupingTaskEntity {
     @Column
     private Integer rating;
 
+    @Column(name = "normalized_query", columnDefinition = "TEXT")
+    private String normalizedQuery;
+
+    @Column(name = "products_version")
+    private Long productsVersion;
+
+    /**
+     * Задача, результаты которой переиспользуются этой задачей (null - результаты свои)
+     */
+    @Column(name = "source_task_id")
+    private UUID sourceTaskId;
+
+    /**
+     * Опубликованная версия результатов (null - результатов еще нет).
+     * Версии меняются только атомарными UPDATE в репозитории, сохранение сущности их не перезаписывает.
+     */
+    @Column(name = "current_version", insertable = false, updatable = false)
+    private Integer currentVersion;
+
+    @Column(name = "latest_version", nullable = false, insertable = false, updatable = false)
+    @Builder.Default
+    private Integer latestVersion = 0;
+
+    /**
+     * Версия, построенная по выборке товаров; пока она опубликована, результаты предварительные
+     */
+    @Column(name = "preview_version", insertable = false, updatable = false)
+    private Integer previewVersion;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,15 @@
+package ru.tenderhack.cte.exception;
+
+/**
+ * Нет доступных бэкендов LLM: вызывающая сторона переходит на эвристики
+ */
+public class LlmUnavailableException extends RuntimeException {
+
+    public LlmUnavailableException(String message) {
+        super(message);
+    }
+
+    public LlmUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
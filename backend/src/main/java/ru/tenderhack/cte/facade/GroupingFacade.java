@@ -1,7 +1,10 @@
 package ru.tenderhack.cte.facade;
 
 import ru.tenderhack.cte.dto.*;
+import ru.tenderhack.cte.entity.Status;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -16,6 +19,19 @@ public interface GroupingFacade {
      */
     TaskResponse createGroupingTask(String query);
 
+    /**
+     * Создает задачи группировки для пакета запросов с общим отбором товаров
+     */
+    BatchTaskResponse createGroupingBatch(List<String> queries);
+
+    /**
+     * Получает страницу списка задач (новые сначала) и счетчики задач по статусам
+     *
+     * @param statuses статусы задач, пустой список - все
+     * @param cursor курсор из предыдущей страницы, null - первая страница
+     */
+    TaskPage listTasks(List<Status> statuses, String cursor, int size);
+
     /**
      * Получает результаты группировки с пагинацией и фильтрацией
      */
@@ -41,6 +57,41 @@ public interface GroupingFacade {
      */
     void rateGrouping(UUID taskId, int rating);
 
+    /**
+     * Получает сохраненные версии результатов группировки
+     */
+    List<ResultVersion> getResultVersions(UUID taskId);
+
+    /**
+     * Откатывает группировку к сохраненной версии
+     */
+    void rollbackGrouping(UUID taskId, int version);
+
+    /**
+     * Проверяет, что группировка подтверждена, и готовит параметры выгрузки её опубликованной версии
+     */
+    CteExport prepareExport(UUID taskId, ExportFormat format, boolean gzip, UUID afterCteId);
+
+    /**
+     * Потоково выгружает СТЕ группировки
+     */
+    void writeExport(CteExport export, OutputStream out) throws IOException;
+
+    /**
+     * Объединяет СТЕ группировки: товары sourceIds переходят в targetId
+     */
+    CteChange mergeCtes(UUID taskId, UUID targetId, List<UUID> sourceIds);
+
+    /**
+     * Выделяет товары СТЕ в новую СТЕ
+     */
+    CteChange splitCte(UUID taskId, UUID cteId, List<Long> productIds);
+
+    /**
+     * Переносит товары между СТЕ группировки
+     */
+    CteChange moveProducts(UUID taskId, UUID fromId, UUID toId, List<Long> productIds);
+
     /**
      * Получает детальную информацию о СТЕ
      */
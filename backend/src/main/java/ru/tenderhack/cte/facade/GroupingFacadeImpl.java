@@ -0,0 +1,404 @@
+package ru.tenderhack.cte.facade;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import ru.tenderhack.cte.dto.*;
+import ru.tenderhack.cte.entity.AttributeJson;
+import ru.tenderhack.cte.entity.CteEntity;
+import ru.tenderhack.cte.entity.GroupingTaskEntity;
+import ru.tenderhack.cte.entity.Status;
+import ru.tenderhack.cte.exception.ConflictException;
+import ru.tenderhack.cte.exception.ResourceNotFoundException;
+import ru.tenderhack.cte.mapper.CteMapper;
+import ru.tenderhack.cte.normalize.AttributeNormalizer;
+import ru.tenderhack.cte.repository.AttributeFacetView;
+import ru.tenderhack.cte.repository.CteRepository;
+import ru.tenderhack.cte.repository.GroupingTaskRepository;
+import ru.tenderhack.cte.service.CteAssembler;
+import ru.tenderhack.cte.service.CteEditService;
+import ru.tenderhack.cte.service.CteExportService;
+import ru.tenderhack.cte.service.GroupingResultCache;
+import ru.tenderhack.cte.service.GroupingService;
+import ru.tenderhack.cte.service.NotificationService;
+import ru.tenderhack.cte.service.ResultCopyService;
+import ru.tenderhack.cte.service.ResultVersionService;
+import ru.tenderhack.cte.service.TaskMetadata;
+import ru.tenderhack.cte.service.TaskMetadataCache;
+import ru.tenderhack.cte.service.TaskStatusTracker;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+/**
+ * Имплементация фасада группировки.
+ * Задачи и СТЕ хранятся в БД, группировка выполняется в фоне движком группировки.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GroupingFacadeImpl implements GroupingFacade {
+
+    private static final int MAX_FILTER_VALUES = 50;
+    private static final int MAX_TASK_PAGE_SIZE = 100;
+
+    private final GroupingTaskRepository taskRepository;
+    private final CteRepository cteRepository;
+    private final CteMapper cteMapper;
+    private final GroupingService groupingService;
+    private final GroupingResultCache resultCache;
+    private final ResultVersionService versionService;
+    private final ResultCopyService resultCopyService;
+    private final CteExportService exportService;
+    private final CteEditService editService;
+    private final NotificationService notificationService;
+    private final TaskStatusTracker statusTracker;
+    private final TaskMetadataCache metadataCache;
+    private final ObjectMapper objectMapper;
+    private final AttributeNormalizer attributeNormalizer;
+
+    @Override
+    public TaskResponse createGroupingTask(String query) {
+        log.info("Creating grouping task with query: {}", query);
+
+        // Ищем готовую группировку эквивалентного запроса на той же версии товаров
+        GroupingResultCache.CacheKey cacheKey = resultCache.keyFor(query);
+        Optional<UUID> sourceTaskId = resultCache.findReusableTask(cacheKey);
+
+        // Создаём реальную задачу в БД
+        GroupingTaskEntity task = saveTask(query, cacheKey, sourceTaskId.orElse(null),
+                sourceTaskId.isPresent() ? Status.COMPLETED : Status.PENDING);
+
+        if (sourceTaskId.isPresent()) {
+            log.info("Task {} reuses grouping results of task {}", task.getId(), sourceTaskId.get());
+            groupingService.completeFromCache(task.getId(), sourceTaskId.get());
+            return new TaskResponse(task.getId());
+        }
+
+        groupingService.startGroupingTask(task.getId(), query);
+
+        log.info("Created task with ID: {}", task.getId());
+        return new TaskResponse(task.getId());
+    }
+
+    @Override
+    public BatchTaskResponse createGroupingBatch(List<String> queries) {
+        log.info("Creating grouping batch with {} queries", queries.size());
+
+        List<TaskResponse> tasks = new ArrayList<>(queries.size());
+        // Нормализованный запрос -> основная задача пакета; одинаковые запросы группируются один раз
+        Map<String, UUID> primaryTasks = new HashMap<>();
+        Map<UUID, GroupingService.BatchRun> runs = new LinkedHashMap<>();
+        for (String query : queries) {
+            GroupingResultCache.CacheKey cacheKey = resultCache.keyFor(query);
+            Optional<UUID> sourceTaskId = resultCache.findReusableTask(cacheKey);
+            if (sourceTaskId.isPresent()) {
+                GroupingTaskEntity task = saveTask(query, cacheKey, sourceTaskId.get(), Status.COMPLETED);
+                groupingService.completeFromCache(task.getId(), sourceTaskId.get());
+                tasks.add(new TaskResponse(task.getId()));
+                continue;
+            }
+
+            UUID primaryTaskId = primaryTasks.get(cacheKey.normalizedQuery());
+            GroupingTaskEntity task = saveTask(query, cacheKey, primaryTaskId, Status.PENDING);
+            if (primaryTaskId != null) {
+                runs.get(primaryTaskId).duplicateTaskIds().add(task.getId());
+            } else {
+                primaryTasks.put(cacheKey.normalizedQuery(), task.getId());
+                runs.put(task.getId(), new GroupingService.BatchRun(task.getId(), query, new ArrayList<>()));
+            }
+            tasks.add(new TaskResponse(task.getId()));
+        }
+
+        if (!runs.isEmpty()) {
+            groupingService.startGroupingBatch(List.copyOf(runs.values()));
+        }
+        log.info("Created batch of {} tasks, {} groupings to run", tasks.size(), runs.size());
+        return new BatchTaskResponse(tasks);
+    }
+
+    @Override
+    public TaskPage listTasks(List<Status> statuses, String cursor, int size) {
+        log.info("Listing tasks with statuses: {}, cursor: {}, size: {}", statuses, cursor, size);
+
+        int limit = Math.clamp(size, 1, MAX_TASK_PAGE_SIZE);
+        List<String> statusNames = (statuses == null || statuses.isEmpty() ? List.of(Status.values()) : statuses)
+                .stream().map(Status::name).toList();
+        // Запрашиваем на одну задачу больше, чтобы узнать, есть ли следующая страница
+        List<GroupingTaskEntity> tasks;
+        if (cursor == null || cursor.isBlank()) {
+            tasks = taskRepository.findPage(statusNames, limit + 1);
+        } else {
+            TaskCursor after = TaskCursor.decode(cursor);
+            tasks = taskRepository.findPageAfter(statusNames, after.createdAt(), after.id(), limit + 1);
+        }
+
+        String nextCursor = null;
+        if (tasks.size() > limit) {
+            tasks = tasks.subList(0, limit);
+            GroupingTaskEntity last = tasks.get(limit - 1);
+            nextCursor = new TaskCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new TaskPage(
+                tasks.stream().map(this::toTaskSummary).toList(),
+                nextCursor,
+                statusTracker.counts()
+        );
+    }
+
+    @Override
+    public PagedCteResponse getGroupingResults(UUID taskId, int page, int size, Map<String, String> filters) {
+        log.info("Getting grouping results for task: {}, page: {}, size: {}, filters: {}",
+                taskId, page, size, filters);
+
+        // Читаем опубликованную версию: перегруппировка пишет следующую версию, не трогая эту
+        TaskMetadata resultTask = resultCache.resolveResultTask(taskId);
+        if (resultTask.currentVersion() == null) {
+            return new PagedCteResponse(List.of(), 0, 0, size, page, false);
+        }
+        Page<CteEntity> ctes = cteRepository.findByTaskIdAndImportantAttributes(
+                resultTask.id(), resultTask.currentVersion(), toFilterJson(filters), PageRequest.of(page, size));
+
+        return new PagedCteResponse(
+                ctes.getContent().stream().map(cteMapper::toSummary).toList(),
+                ctes.getTotalPages(),
+                ctes.getTotalElements(),
+                size,
+                page,
+                resultTask.isPreview()
+        );
+    }
+
+    @Override
+    public List<FilterOption> getGroupingFilters(UUID taskId) {
+        log.info("Getting filters for task: {}", taskId);
+
+        TaskMetadata resultTask = resultCache.resolveResultTask(taskId);
+        if (resultTask.currentVersion() == null) {
+            return List.of();
+        }
+        Map<String, List<String>> valuesByName = new LinkedHashMap<>();
+        for (AttributeFacetView facet : cteRepository.findImportantAttributeFacets(
+                resultTask.id(), resultTask.currentVersion())) {
+            List<String> values = valuesByName.computeIfAbsent(facet.getName(), k -> new ArrayList<>());
+            if (values.size() < MAX_FILTER_VALUES) {
+                values.add(facet.getValue());
+            }
+        }
+
+        // Характеристика с единственным значением не помогает фильтровать
+        return valuesByName.entrySet().stream()
+                .filter(entry -> entry.getValue().size() > 1)
+                .map(entry -> new FilterOption(entry.getKey(), entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    @Override
+    public TaskResponse regenerateGrouping(UUID taskId, String query) {
+        log.info("Regenerating grouping for task: {} with query: {}", taskId, query);
+
+        // Copy-on-write и новый запрос одной транзакцией; задача в очереди или в работе - 409
+        GroupingResultCache.CacheKey cacheKey = resultCache.keyFor(query);
+        Status previous = resultCopyService.prepareRegeneration(taskId, query, cacheKey);
+        resultCache.evict(taskId);
+        metadataCache.evict(taskId);
+        statusTracker.changed(taskId, previous, Status.PENDING);
+
+        groupingService.startGroupingTask(taskId, query);
+
+        return new TaskResponse(taskId);
+    }
+
+    @Override
+    public void approveGrouping(UUID taskId) {
+        log.info("Approving grouping for task: {}", taskId);
+
+        if (statusTracker.transition(taskId, Status.APPROVED, Status.COMPLETED)) {
+            return;
+        }
+        // Переход не выполнен: задачи нет, она уже подтверждена или еще не завершена
+        metadataCache.evict(taskId);
+        Status status = metadataCache.get(taskId).status();
+        if (status != Status.APPROVED) {
+            throw new ConflictException("Grouping is not completed: " + taskId + " (" + status + ")");
+        }
+    }
+
+    @Override
+    public void rateGrouping(UUID taskId, int rating) {
+        log.info("Rating grouping for task: {} with rating: {}", taskId, rating);
+
+        if (taskRepository.updateRating(taskId, rating) == 0) {
+            throw new ResourceNotFoundException("Task not found: " + taskId);
+        }
+        metadataCache.update(taskId, task -> task.withRating(rating));
+    }
+
+    @Override
+    public List<ResultVersion> getResultVersions(UUID taskId) {
+        log.info("Getting result versions for task: {}", taskId);
+
+        return versionService.listVersions(resultCache.resolveResultTask(taskId));
+    }
+
+    @Override
+    public void rollbackGrouping(UUID taskId, int version) {
+        log.info("Rolling back grouping for task: {} to version: {}", taskId, version);
+
+        resultCopyService.rollback(taskId, version);
+        metadataCache.evict(taskId);
+    }
+
+    @Override
+    public CteExport prepareExport(UUID taskId, ExportFormat format, boolean gzip, UUID afterCteId) {
+        log.info("Preparing {} export for task: {}, after: {}", format, taskId, afterCteId);
+
+        if (metadataCache.get(taskId).status() != Status.APPROVED) {
+            throw new ConflictException("Grouping is not approved: " + taskId);
+        }
+        TaskMetadata resultTask = resultCache.resolveResultTask(taskId);
+        if (resultTask.currentVersion() == null) {
+            throw new ConflictException("Grouping has no results: " + taskId);
+        }
+        return new CteExport(resultTask.id(), resultTask.currentVersion(), format, gzip, afterCteId);
+    }
+
+    @Override
+    public void writeExport(CteExport export, OutputStream out) throws IOException {
+        exportService.write(export, out);
+    }
+
+    @Override
+    public CteChange mergeCtes(UUID taskId, UUID targetId, List<UUID> sourceIds) {
+        log.info("Merging CTEs {} into {} for task: {}", sourceIds, targetId, taskId);
+
+        UnaryOperator<UUID> ids = prepareEdit(taskId);
+        CteChange change = editService.merge(taskId, ids.apply(targetId), sourceIds.stream().map(ids).toList());
+        notificationService.notifyCteChange(change);
+        return change;
+    }
+
+    @Override
+    public CteChange splitCte(UUID taskId, UUID cteId, List<Long> productIds) {
+        log.info("Splitting {} products out of CTE {} for task: {}", productIds.size(), cteId, taskId);
+
+        UnaryOperator<UUID> ids = prepareEdit(taskId);
+        CteChange change = editService.split(taskId, ids.apply(cteId), productIds);
+        notificationService.notifyCteChange(change);
+        return change;
+    }
+
+    @Override
+    public CteChange moveProducts(UUID taskId, UUID fromId, UUID toId, List<Long> productIds) {
+        log.info("Moving {} products from CTE {} to {} for task: {}", productIds.size(), fromId, toId, taskId);
+
+        UnaryOperator<UUID> ids = prepareEdit(taskId);
+        CteChange change = editService.move(taskId, ids.apply(fromId), ids.apply(toId), productIds);
+        notificationService.notifyCteChange(change);
+        return change;
+    }
+
+    @Override
+    public CteDetail getCteDetails(UUID cteId) {
+        log.info("Getting CTE details for: {}", cteId);
+
+        return cteRepository.findById(cteId)
+                .map(cteMapper::toDetail)
+                .orElseThrow(() -> new ResourceNotFoundException("CTE not found: " + cteId));
+    }
+
+    // ============ Вспомогательные методы ============
+
+    /**
+     * Copy-on-write перед правкой, см. {@link ResultCopyService#prepareEdit}
+     *
+     * @return преобразование идентификаторов СТЕ, полученных клиентом, в идентификаторы правимой версии
+     */
+    private UnaryOperator<UUID> prepareEdit(UUID taskId) {
+        UnaryOperator<UUID> ids = resultCopyService.prepareEdit(taskId);
+        resultCache.evict(taskId);
+        metadataCache.evict(taskId);
+        return ids;
+    }
+
+    private GroupingTaskEntity saveTask(String query, GroupingResultCache.CacheKey cacheKey, UUID sourceTaskId,
+                                        Status status) {
+        GroupingTaskEntity task = taskRepository.save(GroupingTaskEntity.builder()
+                .query(query)
+                .normalizedQuery(cacheKey.normalizedQuery())
+                .productsVersion(cacheKey.productsVersion())
+                .sourceTaskId(sourceTaskId)
+                .status(status)
+                .build());
+        statusTracker.created(task.getId(), task.getStatus());
+        return task;
+    }
+
+    private String toFilterJson(Map<String, String> filters) {
+        if (filters == null || filters.isEmpty()) {
+            return "[]";
+        }
+        List<AttributeJson> attributes = filters.entrySet().stream()
+                .map(filter -> toFilterAttribute(filter.getKey(), filter.getValue()))
+                .toList();
+        try {
+            return objectMapper.writeValueAsString(attributes);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid filters: " + filters, e);
+        }
+    }
+
+    /**
+     * Фильтр приводится к тому же виду, что и характеристики снапшота, иначе "500 ГР" не найдет "0.5 кг".
+     * Производитель, модель и категория хранятся как есть, для них нормализуется только название.
+     */
+    private AttributeJson toFilterAttribute(String name, String value) {
+        String normalizedName = attributeNormalizer.normalizeName(name);
+        if (CteAssembler.MANUFACTURER.equals(normalizedName) || CteAssembler.MODEL.equals(normalizedName)
+                || CteAssembler.CATEGORY.equals(normalizedName)) {
+            return new AttributeJson(normalizedName, value);
+        }
+        return new AttributeJson(normalizedName, attributeNormalizer.normalizeValue(value));
+    }
+
+    private TaskSummary toTaskSummary(GroupingTaskEntity task) {
+        return new TaskSummary(
+                task.getId(),
+                task.getQuery(),
+                task.getStatus(),
+                task.getRating(),
+                task.getCurrentVersion(),
+                task.getSourceTaskId() != null,
+                task.getCreatedAt(),
+                task.getUpdatedAt()
+        );
+    }
+
+    /**
+     * Позиция в списке задач: (created_at, id) последней задачи страницы, для клиента - непрозрачная строка
+     */
+    private record TaskCursor(LocalDateTime createdAt, UUID id) {
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static TaskCursor decode(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                return new TaskCursor(LocalDateTime.parse(parts[0]), UUID.fromString(parts[1]));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+    }
+}
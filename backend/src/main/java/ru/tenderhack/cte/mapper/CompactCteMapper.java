@@ -0,0 +1,71 @@
+package ru.tenderhack.cte.mapper;
+
+import org.springframework.stereotype.Component;
+import ru.tenderhack.cte.dto.*;
+
+import java.util.*;
+
+/**
+ * Маппер в компактное представление с таблицей строк: повторяющиеся имена и значения характеристик
+ * передаются один раз на ответ
+ */
+@Component
+public class CompactCteMapper {
+
+    public CompactPagedCteResponse toCompact(PagedCteResponse response) {
+        StringTable strings = new StringTable();
+        List<CompactCteSummary> content = new ArrayList<>(response.content().size());
+        for (CteSummary cte : response.content()) {
+            content.add(new CompactCteSummary(cte.id(), cte.imageUrl(), strings.encode(cte.attributes())));
+        }
+        return new CompactPagedCteResponse(
+                strings.values(),
+                content,
+                response.totalPages(),
+                response.totalElements(),
+                response.size(),
+                response.number(),
+                response.preview()
+        );
+    }
+
+    public CompactCteDetail toCompact(CteDetail detail) {
+        StringTable strings = new StringTable();
+        int[] important = strings.encode(detail.importantAttributes());
+        int[] secondary = strings.encode(detail.secondaryAttributes());
+        return new CompactCteDetail(
+                strings.values(),
+                detail.id(),
+                detail.imageUrl(),
+                important,
+                secondary,
+                detail.productIds()
+        );
+    }
+
+    private static final class StringTable {
+
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int[] encode(List<Attribute> attributes) {
+            int[] encoded = new int[attributes.size() * 2];
+            for (int i = 0; i < attributes.size(); i++) {
+                encoded[2 * i] = index(attributes.get(i).name());
+                encoded[2 * i + 1] = index(attributes.get(i).value());
+            }
+            return encoded;
+        }
+
+        private int index(String value) {
+            return indexes.computeIfAbsent(value, key -> {
+                values.add(key);
+                return values.size() - 1;
+            });
+        }
+
+        List<String> values() {
+            return values;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package ru.tenderhack.cte.normalize;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Автомат Ахо-Корасик, скомпилированный в полную таблицу переходов (DFA): один переход на символ текста
+ * без обхода суффиксных ссылок. Сравнение без учета регистра. Для каждой позиции текста сообщается
+ * самый длинный образец, оканчивающийся в ней.
+ */
+final class AhoCorasick {
+
+    private static final int NO_MATCH = -1;
+
+    // Символ -> индекс в алфавите (0 - символ не встречается в образцах)
+    private final char[] alphabet;
+    private final int alphabetSize;
+    private final int[] transitions;
+    private final int[] matchId;
+    private final int[] matchLength;
+
+    private AhoCorasick(char[] alphabet, int alphabetSize, int[] transitions, int[] matchId, int[] matchLength) {
+        this.alphabet = alphabet;
+        this.alphabetSize = alphabetSize;
+        this.transitions = transitions;
+        this.matchId = matchId;
+        this.matchLength = matchLength;
+    }
+
+    /**
+     * Обработчик совпадения: образец id длины length оканчивается в позиции end (включительно)
+     */
+    @FunctionalInterface
+    interface MatchConsumer {
+        void accept(int end, int length, int id);
+    }
+
+    void scan(CharSequence text, MatchConsumer consumer) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * alphabetSize + alphabet[Character.toLowerCase(text.charAt(i))]];
+            if (matchId[state] != NO_MATCH) {
+                consumer.accept(i, matchLength[state], matchId[state]);
+            }
+        }
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    static final class Builder {
+
+        private final List<Map<Character, Integer>> trie = new ArrayList<>();
+        private final List<int[]> outputs = new ArrayList<>();
+
+        private Builder() {
+            newState();
+        }
+
+        /**
+         * Добавляет образец; при повторе побеждает первый
+         */
+        Builder add(String pattern, int id) {
+            if (pattern.isEmpty()) {
+                throw new IllegalArgumentException("Empty pattern");
+            }
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = Character.toLowerCase(pattern.charAt(i));
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = newState();
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            if (outputs.get(state)[0] == NO_MATCH) {
+                outputs.set(state, new int[]{id, pattern.length()});
+            }
+            return this;
+        }
+
+        AhoCorasick build() {
+            char[] alphabet = new char[Character.MAX_VALUE + 1];
+            int alphabetSize = 1;
+            for (Map<Character, Integer> edges : trie) {
+                for (char c : edges.keySet()) {
+                    if (alphabet[c] == 0) {
+                        alphabet[c] = (char) alphabetSize++;
+                    }
+                }
+            }
+
+            int states = trie.size();
+            int[] transitions = new int[states * alphabetSize];
+            int[] fail = new int[states];
+            int[] matchId = new int[states];
+            int[] matchLength = new int[states];
+            Arrays.fill(matchId, NO_MATCH);
+
+            // Обход в ширину: переходы состояния строятся после переходов его суффиксной ссылки
+            int[] queue = new int[states];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = 0;
+            while (head < tail) {
+                int state = queue[head++];
+                int[] output = outputs.get(state);
+                if (output[0] != NO_MATCH) {
+                    matchId[state] = output[0];
+                    matchLength[state] = output[1];
+                } else if (state != 0 && matchId[fail[state]] != NO_MATCH) {
+                    // Самый длинный образец, оканчивающийся здесь, - суффикс текущего пути
+                    matchId[state] = matchId[fail[state]];
+                    matchLength[state] = matchLength[fail[state]];
+                }
+                Map<Character, Integer> edges = trie.get(state);
+                for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                    transitions[state * alphabetSize + symbol] = state == 0 ? 0 : transitions[fail[state] * alphabetSize + symbol];
+                }
+                for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                    int child = edge.getValue();
+                    int symbol = alphabet[edge.getKey()];
+                    fail[child] = state == 0 ? 0 : transitions[fail[state] * alphabetSize + symbol];
+                    transitions[state * alphabetSize + symbol] = child;
+                    queue[tail++] = child;
+                }
+            }
+            return new AhoCorasick(alphabet, alphabetSize, transitions, matchId, matchLength);
+        }
+
+        private int newState() {
+            trie.add(new HashMap<>());
+            outputs.add(new int[]{NO_MATCH, 0});
+            return trie.size() - 1;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package ru.tenderhack.cte.normalize;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Нормализация названий и значений характеристик по словарям из classpath:normalization/.
+ * <ul>
+ *     <li>пробелы по краям и повторные пробелы убираются, первая строчная буква кириллицы - заглавная;</li>
+ *     <li>"число единица" приводится к канонической единице ("1.5 см" - "15 мм"), написания единиц
+ *     ищутся одним проходом автомата Ахо-Корасик;</li>
+ *     <li>значение, целиком состоящее из десятичного числа, канонизируется: "16.50000" и "16,5" - "16.5".
+ *     Числа внутри текста без единицы не трогаются: "Bluetooth 5.10" и "01.10" - версии, даты и коды;</li>
+ *     <li>значения и названия из словарей синонимов заменяются каноническими ("Зимние" - "Зимняя").</li>
+ * </ul>
+ * Нормализация идемпотентна: нормализованное значение не меняется при повторной нормализации.
+ */
+@Component
+public class AttributeNormalizer {
+
+    private static final String DICTIONARY_DIR = "normalization/";
+    private static final String UNITS = "units.txt";
+    private static final String VALUE_SYNONYMS = "value-synonyms.txt";
+    private static final String NAME_SYNONYMS = "attribute-names.txt";
+    /**
+     * Версия правил нормализации, входит в отпечаток вместе со словарями
+     */
+    private static final String RULES_VERSION = "2";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern DECIMAL = Pattern.compile("(0|[1-9]\\d*)[.,](\\d+)");
+    private static final Pattern NUMBER_BEFORE = Pattern.compile("(?<![\\d.,])(\\d+(?:[.,]\\d+)?)\\s*$");
+
+    private final List<Unit> units = new ArrayList<>();
+    private final AhoCorasick unitMatcher;
+    private final Map<String, String> valueSynonyms = new HashMap<>();
+    private final Map<String, String> nameSynonyms = new HashMap<>();
+    private final String fingerprint;
+
+    public AttributeNormalizer() {
+        MessageDigest digest = sha256();
+        digest.update(RULES_VERSION.getBytes(StandardCharsets.UTF_8));
+        AhoCorasick.Builder matcher = AhoCorasick.builder();
+        for (String[] line : read(UNITS, "\\|", digest)) {
+            if (line.length != 3) {
+                throw new IllegalStateException("Invalid unit definition: " + String.join("|", line));
+            }
+            units.add(new Unit(line[0].trim(), new BigDecimal(line[1].trim())));
+            for (String alias : line[2].split(",")) {
+                matcher.add(alias.trim(), units.size() - 1);
+            }
+        }
+        this.unitMatcher = matcher.build();
+        readSynonyms(VALUE_SYNONYMS, valueSynonyms, digest);
+        readSynonyms(NAME_SYNONYMS, nameSynonyms, digest);
+        this.fingerprint = HexFormat.of().formatHex(digest.digest(), 0, 4);
+    }
+
+    /**
+     * Каноническое название характеристики
+     */
+    public String normalizeName(String name) {
+        String cleaned = clean(name);
+        if (cleaned == null) {
+            return null;
+        }
+        while (!cleaned.isEmpty() && (cleaned.endsWith(":") || cleaned.endsWith("."))) {
+            cleaned = cleaned.substring(0, cleaned.length() - 1).trim();
+        }
+        if (cleaned.isEmpty()) {
+            return null;
+        }
+        String synonym = nameSynonyms.get(cleaned.toLowerCase(Locale.ROOT));
+        return synonym != null ? synonym : capitalize(cleaned);
+    }
+
+    /**
+     * Каноническое значение характеристики
+     */
+    public String normalizeValue(String value) {
+        String cleaned = clean(value);
+        if (cleaned == null) {
+            return null;
+        }
+        String synonym = valueSynonyms.get(cleaned.toLowerCase(Locale.ROOT));
+        if (synonym != null) {
+            return synonym;
+        }
+        String normalized = capitalize(canonicalizeNumber(convertUnits(cleaned)));
+        synonym = valueSynonyms.get(normalized.toLowerCase(Locale.ROOT));
+        return synonym != null ? synonym : normalized;
+    }
+
+    /**
+     * Отпечаток словарей: снапшоты, построенные с другими словарями, перестраиваются
+     */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    private String convertUnits(String value) {
+        // Для каждой позиции начала - самое длинное написание единицы с границей слова справа
+        int[] unitEnd = new int[value.length()];
+        int[] unitId = new int[value.length()];
+        boolean[] found = {false};
+        unitMatcher.scan(value, (end, length, id) -> {
+            int start = end - length + 1;
+            if (end + 1 < value.length() && Character.isLetterOrDigit(value.charAt(end + 1))) {
+                return;
+            }
+            if (start == 0 || Character.isLetter(value.charAt(start - 1))) {
+                return;
+            }
+            if (end + 1 > unitEnd[start]) {
+                unitEnd[start] = end + 1;
+                unitId[start] = id;
+                found[0] = true;
+            }
+        });
+        if (!found[0]) {
+            return value;
+        }
+
+        StringBuilder result = new StringBuilder(value.length() + 8);
+        int copied = 0;
+        for (int start = 0; start < value.length(); start++) {
+            if (unitEnd[start] == 0 || start < copied) {
+                continue;
+            }
+            Matcher number = NUMBER_BEFORE.matcher(value).region(copied, start);
+            if (!number.find()) {
+                continue;
+            }
+            Unit unit = units.get(unitId[start]);
+            BigDecimal amount = new BigDecimal(number.group(1).replace(',', '.')).multiply(unit.factor());
+            result.append(value, copied, number.start())
+                    .append(format(amount))
+                    .append(' ')
+                    .append(unit.canonical());
+            copied = unitEnd[start];
+        }
+        return result.append(value, copied, value.length()).toString();
+    }
+
+    /**
+     * Числа перед единицей уже приведены в convertUnits; здесь - только значение-число целиком.
+     * Ведущий ноль ("01.10") означает дату или код, такое значение не меняется
+     */
+    private static String canonicalizeNumber(String value) {
+        Matcher matcher = DECIMAL.matcher(value);
+        if (!matcher.matches()) {
+            return value;
+        }
+        return format(new BigDecimal(matcher.group(1) + "." + matcher.group(2)));
+    }
+
+    private static String format(BigDecimal number) {
+        return number.signum() == 0 ? "0" : number.stripTrailingZeros().toPlainString();
+    }
+
+    private static String clean(String value) {
+        if (value == null) {
+            return null;
+        }
+        String cleaned = WHITESPACE.matcher(value).replaceAll(" ").trim();
+        return cleaned.isEmpty() ? null : cleaned;
+    }
+
+    private static String capitalize(String value) {
+        char first = value.charAt(0);
+        if (Character.isLowerCase(first) && Character.UnicodeBlock.of(first) == Character.UnicodeBlock.CYRILLIC) {
+            return Character.toUpperCase(first) + value.substring(1);
+        }
+        return value;
+    }
+
+    private void readSynonyms(String resource, Map<String, String> synonyms, MessageDigest digest) {
+        for (String[] line : read(resource, "=", digest)) {
+            if (line.length != 2) {
+                throw new IllegalStateException("Invalid synonym definition: " + String.join("=", line));
+            }
+            String canonical = line[0].trim();
+            synonyms.put(canonical.toLowerCase(Locale.ROOT), canonical);
+            for (String alias : line[1].split(",")) {
+                synonyms.putIfAbsent(alias.trim().toLowerCase(Locale.ROOT), canonical);
+            }
+        }
+    }
+
+    static List<String[]> read(String resource, String separator, MessageDigest digest) {
+        try (InputStream in = AttributeNormalizer.class.getClassLoader().getResourceAsStream(DICTIONARY_DIR + resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Normalization dictionary not found: " + DICTIONARY_DIR + resource);
+            }
+            byte[] content = in.readAllBytes();
+            digest.update(content);
+            List<String[]> lines = new ArrayList<>();
+            for (String line : new String(content, StandardCharsets.UTF_8).split("\n")) {
+                String trimmed = line.trim();
+                if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                    lines.add(trimmed.split(separator));
+                }
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read normalization dictionary " + resource, e);
+        }
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Unit(String canonical, BigDecimal factor) {
+    }
+}
@@ -0,0 +1,118 @@
+package ru.tenderhack.cte.normalize;
+
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Канонические ключи товара для точного блокирования дублей по (категория, производитель, модель).
+ * <ul>
+ *     <li>ключ модели: верхний регистр, кириллические буквы-двойники заменены латинскими, без пробелов
+ *     и пунктуации ("SKS-5", "sks 5" и "SKS5" с кириллической К дают "SKS5");</li>
+ *     <li>ID производителя: без кавычек, пунктуации и организационно-правовой формы, написания из словаря
+ *     classpath:normalization/manufacturers.txt сводятся к каноническому ("HUSQVARNA AB", "Хускварна" - "husqvarna").</li>
+ * </ul>
+ */
+@Component
+public class ProductKeyCanonicalizer {
+
+    private static final String MANUFACTURERS = "manufacturers.txt";
+
+    private static final Pattern NOT_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MODEL_PREFIX = Pattern.compile("^(?:(?:модель|model|артикул)[\\s:№#]+|(?:арт|art)\\.\\s*)",
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+
+    // Организационно-правовые формы: отбрасываются, если после них остается название
+    private static final Set<String> LEGAL_FORMS = Set.of(
+            "ооо", "оао", "зао", "пао", "ао", "ип", "нпо", "нпф", "нпп", "пк", "тд", "гк", "ук", "фгуп", "муп",
+            "llc", "ltd", "limited", "inc", "corp", "corporation", "co", "company", "gmbh", "ag", "kg", "ab",
+            "sa", "spa", "srl", "bv", "nv", "oy", "oyj", "as", "plc", "pte", "kft", "sro", "sp", "zoo");
+
+    // Значения, означающие отсутствие модели или производителя
+    private static final Set<String> PLACEHOLDERS = Set.of(
+            "", "нет", "бн", "безмодели", "безмарки", "неуказано", "неуказан", "отсутствует", "na", "none", "null");
+
+    private static final Map<Character, Character> LOOKALIKES = Map.ofEntries(
+            Map.entry('А', 'A'), Map.entry('В', 'B'), Map.entry('Е', 'E'), Map.entry('К', 'K'),
+            Map.entry('М', 'M'), Map.entry('Н', 'H'), Map.entry('О', 'O'), Map.entry('Р', 'P'),
+            Map.entry('С', 'C'), Map.entry('Т', 'T'), Map.entry('Х', 'X'), Map.entry('У', 'Y'));
+
+    private final Map<String, String> manufacturerAliases = new HashMap<>();
+    private final String fingerprint;
+
+    public ProductKeyCanonicalizer() {
+        MessageDigest digest = AttributeNormalizer.sha256();
+        for (String[] line : AttributeNormalizer.read(MANUFACTURERS, "=", digest)) {
+            if (line.length != 2) {
+                throw new IllegalStateException("Invalid manufacturer definition: " + String.join("=", line));
+            }
+            String id = manufacturerToken(line[0]);
+            manufacturerAliases.put(id, id);
+            for (String alias : line[1].split(",")) {
+                manufacturerAliases.putIfAbsent(manufacturerToken(alias), id);
+            }
+        }
+        this.fingerprint = HexFormat.of().formatHex(digest.digest(), 0, 4);
+    }
+
+    /**
+     * Канонический ключ модели или null, если модель не указана
+     */
+    public String modelKey(String model) {
+        if (model == null) {
+            return null;
+        }
+        String stripped = MODEL_PREFIX.matcher(model.trim()).replaceFirst("");
+        String compact = NOT_ALPHANUMERIC.matcher(stripped).replaceAll("").toUpperCase(Locale.ROOT).replace('Ё', 'Е');
+        if (PLACEHOLDERS.contains(compact.toLowerCase(Locale.ROOT))) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(compact.length());
+        for (int i = 0; i < compact.length(); i++) {
+            char c = compact.charAt(i);
+            key.append(LOOKALIKES.getOrDefault(c, c));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Канонический ID производителя или null, если производитель не указан
+     */
+    public String manufacturerId(String manufacturer) {
+        if (manufacturer == null) {
+            return null;
+        }
+        String token = manufacturerToken(manufacturer);
+        if (PLACEHOLDERS.contains(token)) {
+            return null;
+        }
+        return manufacturerAliases.getOrDefault(token, token);
+    }
+
+    /**
+     * Отпечаток словаря производителей: ключи, вычисленные с другим словарем, пересчитываются
+     */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    private static String manufacturerToken(String value) {
+        String[] words = NOT_ALPHANUMERIC.split(value.toLowerCase(Locale.ROOT).replace('ё', 'е').trim());
+        StringBuilder name = new StringBuilder();
+        StringBuilder all = new StringBuilder();
+        for (String word : words) {
+            all.append(word);
+            if (!LEGAL_FORMS.contains(word)) {
+                name.append(word);
+            }
+        }
+        // "АО" без названия остается как есть
+        return name.isEmpty() ? all.toString() : name.toString();
+    }
+}
@@ -0,0 +1,13 @@
+package ru.tenderhack.cte.repository;
+
+/**
+ * Количество СТЕ с заданным значением важной характеристики
+ */
+public interface AttributeFacetView {
+
+    String getName();
+
+    String getValue();
+
+    Long getCount();
+}
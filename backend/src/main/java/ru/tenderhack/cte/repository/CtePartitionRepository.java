@@ -0,0 +1,79 @@
+package ru.tenderhack.cte.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Помесячные секции cte_entities (создаются миграцией V9 и RetentionService).
+ * Секция месяца называется cte_entities_YYYY_MM и содержит все СТЕ задач, созданных в этом месяце.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CtePartitionRepository {
+
+    private static final String PARENT = "cte_entities";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final Pattern MONTH_PARTITION = Pattern.compile("cte_entities_(\\d{4})_(\\d{2})");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Секционирована ли таблица (при локальной разработке схему создает Hibernate без секций)
+     */
+    public boolean isPartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid
+                               WHERE c.relname = ? AND c.relnamespace = current_schema()::regnamespace)
+                """, Boolean.class, PARENT));
+    }
+
+    /**
+     * Помесячные секции в порядке возрастания месяца
+     */
+    public List<MonthPartition> findMonthPartitions() {
+        return jdbcTemplate.queryForList("""
+                        SELECT c.relname FROM pg_inherits i
+                        JOIN pg_class c ON c.oid = i.inhrelid
+                        JOIN pg_class p ON p.oid = i.inhparent
+                        WHERE p.relname = ? AND p.relnamespace = current_schema()::regnamespace
+                        """, String.class, PARENT).stream()
+                .map(MONTH_PARTITION::matcher)
+                .filter(Matcher::matches)
+                .map(m -> new MonthPartition(m.group(), YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)))))
+                .sorted((a, b) -> a.month().compareTo(b.month()))
+                .toList();
+    }
+
+    /**
+     * Создает секцию месяца, если её нет
+     */
+    public void createMonthPartition(YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF " + PARENT
+                + " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+    /**
+     * Отсоединяет секцию и удаляет её целиком; выполняется в транзакции вызывающего
+     */
+    public void dropPartition(MonthPartition partition) {
+        jdbcTemplate.execute("ALTER TABLE " + PARENT + " DETACH PARTITION " + partition.name());
+        jdbcTemplate.execute("DROP TABLE " + partition.name());
+    }
+
+    static String partitionName(YearMonth month) {
+        return PARENT + "_" + month.format(SUFFIX);
+    }
+
+    /**
+     * Секция месяца; имя всегда получено из каталога или построено по {@link #partitionName}
+     */
+    public record MonthPartition(String name, YearMonth month) {
+    }
+}
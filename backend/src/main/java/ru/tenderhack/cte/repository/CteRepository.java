@@ -2,14 +2,26 @@ package ru.tenderhack.cte.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.tenderhack.cte.entity.CteEntity;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface CteRepository extends JpaRepository<CteEntity, UUID> {
@@ -21,8 +33,219 @@ public interface CteRepository extends JpaRepository<CteEntity, UUID> {
     @Query("SELECT c FROM CteEntity c WHERE c.taskId = :taskId")
     List<CteEntity> findAllByTaskId(@Param("taskId") UUID taskId);
 
-    void deleteByTaskId(UUID taskId);
+    /**
+     * Удаляет СТЕ задач одним запросом (без загрузки сущностей)
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM CteEntity c WHERE c.taskId IN :taskIds")
+    int deleteByTaskIdIn(@Param("taskIds") Collection<UUID> taskIds);
 
     long countByTaskId(UUID taskId);
-}
 
+    long countByTaskIdAndVersion(UUID taskId, Integer version);
+
+    /**
+     * СТЕ версии результата задачи, у которых важные характеристики содержат все пары из filter
+     * (JSON-массив {name, value})
+     */
+    @Query(value = """
+            SELECT * FROM cte_entities c
+            WHERE c.task_id = :taskId AND c.version = :version
+              AND c.important_attributes @> CAST(:filter AS jsonb)
+            ORDER BY c.id
+            """,
+            countQuery = """
+            SELECT count(*) FROM cte_entities c
+            WHERE c.task_id = :taskId AND c.version = :version
+              AND c.important_attributes @> CAST(:filter AS jsonb)
+            """,
+            nativeQuery = true)
+    Page<CteEntity> findByTaskIdAndImportantAttributes(@Param("taskId") UUID taskId,
+                                                       @Param("version") int version,
+                                                       @Param("filter") String filter,
+                                                       Pageable pageable);
+
+    /**
+     * Потоковое чтение СТЕ версии результата в порядке id, начиная после afterId (для выгрузки с возобновлением).
+     * Stream должен потребляться внутри транзакции и закрываться после использования.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(value = """
+            SELECT * FROM cte_entities c
+            WHERE c.task_id = :taskId AND c.version = :version AND c.id > :afterId
+            ORDER BY c.id
+            """, nativeQuery = true)
+    Stream<CteEntity> streamForExport(@Param("taskId") UUID taskId, @Param("version") int version,
+                                      @Param("afterId") UUID afterId);
+
+    /**
+     * Значения важных характеристик версии результата с количеством СТЕ для каждого значения
+     */
+    @Query(value = """
+            SELECT f.name AS "name", f.value AS "value", f.cte_count AS "count"
+            FROM cte_attribute_facets f
+            WHERE f.task_id = :taskId AND f.version = :version
+            ORDER BY f.name, f.cte_count DESC
+            """, nativeQuery = true)
+    List<AttributeFacetView> findImportantAttributeFacets(@Param("taskId") UUID taskId, @Param("version") int version);
+
+    /**
+     * Строит счетчики значений важных характеристик версии результата (при публикации и копировании версии)
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO cte_attribute_facets (task_id, version, name, value, cte_count)
+            SELECT c.task_id, c.version, a ->> 'name', a ->> 'value', count(*)
+            FROM cte_entities c CROSS JOIN LATERAL jsonb_array_elements(c.important_attributes) a
+            WHERE c.task_id = :taskId AND c.version = :version
+              AND a ->> 'name' IS NOT NULL AND a ->> 'value' IS NOT NULL
+            GROUP BY 1, 2, 3, 4
+            ON CONFLICT (task_id, version, name, value) DO UPDATE SET cte_count = EXCLUDED.cte_count
+            """, nativeQuery = true)
+    int buildFacets(@Param("taskId") UUID taskId, @Param("version") int version);
+
+    /**
+     * Изменяет счетчики значений на delta для каждой пары из attributes (JSON-массив {name, value})
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO cte_attribute_facets (task_id, version, name, value, cte_count)
+            SELECT :taskId, :version, a ->> 'name', a ->> 'value', count(*) * :delta
+            FROM jsonb_array_elements(CAST(:attributes AS jsonb)) a
+            WHERE a ->> 'name' IS NOT NULL AND a ->> 'value' IS NOT NULL
+            GROUP BY 3, 4
+            ON CONFLICT (task_id, version, name, value)
+            DO UPDATE SET cte_count = cte_attribute_facets.cte_count + EXCLUDED.cte_count
+            """, nativeQuery = true)
+    int adjustFacets(@Param("taskId") UUID taskId, @Param("version") int version,
+                     @Param("attributes") String attributes, @Param("delta") int delta);
+
+    /**
+     * Копирует счетчики значений версии результата в другую версию той же задачи (правка СТЕ)
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO cte_attribute_facets (task_id, version, name, value, cte_count)
+            SELECT f.task_id, :toVersion, f.name, f.value, f.cte_count
+            FROM cte_attribute_facets f
+            WHERE f.task_id = :taskId AND f.version = :fromVersion
+            """, nativeQuery = true)
+    int copyFacets(@Param("taskId") UUID taskId, @Param("fromVersion") int fromVersion,
+                   @Param("toVersion") int toVersion);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM cte_attribute_facets WHERE task_id = :taskId AND version = :version AND cte_count <= 0",
+            nativeQuery = true)
+    int deleteEmptyFacets(@Param("taskId") UUID taskId, @Param("version") int version);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM cte_attribute_facets WHERE task_id = :taskId AND version = :version", nativeQuery = true)
+    int deleteFacets(@Param("taskId") UUID taskId, @Param("version") int version);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM cte_attribute_facets
+            WHERE task_id = :taskId AND version <= :maxVersion AND version <> :currentVersion
+            """, nativeQuery = true)
+    int deleteFacetsUpTo(@Param("taskId") UUID taskId, @Param("maxVersion") int maxVersion,
+                         @Param("currentVersion") int currentVersion);
+
+    /**
+     * СТЕ версии результата по идентификаторам
+     */
+    List<CteEntity> findByTaskIdAndVersionAndIdIn(UUID taskId, Integer version, Collection<UUID> ids);
+
+    /**
+     * Версия результата задачи, которой принадлежит СТЕ
+     */
+    @Query("SELECT c.version FROM CteEntity c WHERE c.taskId = :taskId AND c.id = :id")
+    Optional<Integer> findVersion(@Param("taskId") UUID taskId, @Param("id") UUID id);
+
+    boolean existsByTaskIdAndVersionAndId(UUID taskId, Integer version, UUID id);
+
+    /**
+     * Количество СТЕ в каждой сохраненной версии результата задачи
+     */
+    @Query("""
+            SELECT c.version AS version, count(c) AS cteCount FROM CteEntity c
+            WHERE c.taskId = :taskId
+            GROUP BY c.version
+            ORDER BY c.version DESC
+            """)
+    List<VersionCountView> countByTaskIdGroupByVersion(@Param("taskId") UUID taskId);
+
+    /**
+     * Копирует версию результата одной задачи в другую (материализация переиспользованного результата).
+     * Идентификатор копии детерминирован, см. {@link #copiedCteId(UUID, int, UUID)}.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO cte_entities (id, task_id, version, image_url, important_attributes, secondary_attributes, product_ids,
+                                      task_created_at)
+            SELECT CAST(md5(CAST(:targetTaskId AS text) || ':' || :targetVersion || ':' || CAST(c.id AS text)) AS uuid),
+                   :targetTaskId, :targetVersion, c.image_url, c.important_attributes, c.secondary_attributes,
+                   c.product_ids, t.created_at
+            FROM cte_entities c JOIN grouping_tasks t ON t.id = :targetTaskId
+            WHERE c.task_id = :sourceTaskId AND c.version = :sourceVersion
+            """, nativeQuery = true)
+    int copyTaskResults(@Param("sourceTaskId") UUID sourceTaskId, @Param("sourceVersion") int sourceVersion,
+                        @Param("targetTaskId") UUID targetTaskId, @Param("targetVersion") int targetVersion);
+
+    /**
+     * Копирует СТЕ версии результата задачи, кроме excludedIds, в новую версию той же задачи (правка СТЕ).
+     * Идентификатор копии детерминирован, см. {@link #copiedCteId(UUID, int, UUID)}.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO cte_entities (id, task_id, version, image_url, important_attributes, secondary_attributes, product_ids,
+                                      task_created_at)
+            SELECT CAST(md5(CAST(c.task_id AS text) || ':' || :toVersion || ':' || CAST(c.id AS text)) AS uuid),
+                   c.task_id, :toVersion, c.image_url, c.important_attributes, c.secondary_attributes, c.product_ids,
+                   c.task_created_at
+            FROM cte_entities c
+            WHERE c.task_id = :taskId AND c.version = :fromVersion AND c.id NOT IN (:excludedIds)
+            """, nativeQuery = true)
+    int copyVersionExcept(@Param("taskId") UUID taskId, @Param("fromVersion") int fromVersion,
+                          @Param("toVersion") int toVersion, @Param("excludedIds") Collection<UUID> excludedIds);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM CteEntity c WHERE c.taskId = :taskId AND c.version = :version")
+    int deleteVersion(@Param("taskId") UUID taskId, @Param("version") int version);
+
+    /**
+     * Удаляет версии не новее maxVersion, кроме опубликованной
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM CteEntity c WHERE c.taskId = :taskId AND c.version <= :maxVersion AND c.version <> :currentVersion")
+    int deleteVersionsUpTo(@Param("taskId") UUID taskId, @Param("maxVersion") int maxVersion,
+                           @Param("currentVersion") int currentVersion);
+
+    /**
+     * Идентификатор копии СТЕ sourceCteId в версии targetVersion задачи targetTaskId:
+     * клиент, получивший СТЕ из переиспользованного результата, может обращаться к ней и после материализации
+     */
+    static UUID copiedCteId(UUID targetTaskId, int targetVersion, UUID sourceCteId) {
+        try {
+            byte[] md5 = MessageDigest.getInstance("MD5")
+                    .digest((targetTaskId + ":" + targetVersion + ":" + sourceCteId).getBytes(StandardCharsets.UTF_8));
+            ByteBuffer buffer = ByteBuffer.wrap(md5);
+            return new UUID(buffer.getLong(), buffer.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
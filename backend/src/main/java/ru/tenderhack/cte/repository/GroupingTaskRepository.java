@@ -1,18 +1,209 @@
 package ru.tenderhack.cte.repository;
 
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.tenderhack.cte.entity.GroupingTaskEntity;
 import ru.tenderhack.cte.entity.Status;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface GroupingTaskRepository extends JpaRepository<GroupingTaskEntity, UUID> {
 
-    List<GroupingTaskEntity> findByStatus(Status status);
+    /**
+     * Первая страница задач в статусах statuses, новые сначала
+     */
+    @Query(value = """
+            SELECT * FROM grouping_tasks t
+            WHERE t.status IN (:statuses)
+            ORDER BY t.created_at DESC, t.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<GroupingTaskEntity> findPage(@Param("statuses") Collection<String> statuses, @Param("limit") int limit);
 
-    List<GroupingTaskEntity> findByStatusIn(List<Status> statuses);
-}
+    /**
+     * Следующая страница задач после (createdAt, id) - keyset по индексу (status, created_at, id)
+     */
+    @Query(value = """
+            SELECT * FROM grouping_tasks t
+            WHERE t.status IN (:statuses) AND (t.created_at, t.id) < (:createdAt, :id)
+            ORDER BY t.created_at DESC, t.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<GroupingTaskEntity> findPageAfter(@Param("statuses") Collection<String> statuses,
+                                           @Param("createdAt") LocalDateTime createdAt, @Param("id") UUID id,
+                                           @Param("limit") int limit);
+
+    @Query("SELECT t.status AS status, count(t) AS taskCount FROM GroupingTaskEntity t GROUP BY t.status")
+    List<StatusCountView> countGroupByStatus();
+
+    Optional<GroupingTaskEntity> findFirstByNormalizedQueryAndProductsVersionAndSourceTaskIdIsNullAndStatusInOrderByCreatedAtDesc(
+            String normalizedQuery, Long productsVersion, List<Status> statuses);
+
+    List<GroupingTaskEntity> findBySourceTaskId(UUID sourceTaskId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM GroupingTaskEntity t WHERE t.id = :taskId")
+    Optional<GroupingTaskEntity> findByIdForUpdate(@Param("taskId") UUID taskId);
+
+    /**
+     * Атомарный переход статуса: выполняется, только если задача в статусе from
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            UPDATE GroupingTaskEntity t SET t.status = :to, t.updatedAt = CURRENT_TIMESTAMP
+            WHERE t.id = :taskId AND t.status = :from
+            """)
+    int transitionStatus(@Param("taskId") UUID taskId, @Param("from") Status from, @Param("to") Status to);
+
+    /**
+     * Атомарно отвязывает задачу-ссылку от источника: выполняется, только если задача все еще ссылается на него
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            UPDATE GroupingTaskEntity t SET t.sourceTaskId = NULL, t.updatedAt = CURRENT_TIMESTAMP
+            WHERE t.id = :taskId AND t.sourceTaskId = :sourceTaskId
+            """)
+    int detachFromSource(@Param("taskId") UUID taskId, @Param("sourceTaskId") UUID sourceTaskId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE GroupingTaskEntity t SET t.rating = :rating, t.updatedAt = CURRENT_TIMESTAMP WHERE t.id = :taskId")
+    int updateRating(@Param("taskId") UUID taskId, @Param("rating") int rating);
+
+    /**
+     * Новый запрос задачи перед перегруппировкой; задача больше не ссылается на чужие результаты
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            UPDATE GroupingTaskEntity t
+            SET t.query = :query, t.normalizedQuery = :normalizedQuery, t.productsVersion = :productsVersion,
+                t.sourceTaskId = NULL, t.status = :status, t.updatedAt = CURRENT_TIMESTAMP
+            WHERE t.id = :taskId
+            """)
+    int resetQuery(@Param("taskId") UUID taskId, @Param("query") String query,
+                   @Param("normalizedQuery") String normalizedQuery, @Param("productsVersion") Long productsVersion,
+                   @Param("status") Status status);
+
+    /**
+     * Атомарно переключает опубликованную версию, если она новее текущей
+     */
+    @Modifying
+    @Query("""
+            UPDATE GroupingTaskEntity t SET t.currentVersion = :version, t.updatedAt = CURRENT_TIMESTAMP
+            WHERE t.id = :taskId AND (t.currentVersion IS NULL OR t.currentVersion < :version)
+            """)
+    int publishVersion(@Param("taskId") UUID taskId, @Param("version") int version);
+
+    /**
+     * Атомарно публикует предварительную версию, только если у задачи еще нет опубликованной:
+     * при перегенерации полная предыдущая версия обслуживает чтение до публикации новой полной
+     */
+    @Modifying
+    @Query("""
+            UPDATE GroupingTaskEntity t
+            SET t.currentVersion = :version, t.previewVersion = :version, t.updatedAt = CURRENT_TIMESTAMP
+            WHERE t.id = :taskId AND t.currentVersion IS NULL
+            """)
+    int publishPreviewVersion(@Param("taskId") UUID taskId, @Param("version") int version);
+
+    @Query("SELECT t.currentVersion FROM GroupingTaskEntity t WHERE t.id = :taskId")
+    Integer findCurrentVersion(@Param("taskId") UUID taskId);
 
+    @Query("SELECT t.previewVersion FROM GroupingTaskEntity t WHERE t.id = :taskId")
+    Integer findPreviewVersion(@Param("taskId") UUID taskId);
+
+    @Modifying
+    @Query("UPDATE GroupingTaskEntity t SET t.previewVersion = NULL WHERE t.id = :taskId")
+    int clearPreviewVersion(@Param("taskId") UUID taskId);
+
+    @Modifying
+    @Query("""
+            UPDATE GroupingTaskEntity t SET t.currentVersion = :version, t.updatedAt = CURRENT_TIMESTAMP
+            WHERE t.id = :taskId
+            """)
+    int setCurrentVersion(@Param("taskId") UUID taskId, @Param("version") int version);
+
+    @Modifying
+    @Query("UPDATE GroupingTaskEntity t SET t.latestVersion = :version WHERE t.id = :taskId")
+    int setLatestVersion(@Param("taskId") UUID taskId, @Param("version") int version);
+
+    /**
+     * Исключает задачу из переиспользования результатов (результаты правились вручную)
+     */
+    @Modifying
+    @Query("""
+            UPDATE GroupingTaskEntity t SET t.productsVersion = NULL, t.updatedAt = CURRENT_TIMESTAMP
+            WHERE t.id = :taskId
+            """)
+    int clearProductsVersion(@Param("taskId") UUID taskId);
+
+    /**
+     * Неподтвержденные задачи без изменений с cutoff, на результаты которых не ссылаются живые задачи
+     */
+    @Query("""
+            SELECT t.id FROM GroupingTaskEntity t
+            WHERE t.status IN :statuses AND COALESCE(t.updatedAt, t.createdAt) < :cutoff
+              AND NOT EXISTS (
+                  SELECT d.id FROM GroupingTaskEntity d
+                  WHERE d.sourceTaskId = t.id
+                    AND (d.status NOT IN :statuses OR COALESCE(d.updatedAt, d.createdAt) >= :cutoff))
+            ORDER BY t.createdAt
+            """)
+    List<UUID> findExpiredTaskIds(@Param("statuses") Collection<Status> statuses,
+                                  @Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    /**
+     * Сколько из указанных задач просрочено (см. {@link #findExpiredTaskIds})
+     */
+    @Query("""
+            SELECT count(t) FROM GroupingTaskEntity t
+            WHERE t.id IN :ids AND t.status IN :statuses AND COALESCE(t.updatedAt, t.createdAt) < :cutoff
+              AND NOT EXISTS (
+                  SELECT d.id FROM GroupingTaskEntity d
+                  WHERE d.sourceTaskId = t.id
+                    AND (d.status NOT IN :statuses OR COALESCE(d.updatedAt, d.createdAt) >= :cutoff))
+            """)
+    long countExpired(@Param("ids") Collection<UUID> ids, @Param("statuses") Collection<Status> statuses,
+                      @Param("cutoff") LocalDateTime cutoff);
+
+    /**
+     * Блокирует задачи, созданные в [from, to): пока блокировка держится, у них не меняются статус и версии
+     * и не появляются новые задачи-ссылки (внешний ключ source_task_id)
+     */
+    @Query(value = """
+            SELECT t.id FROM grouping_tasks t
+            WHERE t.created_at >= :from AND t.created_at < :to
+            ORDER BY t.id
+            FOR UPDATE
+            """, nativeQuery = true)
+    List<UUID> lockCreatedBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT t.createdAt FROM GroupingTaskEntity t WHERE t.id = :taskId")
+    Optional<LocalDateTime> findCreatedAt(@Param("taskId") UUID taskId);
+
+    /**
+     * Отвязывает задачи-ссылки от удаляемых источников
+     */
+    @Modifying
+    @Query("UPDATE GroupingTaskEntity t SET t.sourceTaskId = NULL WHERE t.sourceTaskId IN :ids")
+    int clearSourceTask(@Param("ids") Collection<UUID> ids);
+
+    @Modifying
+    @Query("DELETE FROM GroupingTaskEntity t WHERE t.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<UUID> ids);
+}
@@ -0,0 +1,62 @@
+package ru.tenderhack.cte.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Канонические ключи raw_products (колонки model_key, manufacturer_id, canonical_keys_version из V11)
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductKeyRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Следующая по ID пачка товаров, ключи которых вычислены не текущим словарем
+     */
+    public List<ProductSource> findStale(long afterId, String keysVersion, int limit) {
+        return jdbcTemplate.query("""
+                        SELECT id, model, manufacturer FROM raw_products
+                        WHERE id > ? AND canonical_keys_version IS DISTINCT FROM ?
+                        ORDER BY id LIMIT ?
+                        """,
+                (rs, rowNum) -> new ProductSource(rs.getLong(1), rs.getString(2), rs.getString(3)),
+                afterId, keysVersion, limit);
+    }
+
+    /**
+     * Записывает ключи пачки одним UPDATE; версию raw_products он не увеличивает (см. V11)
+     */
+    public int updateKeys(List<ProductKeys> keys, String keysVersion) {
+        return jdbcTemplate.update(connection -> {
+            var statement = connection.prepareStatement("""
+                    UPDATE raw_products p
+                    SET model_key = k.model_key, manufacturer_id = k.manufacturer_id, canonical_keys_version = ?
+                    FROM unnest(?::bigint[], ?::varchar[], ?::varchar[]) AS k(id, model_key, manufacturer_id)
+                    WHERE p.id = k.id
+                    """);
+            statement.setString(1, keysVersion);
+            statement.setArray(2, array(connection, "bigint", keys.stream().map(ProductKeys::id).toArray()));
+            statement.setArray(3, array(connection, "varchar", keys.stream().map(ProductKeys::modelKey).toArray()));
+            statement.setArray(4, array(connection, "varchar", keys.stream().map(ProductKeys::manufacturerId).toArray()));
+            return statement;
+        });
+    }
+
+    private static Array array(Connection connection, String type, Object[] values) throws SQLException {
+        return connection.createArrayOf(type, values);
+    }
+
+    public record ProductSource(long id, String model, String manufacturer) {
+    }
+
+    public record ProductKeys(long id, String modelKey, String manufacturerId) {
+    }
+}
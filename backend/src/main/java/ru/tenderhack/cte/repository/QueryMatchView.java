@@ -0,0 +1,11 @@
+package ru.tenderhack.cte.repository;
+
+/**
+ * Товар, подошедший под один из запросов пакета
+ */
+public interface QueryMatchView {
+
+    Integer getQueryIndex();
+
+    Long getProductId();
+}
@@ -0,0 +1,76 @@
+package ru.tenderhack.cte.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.tenderhack.cte.entity.RawProductEntity;
+
+import java.util.stream.Stream;
+
+@Repository
+public interface RawProductRepository extends JpaRepository<RawProductEntity, Long> {
+
+    /**
+     * Потоковый отбор ID товаров по полнотекстовому запросу.
+     * Совпадение по search_vector (русская конфигурация) либо триграммное сходство модели
+     * с одним из токенов-артикулов (например, "sks-5"). Без ORDER BY, чтобы строки
+     * отдавались курсором по мере нахождения.
+     * Оба условия индексные: % ANY по массиву токенов выполняется Bitmap Index Scan по
+     * idx_raw_products_model_trgm (проход индекса на каждый токен) и объединяется через BitmapOr,
+     * в том числе в generic plan подготовленного оператора (scripts/explain-product-query.sql).
+     * Stream должен потребляться внутри транзакции и закрываться после использования.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    @Query(value = """
+            SELECT p.id FROM raw_products p
+            WHERE p.search_vector @@ websearch_to_tsquery('russian', :query)
+               OR lower(p.model) % ANY (string_to_array(:modelTokens, ' '))
+            """, nativeQuery = true)
+    Stream<Long> streamIdsByQuery(@Param("query") String query, @Param("modelTokens") String modelTokens);
+
+    /**
+     * Потоковый отбор ID товаров сразу по нескольким запросам пакета одним оператором и одним курсором:
+     * для каждого запроса условие то же, что в {@link #streamIdsByQuery}, номер запроса - с нуля.
+     * modelTokens[i] - токены-артикулы запроса queries[i] через пробел.
+     * Для каждой строки пакета план тот же: BitmapOr индексов search_vector и триграммного по model.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    @Query(value = """
+            SELECT CAST(q.idx - 1 AS INTEGER) AS "queryIndex", m.id AS "productId"
+            FROM unnest(CAST(:queries AS TEXT[]), CAST(:modelTokens AS TEXT[])) WITH ORDINALITY AS q(query, model_tokens, idx)
+            CROSS JOIN LATERAL (
+                SELECT p.id FROM raw_products p
+                WHERE p.search_vector @@ websearch_to_tsquery('russian', q.query)
+                   OR lower(p.model) % ANY (string_to_array(q.model_tokens, ' '))
+            ) m
+            """, nativeQuery = true)
+    Stream<QueryMatchView> streamIdsByQueries(@Param("queries") String[] queries,
+                                              @Param("modelTokens") String[] modelTokens);
+
+    /**
+     * Все товары по возрастанию ID курсором (для построения колоночного снапшота)
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM RawProductEntity p ORDER BY p.id")
+    Stream<RawProductEntity> streamAllOrderById();
+
+    /**
+     * Текстовое представление полнотекстового запроса в том виде, в каком его выполняет отбор товаров
+     * (лексемы после стемминга, операторы websearch: отрицание, фразы, or)
+     */
+    @Query(value = "SELECT CAST(websearch_to_tsquery('russian', :query) AS TEXT)", nativeQuery = true)
+    String findTsQueryText(@Param("query") String query);
+
+    /**
+     * Текущая версия содержимого raw_products (увеличивается триггером при любом изменении)
+     */
+    @Query(value = "SELECT version FROM raw_products_version WHERE id = 1", nativeQuery = true)
+    long findProductsVersion();
+}
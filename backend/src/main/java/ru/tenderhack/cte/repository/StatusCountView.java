@@ -0,0 +1,13 @@
+package ru.tenderhack.cte.repository;
+
+import ru.tenderhack.cte.entity.Status;
+
+/**
+ * Количество задач группировки в статусе
+ */
+public interface StatusCountView {
+
+    Status getStatus();
+
+    Long getTaskCount();
+}
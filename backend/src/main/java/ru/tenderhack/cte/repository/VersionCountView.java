@@ -0,0 +1,11 @@
+package ru.tenderhack.cte.repository;
+
+/**
+ * Количество СТЕ в версии результата группировки
+ */
+public interface VersionCountView {
+
+    Integer getVersion();
+
+    Long getCteCount();
+}
@@ -0,0 +1,26 @@
+package ru.tenderhack.cte.service;
+
+import java.util.List;
+
+/**
+ * Разделение характеристик категории на важные и второстепенные (коды имен словаря снапшота в порядке ранга)
+ *
+ * @param confidence уверенность статистического выбора, 0..1
+ * @param source     кто принял решение: статистика или LLM
+ */
+public record AttributeSelection(
+        List<Integer> important,
+        List<Integer> secondary,
+        double confidence,
+        Source source
+) {
+
+    public enum Source {
+        STATISTICS,
+        LLM
+    }
+
+    public static AttributeSelection empty() {
+        return new AttributeSelection(List.of(), List.of(), 0, Source.STATISTICS);
+    }
+}
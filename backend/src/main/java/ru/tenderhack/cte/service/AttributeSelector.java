@@ -0,0 +1,174 @@
+package ru.tenderhack.cte.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.tenderhack.cte.config.GroupingProperties;
+import ru.tenderhack.cte.snapshot.ProductSnapshot;
+
+import java.util.*;
+
+/**
+ * Выбор важных и второстепенных характеристик категории по статистике групп товаров.
+ * Важная характеристика заполнена у большинства товаров и совпадает внутри групп;
+ * среди важных выше ранжируются различающие группы (высокая энтропия значений).
+ * LLM спрашивается только для категорий с низкой уверенностью статистики,
+ * все такие категории запуска упаковываются в общие запросы.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AttributeSelector {
+
+    private static final double MIN_FILL_RATE = 0.5;
+    private static final double MIN_PURITY = 0.8;
+    private static final double UNDECIDED_MARGIN = 0.15;
+    private static final int MIN_EVIDENCE_CLUSTERS = 3;
+    private static final int MAX_IMPORTANT = 8;
+    private static final int MAX_PROMPT_ATTRIBUTES = 40;
+
+    private static final String LLM_INSTRUCTION = """
+            Для каждой категории товаров выбери характеристики, которые определяют стандартную товарную единицу. \
+            В скобках - доля товаров с заполненной характеристикой и доля групп, где значение одинаково. \
+            Ответ на вопрос - массив имен характеристик, как они написаны в вопросе.""";
+
+    private final LlmPromptPacker promptPacker;
+    private final GroupingProperties groupingProperties;
+
+    /**
+     * Выбирает характеристики для всех категорий запуска
+     */
+    Map<Long, AttributeSelection> selectAll(UUID taskId, ProductSnapshot snapshot,
+                                            Collection<AttributeStatistics> categories, boolean consultLlm) {
+        Map<Long, AttributeSelection> selections = new HashMap<>();
+        Map<String, LlmQuestion> questions = new LinkedHashMap<>();
+        for (AttributeStatistics statistics : categories) {
+            AttributeSelection selection = select(statistics);
+            selections.put(statistics.categoryId(), selection);
+            if (consultLlm && selection.confidence() < groupingProperties.attributeLlmConfidence()
+                    && questions.size() < groupingProperties.attributeLlmMaxCategories()) {
+                LlmQuestion question = question(snapshot, statistics, selection);
+                if (question != null) {
+                    questions.put(String.valueOf(statistics.categoryId()), question);
+                }
+            }
+        }
+
+        if (!questions.isEmpty()) {
+            List<LlmPromptPacker.Decision> decisions = questions.entrySet().stream()
+                    .map(entry -> new LlmPromptPacker.Decision(entry.getKey(), entry.getValue().text()))
+                    .toList();
+            Map<String, JsonNode> answers = promptPacker.decide(LLM_INSTRUCTION, decisions,
+                    (id, answer) -> !questions.get(id).importantIds(answer).isEmpty());
+            answers.forEach((id, answer) -> {
+                LlmQuestion question = questions.get(id);
+                selections.put(question.categoryId(), question.apply(answer));
+            });
+        }
+        log.info("Task {}: attributes selected for {} categories, LLM consulted for {}",
+                taskId, selections.size(), questions.size());
+        return selections;
+    }
+
+    AttributeSelection select(AttributeStatistics statistics) {
+        long products = statistics.products();
+        List<Ranked> important = new ArrayList<>();
+        List<Ranked> secondary = new ArrayList<>();
+        int candidates = 0;
+        int undecided = 0;
+
+        for (Map.Entry<Integer, AttributeStatistics.Attribute> entry : statistics.attributes().entrySet()) {
+            AttributeStatistics.Attribute attribute = entry.getValue();
+            double fillRate = attribute.fillRate(products);
+            double purity = attribute.purity();
+            double entropy = attribute.entropy();
+            Ranked ranked = new Ranked(entry.getKey(), fillRate, Double.isNaN(purity) ? 0 : purity * entropy);
+
+            if (fillRate < MIN_FILL_RATE) {
+                secondary.add(ranked);
+                continue;
+            }
+            candidates++;
+            if (Double.isNaN(purity) || Math.abs(purity - MIN_PURITY) < UNDECIDED_MARGIN) {
+                undecided++;
+            }
+            if (!Double.isNaN(purity) && purity >= MIN_PURITY) {
+                important.add(ranked);
+            } else {
+                secondary.add(ranked);
+            }
+        }
+
+        important.sort(Comparator.comparingDouble(Ranked::discrimination).reversed()
+                .thenComparing(Comparator.comparingDouble(Ranked::fillRate).reversed()));
+        if (important.size() > MAX_IMPORTANT) {
+            secondary.addAll(important.subList(MAX_IMPORTANT, important.size()));
+            important = new ArrayList<>(important.subList(0, MAX_IMPORTANT));
+        }
+        secondary.sort(Comparator.comparingDouble(Ranked::fillRate).reversed()
+                .thenComparing(Comparator.comparingDouble(Ranked::discrimination).reversed()));
+
+        // Уверенность падает при малом числе групп из нескольких товаров и при пограничной однородности
+        double evidence = Math.min(1.0, (double) statistics.multiProductClusters() / MIN_EVIDENCE_CLUSTERS);
+        double decisiveness = candidates == 0 ? 1.0 : 1.0 - (double) undecided / candidates;
+        return new AttributeSelection(ids(important), ids(secondary), evidence * decisiveness,
+                AttributeSelection.Source.STATISTICS);
+    }
+
+    private static LlmQuestion question(ProductSnapshot snapshot, AttributeStatistics statistics,
+                                        AttributeSelection fallback) {
+        List<Integer> nameIds = new ArrayList<>(fallback.important());
+        nameIds.addAll(fallback.secondary());
+        if (nameIds.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder text = new StringBuilder("Категория \"")
+                .append(snapshot.categoryName(statistics.sampleRow())).append("\":");
+        Map<String, Integer> idsByName = new LinkedHashMap<>();
+        for (int nameId : nameIds.subList(0, Math.min(MAX_PROMPT_ATTRIBUTES, nameIds.size()))) {
+            AttributeStatistics.Attribute attribute = statistics.attributes().get(nameId);
+            String name = snapshot.attributeName(nameId);
+            idsByName.put(name, nameId);
+            double purity = attribute.purity();
+            text.append(idsByName.size() == 1 ? " " : "; ").append(name)
+                    .append(String.format(Locale.ROOT, " (%.2f, %s)", attribute.fillRate(statistics.products()),
+                            Double.isNaN(purity) ? "н/д" : String.format(Locale.ROOT, "%.2f", purity)));
+        }
+        return new LlmQuestion(statistics.categoryId(), text.toString(), idsByName, fallback);
+    }
+
+    /**
+     * Вопрос к LLM по категории и разбор ответа - массива имен важных характеристик
+     */
+    private record LlmQuestion(Long categoryId, String text, Map<String, Integer> idsByName,
+                               AttributeSelection fallback) {
+
+        List<Integer> importantIds(JsonNode answer) {
+            List<Integer> important = new ArrayList<>();
+            for (JsonNode name : answer) {
+                Integer nameId = idsByName.get(name.asText().trim());
+                if (nameId != null && !important.contains(nameId)) {
+                    important.add(nameId);
+                }
+            }
+            return important;
+        }
+
+        AttributeSelection apply(JsonNode answer) {
+            List<Integer> important = importantIds(answer);
+            List<Integer> secondary = new ArrayList<>(fallback.important());
+            secondary.addAll(fallback.secondary());
+            secondary.removeAll(important);
+            return new AttributeSelection(important, secondary, fallback.confidence(), AttributeSelection.Source.LLM);
+        }
+    }
+
+    private static List<Integer> ids(List<Ranked> ranked) {
+        return ranked.stream().map(Ranked::nameId).toList();
+    }
+
+    private record Ranked(int nameId, double fillRate, double discrimination) {
+    }
+}
@@ -0,0 +1,138 @@
+package ru.tenderhack.cte.service;
+
+import ru.tenderhack.cte.snapshot.ProductSnapshot;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Статистика характеристик категории по найденным группам (кластерам) товаров.
+ * Накапливается за один проход по парам имя/значение снапшота, частичные статистики партиций одной категории
+ * объединяются через {@link #merge(AttributeStatistics)}.
+ */
+final class AttributeStatistics {
+
+    private final Long categoryId;
+    private final int sampleRow;
+    private long products;
+    private long multiProductClusters;
+    private final Map<Integer, Attribute> attributes = new HashMap<>();
+
+    AttributeStatistics(Long categoryId, int sampleRow) {
+        this.categoryId = categoryId;
+        this.sampleRow = sampleRow;
+    }
+
+    Long categoryId() {
+        return categoryId;
+    }
+
+    int sampleRow() {
+        return sampleRow;
+    }
+
+    long products() {
+        return products;
+    }
+
+    long multiProductClusters() {
+        return multiProductClusters;
+    }
+
+    Map<Integer, Attribute> attributes() {
+        return attributes;
+    }
+
+    void addCluster(ProductSnapshot snapshot, int[] rows) {
+        boolean multi = rows.length > 1;
+        products += rows.length;
+        if (multi) {
+            multiProductClusters++;
+        }
+
+        Map<Integer, Integer> firstValue = new HashMap<>();
+        Map<Integer, Integer> rowsWithName = new HashMap<>();
+        Set<Integer> mixed = new HashSet<>();
+        for (int row : rows) {
+            for (int i = 0; i < snapshot.attributeCount(row); i++) {
+                int nameId = snapshot.attributeNameId(row, i);
+                int valueId = snapshot.attributeValueId(row, i);
+                Attribute attribute = attributes.computeIfAbsent(nameId, k -> new Attribute());
+                attribute.rows++;
+                attribute.values.merge(valueId, 1L, Long::sum);
+                rowsWithName.merge(nameId, 1, Integer::sum);
+                Integer previous = firstValue.putIfAbsent(nameId, valueId);
+                if (previous != null && previous != valueId) {
+                    mixed.add(nameId);
+                }
+            }
+        }
+
+        if (multi) {
+            rowsWithName.forEach((nameId, count) -> {
+                Attribute attribute = attributes.get(nameId);
+                attribute.multiProductClusters++;
+                if (count >= rows.length && !mixed.contains(nameId)) {
+                    attribute.pureClusters++;
+                }
+            });
+        }
+    }
+
+    void merge(AttributeStatistics other) {
+        products += other.products;
+        multiProductClusters += other.multiProductClusters;
+        other.attributes.forEach((nameId, attribute) -> attributes.merge(nameId, attribute, Attribute::merge));
+    }
+
+    /**
+     * Накопленные показатели одной характеристики
+     */
+    static final class Attribute {
+
+        private long rows;
+        private long multiProductClusters;
+        private long pureClusters;
+        private final Map<Integer, Long> values = new HashMap<>();
+
+        /**
+         * Доля товаров категории, у которых заполнена характеристика
+         */
+        double fillRate(long products) {
+            return products == 0 ? 0 : (double) rows / products;
+        }
+
+        /**
+         * Доля групп из нескольких товаров, внутри которых значение одинаково у всех товаров;
+         * NaN, если таких групп нет
+         */
+        double purity() {
+            return multiProductClusters == 0 ? Double.NaN : (double) pureClusters / multiProductClusters;
+        }
+
+        /**
+         * Нормированная энтропия значений по категории: 0 - одно значение, 1 - равномерное распределение
+         */
+        double entropy() {
+            if (values.size() <= 1) {
+                return 0;
+            }
+            double entropy = 0;
+            for (long count : values.values()) {
+                double p = (double) count / rows;
+                entropy -= p * Math.log(p);
+            }
+            return entropy / Math.log(values.size());
+        }
+
+        private static Attribute merge(Attribute left, Attribute right) {
+            left.rows += right.rows;
+            left.multiProductClusters += right.multiProductClusters;
+            left.pureClusters += right.pureClusters;
+            right.values.forEach((valueId, count) -> left.values.merge(valueId, count, Long::sum));
+            return left;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.tenderhack.cte.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Разбор характеристик товара из формата "Ключ:Значение;Ключ:Значение"
+ */
+public final class CharacteristicsParser {
+
+    private CharacteristicsParser() {
+    }
+
+    /**
+     * Возвращает характеристики в порядке появления; пустые ключи и значения пропускаются
+     */
+    public static Map<String, String> parse(String characteristics) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (characteristics == null || characteristics.isBlank()) {
+            return result;
+        }
+        for (String pair : characteristics.split(";")) {
+            int separator = pair.indexOf(':');
+            if (separator <= 0) {
+                continue;
+            }
+            String name = pair.substring(0, separator).trim();
+            String value = pair.substring(separator + 1).trim();
+            if (!name.isEmpty() && !value.isEmpty()) {
+                result.putIfAbsent(name, value);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,93 @@
+package ru.tenderhack.cte.service;
+
+import org.springframework.stereotype.Component;
+import ru.tenderhack.cte.entity.AttributeJson;
+import ru.tenderhack.cte.entity.CteEntity;
+import ru.tenderhack.cte.snapshot.ProductSnapshot;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Сборка СТЕ из группы товаров снапшота: изображение, важные и второстепенные характеристики
+ */
+@Component
+public class CteAssembler {
+
+    public static final String MANUFACTURER = "Производитель";
+    public static final String MODEL = "Модель";
+    public static final String CATEGORY = "Категория";
+
+    private static final int MAX_SECONDARY_ATTRIBUTES = 10;
+
+    /**
+     * Важные характеристики - производитель, модель, категория и характеристики, выбранные важными для категории.
+     * Второстепенные - остальные характеристики в порядке ранга выбора.
+     * Значение характеристики - самое частое в группе.
+     * Характеристики сравниваются по кодам словаря снапшота, строки декодируются только для результата.
+     */
+    public CteEntity assemble(UUID taskId, int version, ProductSnapshot snapshot, int[] rows,
+                              AttributeSelection selection) {
+        List<AttributeJson> important = new ArrayList<>();
+        addIfPresent(important, MANUFACTURER, firstNonBlank(rows, snapshot::manufacturer));
+        addIfPresent(important, MODEL, firstNonBlank(rows, snapshot::model));
+        addIfPresent(important, CATEGORY, firstNonBlank(rows, snapshot::categoryName));
+
+        Map<Integer, Map<Integer, Integer>> valueCounts = new HashMap<>();
+        for (int row : rows) {
+            for (int i = 0; i < snapshot.attributeCount(row); i++) {
+                valueCounts.computeIfAbsent(snapshot.attributeNameId(row, i), k -> new HashMap<>())
+                        .merge(snapshot.attributeValueId(row, i), 1, Integer::sum);
+            }
+        }
+
+        for (int nameId : selection.important()) {
+            addTopValue(important, snapshot, nameId, valueCounts.remove(nameId));
+        }
+        List<AttributeJson> secondary = new ArrayList<>();
+        for (int nameId : selection.secondary()) {
+            if (secondary.size() >= MAX_SECONDARY_ATTRIBUTES) {
+                break;
+            }
+            addTopValue(secondary, snapshot, nameId, valueCounts.remove(nameId));
+        }
+
+        List<Long> productIds = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            productIds.add(snapshot.id(row));
+        }
+
+        return CteEntity.builder()
+                .taskId(taskId)
+                .version(version)
+                .imageUrl(firstNonBlank(rows, snapshot::imageUrl))
+                .importantAttributes(important)
+                .secondaryAttributes(secondary)
+                .productIds(productIds)
+                .build();
+    }
+
+    private static void addTopValue(List<AttributeJson> attributes, ProductSnapshot snapshot, int nameId,
+                                    Map<Integer, Integer> counts) {
+        if (counts != null) {
+            int valueId = Collections.max(counts.entrySet(), Map.Entry.comparingByValue()).getKey();
+            attributes.add(new AttributeJson(snapshot.attributeName(nameId), snapshot.attributeValue(valueId)));
+        }
+    }
+
+    private static void addIfPresent(List<AttributeJson> attributes, String name, String value) {
+        if (value != null) {
+            attributes.add(new AttributeJson(name, value));
+        }
+    }
+
+    private static String firstNonBlank(int[] rows, IntFunction<String> getter) {
+        for (int row : rows) {
+            String value = getter.apply(row);
+            if (value != null && !value.isBlank()) {
+                return value.trim();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,337 @@
+package ru.tenderhack.cte.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.tenderhack.cte.dto.CteChange;
+import ru.tenderhack.cte.entity.AttributeJson;
+import ru.tenderhack.cte.entity.CteEntity;
+import ru.tenderhack.cte.entity.GroupingTaskEntity;
+import ru.tenderhack.cte.entity.Status;
+import ru.tenderhack.cte.exception.ConflictException;
+import ru.tenderhack.cte.exception.ResourceNotFoundException;
+import ru.tenderhack.cte.mapper.CteMapper;
+import ru.tenderhack.cte.repository.CteRepository;
+import ru.tenderhack.cte.repository.GroupingTaskRepository;
+import ru.tenderhack.cte.snapshot.ProductSnapshot;
+import ru.tenderhack.cte.snapshot.ProductSnapshotService;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Правки СТЕ опубликованной версии: объединение, разделение и перенос товаров.
+ * Строки опубликованной версии не меняются: правка копирует версию в следующую (одним INSERT ... SELECT
+ * с детерминированными идентификаторами копий), меняет копии затронутых СТЕ, переносит счетчики фильтров
+ * и корректирует их только по затронутым СТЕ, затем публикует новую версию. Предыдущая версия остается
+ * доступной для отката, копирование из кэша результатов не видит наполовину измененного набора.
+ * Характеристики пересчитываются только для затронутых СТЕ. Правки одной задачи выполняются
+ * последовательно под блокировкой задачи.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CteEditService {
+
+    private static final Set<String> BUILT_IN_ATTRIBUTES =
+            Set.of(CteAssembler.MANUFACTURER, CteAssembler.MODEL, CteAssembler.CATEGORY);
+
+    private final GroupingTaskRepository taskRepository;
+    private final CteRepository cteRepository;
+    private final ResultVersionService versionService;
+    private final ProductSnapshotService snapshotService;
+    private final CteAssembler cteAssembler;
+    private final CteMapper cteMapper;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Переносит товары sourceIds в targetId и удаляет исходные СТЕ
+     */
+    @Transactional
+    public CteChange merge(UUID taskId, UUID targetId, List<UUID> sourceIds) {
+        if (sourceIds.contains(targetId)) {
+            throw new IllegalArgumentException("CTE cannot be merged into itself: " + targetId);
+        }
+        List<UUID> ids = new ArrayList<>(sourceIds);
+        ids.add(targetId);
+        Edit edit = begin(taskId, ids);
+
+        CteEntity target = edit.cte(targetId);
+        Set<Long> products = new LinkedHashSet<>(target.getProductIds());
+        List<CteEntity> sources = sourceIds.stream().distinct().map(edit::cte).toList();
+        sources.forEach(source -> products.addAll(source.getProductIds()));
+
+        edit.recompute(target, products);
+        return edit.finish(CteChange.Operation.MERGE, List.of(target), sources);
+    }
+
+    /**
+     * Выделяет перечисленные товары СТЕ в новую СТЕ
+     */
+    @Transactional
+    public CteChange split(UUID taskId, UUID cteId, List<Long> productIds) {
+        Edit edit = begin(taskId, List.of(cteId));
+        CteEntity cte = edit.cte(cteId);
+        Set<Long> remaining = without(cteId, cte, productIds);
+        if (remaining.isEmpty()) {
+            throw new IllegalArgumentException("Split must leave at least one product in CTE: " + cteId);
+        }
+
+        CteEntity created = CteEntity.builder()
+                .taskId(taskId)
+                .version(edit.version)
+                .taskCreatedAt(cte.getTaskCreatedAt())
+                .build();
+        edit.recompute(created, new LinkedHashSet<>(productIds));
+        edit.recompute(cte, remaining);
+        return edit.finish(CteChange.Operation.SPLIT, List.of(cte, created), List.of());
+    }
+
+    /**
+     * Переносит товары из одной СТЕ в другую; опустевшая СТЕ удаляется
+     */
+    @Transactional
+    public CteChange move(UUID taskId, UUID fromId, UUID toId, List<Long> productIds) {
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("Source and target CTE are the same: " + fromId);
+        }
+        Edit edit = begin(taskId, List.of(fromId, toId));
+        CteEntity from = edit.cte(fromId);
+        CteEntity to = edit.cte(toId);
+        Set<Long> remaining = without(fromId, from, productIds);
+
+        Set<Long> products = new LinkedHashSet<>(to.getProductIds());
+        products.addAll(productIds);
+        edit.recompute(to, products);
+        if (remaining.isEmpty()) {
+            return edit.finish(CteChange.Operation.MOVE, List.of(to), List.of(from));
+        }
+        edit.recompute(from, remaining);
+        return edit.finish(CteChange.Operation.MOVE, List.of(from, to), List.of());
+    }
+
+    private Edit begin(UUID taskId, Collection<UUID> cteIds) {
+        GroupingTaskEntity task = taskRepository.findByIdForUpdate(taskId)
+                .orElseThrow(() -> new ResourceNotFoundException("Task not found: " + taskId));
+        if (task.getStatus() == Status.PENDING || task.getStatus() == Status.PROCESSING) {
+            throw new ConflictException("Grouping is in progress: " + taskId);
+        }
+        if (task.getSourceTaskId() != null || task.getCurrentVersion() == null) {
+            throw new ConflictException("Grouping has no own results: " + taskId);
+        }
+
+        int current = task.getCurrentVersion();
+        return new Edit(taskId, current, versionService.allocate(taskId), resolve(taskId, current, cteIds));
+    }
+
+    /**
+     * Идентификаторы СТЕ опубликованной версии по идентификаторам, полученным клиентом.
+     * Клиент мог получить СТЕ до предыдущих правок: правка копирует версию с детерминированными
+     * идентификаторами, поэтому СТЕ прослеживается по копиям в следующих версиях
+     * (цепочка обрывается, если СТЕ была удалена или задача откатилась к версии без нее).
+     */
+    private Map<UUID, CteEntity> resolve(UUID taskId, int current, Collection<UUID> ids) {
+        Map<UUID, UUID> resolvedIds = new LinkedHashMap<>();
+        for (UUID id : new LinkedHashSet<>(ids)) {
+            resolvedIds.put(id, id);
+        }
+        Map<UUID, CteEntity> published = new HashMap<>();
+        for (CteEntity cte : cteRepository.findByTaskIdAndVersionAndIdIn(taskId, current, resolvedIds.keySet())) {
+            published.put(cte.getId(), cte);
+        }
+        List<UUID> missing = resolvedIds.keySet().stream().filter(id -> !published.containsKey(id)).toList();
+        for (UUID id : missing) {
+            int version = cteRepository.findVersion(taskId, id)
+                    .orElseThrow(() -> new ResourceNotFoundException("CTE not found in task " + taskId + ": " + id));
+            UUID resolved = id;
+            for (int next = version + 1; next <= current; next++) {
+                UUID copy = CteRepository.copiedCteId(taskId, next, resolved);
+                if (cteRepository.existsByTaskIdAndVersionAndId(taskId, next, copy)) {
+                    resolved = copy;
+                    version = next;
+                }
+            }
+            if (version != current) {
+                throw new ResourceNotFoundException("CTE not found in task " + taskId + ": " + id);
+            }
+            resolvedIds.put(id, resolved);
+        }
+        if (!missing.isEmpty()) {
+            for (CteEntity cte : cteRepository.findByTaskIdAndVersionAndIdIn(taskId, current,
+                    missing.stream().map(resolvedIds::get).toList())) {
+                published.put(cte.getId(), cte);
+            }
+        }
+
+        if (new HashSet<>(resolvedIds.values()).size() < resolvedIds.size()) {
+            throw new IllegalArgumentException("The same CTE is listed more than once: " + ids);
+        }
+        Map<UUID, CteEntity> result = new LinkedHashMap<>();
+        resolvedIds.forEach((id, resolved) -> result.put(id, published.get(resolved)));
+        return result;
+    }
+
+    private static Set<Long> without(UUID cteId, CteEntity cte, List<Long> productIds) {
+        Set<Long> remaining = new LinkedHashSet<>(cte.getProductIds());
+        for (Long productId : productIds) {
+            if (!remaining.remove(productId)) {
+                throw new IllegalArgumentException("Product " + productId + " is not in CTE: " + cteId);
+            }
+        }
+        return remaining;
+    }
+
+    private String toJson(List<AttributeJson> attributes) {
+        try {
+            return objectMapper.writeValueAsString(attributes);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize attributes", e);
+        }
+    }
+
+    /**
+     * Состояние одной правки: черновики затронутых СТЕ для новой версии, их прежние важные характеристики
+     * и порядок характеристик, который сохраняется при пересчете. Строки опубликованной версии не меняются.
+     */
+    private final class Edit {
+
+        private final UUID taskId;
+        private final int current;
+        private final int version;
+        /**
+         * Затронутые СТЕ опубликованной версии по идентификаторам, полученным клиентом
+         */
+        private final Map<UUID, CteEntity> published;
+        private final Map<UUID, CteEntity> drafts = new HashMap<>();
+        private final List<AttributeJson> previousImportant = new ArrayList<>();
+        private final Set<String> importantNames = new HashSet<>();
+        private final List<String> secondaryNames = new ArrayList<>();
+        private ProductSnapshot snapshot;
+
+        private Edit(UUID taskId, int current, int version, Map<UUID, CteEntity> published) {
+            this.taskId = taskId;
+            this.current = current;
+            this.version = version;
+            this.published = published;
+            for (CteEntity cte : published.values()) {
+                previousImportant.addAll(cte.getImportantAttributes());
+                cte.getImportantAttributes().forEach(attribute -> importantNames.add(attribute.getName()));
+                cte.getSecondaryAttributes().forEach(attribute -> {
+                    if (!secondaryNames.contains(attribute.getName())) {
+                        secondaryNames.add(attribute.getName());
+                    }
+                });
+            }
+            importantNames.removeAll(BUILT_IN_ATTRIBUTES);
+        }
+
+        /**
+         * Черновик СТЕ для новой версии по идентификатору, полученному клиентом
+         */
+        CteEntity cte(UUID id) {
+            return drafts.computeIfAbsent(id, key -> {
+                CteEntity cte = published.get(key);
+                return CteEntity.builder()
+                        .taskId(taskId)
+                        .version(version)
+                        .taskCreatedAt(cte.getTaskCreatedAt())
+                        .imageUrl(cte.getImageUrl())
+                        .importantAttributes(new ArrayList<>(cte.getImportantAttributes()))
+                        .secondaryAttributes(new ArrayList<>(cte.getSecondaryAttributes()))
+                        .productIds(new ArrayList<>(cte.getProductIds()))
+                        .build();
+            });
+        }
+
+        /**
+         * Пересобирает СТЕ по новому набору товаров; товары, которых нет в снапшоте, сохраняются в составе
+         */
+        void recompute(CteEntity cte, Set<Long> productIds) {
+            if (snapshot == null) {
+                snapshot = snapshotService.acquire();
+            }
+            int[] rows = new int[productIds.size()];
+            int size = 0;
+            List<Long> missing = new ArrayList<>();
+            for (Long productId : productIds) {
+                int row = snapshot.rowOf(productId);
+                if (row >= 0) {
+                    rows[size++] = row;
+                } else {
+                    missing.add(productId);
+                }
+            }
+            if (size == 0) {
+                cte.setProductIds(new ArrayList<>(productIds));
+                return;
+            }
+
+            rows = Arrays.copyOf(rows, size);
+            CteEntity rebuilt = cteAssembler.assemble(taskId, version, snapshot, rows, selection(rows));
+            List<Long> products = new ArrayList<>(rebuilt.getProductIds());
+            products.addAll(missing);
+            cte.setImageUrl(rebuilt.getImageUrl());
+            cte.setImportantAttributes(rebuilt.getImportantAttributes());
+            cte.setSecondaryAttributes(rebuilt.getSecondaryAttributes());
+            cte.setProductIds(products);
+        }
+
+        /**
+         * Важными остаются характеристики, которые были важными у затронутых СТЕ
+         */
+        private AttributeSelection selection(int[] rows) {
+            Set<Integer> important = new LinkedHashSet<>();
+            Set<Integer> secondary = new LinkedHashSet<>();
+            for (int row : rows) {
+                for (int i = 0; i < snapshot.attributeCount(row); i++) {
+                    int nameId = snapshot.attributeNameId(row, i);
+                    if (importantNames.contains(snapshot.attributeName(nameId))) {
+                        important.add(nameId);
+                    } else {
+                        secondary.add(nameId);
+                    }
+                }
+            }
+            List<Integer> ranked = new ArrayList<>(secondary);
+            ranked.sort(Comparator.comparingInt(nameId -> {
+                int index = secondaryNames.indexOf(snapshot.attributeName(nameId));
+                return index < 0 ? Integer.MAX_VALUE : index;
+            }));
+            return new AttributeSelection(List.copyOf(important), ranked, 1, AttributeSelection.Source.STATISTICS);
+        }
+
+        /**
+         * Записывает новую версию: незатронутые СТЕ копируются из опубликованной, затронутые - из черновиков
+         * updated (черновики deleted не записываются); счетчики переносятся и корректируются, версия публикуется
+         */
+        CteChange finish(CteChange.Operation operation, List<CteEntity> updated, List<CteEntity> deleted) {
+            Set<UUID> touched = new HashSet<>();
+            published.values().forEach(cte -> touched.add(cte.getId()));
+            cteRepository.copyVersionExcept(taskId, current, version, touched);
+            cteRepository.copyFacets(taskId, current, version);
+            List<CteEntity> saved = cteRepository.saveAll(updated);
+
+            List<AttributeJson> currentImportant = new ArrayList<>();
+            saved.forEach(cte -> currentImportant.addAll(cte.getImportantAttributes()));
+            cteRepository.adjustFacets(taskId, version, toJson(previousImportant), -1);
+            cteRepository.adjustFacets(taskId, version, toJson(currentImportant), 1);
+            cteRepository.deleteEmptyFacets(taskId, version);
+
+            if (!versionService.publish(taskId, version, true)) {
+                throw new ConflictException("Results of task " + taskId + " changed during the edit");
+            }
+            // Результаты правились вручную и больше не совпадают с группировкой запроса
+            taskRepository.clearProductsVersion(taskId);
+
+            log.info("Task {}: {} published version {}, updated {} CTEs, removed {}", taskId, operation, version,
+                    saved.size(), deleted.size());
+            Set<UUID> replaced = new LinkedHashSet<>(published.keySet());
+            replaced.addAll(touched);
+            return new CteChange(taskId, operation, version, saved.stream().map(cteMapper::toSummary).toList(),
+                    List.copyOf(replaced), Instant.now());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package ru.tenderhack.cte.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.tenderhack.cte.dto.CteExport;
+import ru.tenderhack.cte.dto.ExportFormat;
+import ru.tenderhack.cte.entity.AttributeJson;
+import ru.tenderhack.cte.entity.CteEntity;
+import ru.tenderhack.cte.mapper.CteMapper;
+import ru.tenderhack.cte.repository.CteRepository;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Потоковая выгрузка всех СТЕ версии результата прямо из курсора БД.
+ * Память не зависит от числа СТЕ: сущности отсоединяются сразу после записи.
+ * Записи идут в порядке id, поэтому прерванную выгрузку можно продолжить с последнего полученного id.
+ */
+@Slf4j
+@Service
+public class CteExportService {
+
+    private static final UUID MIN_UUID = new UUID(0L, 0L);
+    private static final int FLUSH_EVERY = 1000;
+    private static final String CSV_HEADER = "id,image_url,important_attributes,secondary_attributes,product_ids\n";
+
+    private final CteRepository cteRepository;
+    private final CteMapper cteMapper;
+    private final EntityManager entityManager;
+    private final ObjectWriter jsonWriter;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public CteExportService(CteRepository cteRepository,
+                            CteMapper cteMapper,
+                            EntityManager entityManager,
+                            ObjectMapper objectMapper,
+                            PlatformTransactionManager transactionManager) {
+        this.cteRepository = cteRepository;
+        this.cteMapper = cteMapper;
+        this.entityManager = entityManager;
+        this.jsonWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Пишет выгрузку в поток ответа
+     *
+     * @return количество выгруженных СТЕ
+     */
+    public long write(CteExport export, OutputStream target) throws IOException {
+        OutputStream out = export.gzip() ? new GZIPOutputStream(target, 1 << 16) : target;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+
+        Long count = readOnlyTransaction.execute(status -> {
+            long written = 0;
+            UUID afterId = export.afterId() != null ? export.afterId() : MIN_UUID;
+            try (Stream<CteEntity> ctes = cteRepository.streamForExport(export.taskId(), export.version(), afterId)) {
+                if (export.format() == ExportFormat.CSV && export.afterId() == null) {
+                    writer.write(CSV_HEADER);
+                }
+                var iterator = ctes.iterator();
+                while (iterator.hasNext()) {
+                    CteEntity cte = iterator.next();
+                    if (export.format() == ExportFormat.NDJSON) {
+                        writeJsonLine(writer, cte);
+                    } else {
+                        writeCsvLine(writer, cte);
+                    }
+                    entityManager.detach(cte);
+                    if (++written % FLUSH_EVERY == 0) {
+                        writer.flush();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return written;
+        });
+
+        writer.flush();
+        if (out instanceof GZIPOutputStream gzip) {
+            gzip.finish();
+        }
+        log.info("Exported {} CTEs of task {} version {} as {}", count, export.taskId(), export.version(), export.format());
+        return count == null ? 0 : count;
+    }
+
+    private void writeJsonLine(Writer writer, CteEntity cte) throws IOException {
+        jsonWriter.writeValue(writer, cteMapper.toDetail(cte));
+        writer.write('\n');
+    }
+
+    private void writeCsvLine(Writer writer, CteEntity cte) throws IOException {
+        writer.write(cte.getId().toString());
+        writer.write(',');
+        writer.write(csv(cte.getImageUrl()));
+        writer.write(',');
+        writer.write(csv(formatAttributes(cte.getImportantAttributes())));
+        writer.write(',');
+        writer.write(csv(formatAttributes(cte.getSecondaryAttributes())));
+        writer.write(',');
+        writer.write(csv(cte.getProductIds().stream().map(String::valueOf).collect(Collectors.joining(";"))));
+        writer.write('\n');
+    }
+
+    /**
+     * Характеристики в исходном формате raw_products: "Ключ:Значение;Ключ:Значение"
+     */
+    private static String formatAttributes(List<AttributeJson> attributes) {
+        return attributes.stream()
+                .map(attribute -> attribute.getName() + ":" + attribute.getValue())
+                .collect(Collectors.joining(";"));
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,634 @@
+package ru.tenderhack.cte.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.tenderhack.cte.config.GroupingProperties;
+import ru.tenderhack.cte.entity.CteEntity;
+import ru.tenderhack.cte.exception.ResourceNotFoundException;
+import ru.tenderhack.cte.repository.CteRepository;
+import ru.tenderhack.cte.repository.GroupingTaskRepository;
+import ru.tenderhack.cte.snapshot.ProductSnapshot;
+import ru.tenderhack.cte.snapshot.ProductSnapshotService;
+import ru.tenderhack.cte.spill.ExternalLongSorter;
+import ru.tenderhack.cte.spill.GroupSpool;
+import ru.tenderhack.cte.spill.RowSpool;
+import ru.tenderhack.cte.spill.SpillContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Движок группировки товаров в СТЕ.
+ * Отобранные товары разбиваются на независимые партиции по категории,
+ * крупные категории - по производителю, а крупные производители - по хэшу модели.
+ * Партиции обрабатываются на ForkJoinPool: свободные потоки забирают работу у занятых,
+ * поэтому одна огромная категория не оставляет остальные ядра без дела.
+ * Данные товаров читаются из колоночного снапшота (mmap), в heap хранятся только номера строк.
+ * Запуск идет в две фазы: группировка партиций со сбором статистики характеристик,
+ * затем выбор важных характеристик по категориям и сборка СТЕ.
+ * Номера строк отбора и партиций, сортировка ключей и группы между фазами укладываются в бюджет памяти
+ * grouping.memory-budget (свой у каждого отбора), излишек сбрасывается во временные файлы отбора.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GroupingEngine {
+
+    // Доля прогресса фазы 1 (группы по партициям); остаток - сборка и сохранение СТЕ
+    private static final int PARTITION_PHASE_PERCENT = 50;
+
+    private final ProductQueryService productQueryService;
+    private final ProductSnapshotService snapshotService;
+    private final CteRepository cteRepository;
+    private final GroupingTaskRepository taskRepository;
+    private final CteAssembler cteAssembler;
+    private final AttributeSelector attributeSelector;
+    private final GroupingProperties groupingProperties;
+    private final ForkJoinPool groupingPool;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Слушатель прогресса группировки
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(int percent, String message);
+    }
+
+    /**
+     * Отбирает товары, подходящие под запрос, и раскладывает их по категориям.
+     * Отбор держит временные файлы: вызывающий закрывает его после группировки.
+     */
+    public Selection select(String query) {
+        Selection selection = new Selection(snapshotService.acquire(), createSpillContext());
+        try {
+            selection.matched = productQueryService.forEachMatchingProductId(query, selection::add);
+            return selection;
+        } catch (RuntimeException e) {
+            selection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Отбор товаров сразу для всех запросов пакета: один снапшот и один оператор отбора на пакет.
+     * Разобранные характеристики и канонические ключи товаров берутся из общего снапшота,
+     * поэтому товары, попавшие в несколько запросов, не разбираются повторно.
+     *
+     * @return отборы в порядке запросов
+     */
+    public List<Selection> selectAll(List<String> queries) {
+        ProductSnapshot snapshot = snapshotService.acquire();
+        List<Selection> selections = new ArrayList<>(queries.size());
+        try {
+            for (int i = 0; i < queries.size(); i++) {
+                selections.add(new Selection(snapshot, createSpillContext()));
+            }
+            long[] matched = productQueryService.forEachMatchingProductId(queries,
+                    (queryIndex, productId) -> selections.get(queryIndex).add(productId));
+            for (int i = 0; i < queries.size(); i++) {
+                selections.get(i).matched = matched[i];
+            }
+            return selections;
+        } catch (RuntimeException e) {
+            selections.forEach(Selection::close);
+            throw e;
+        }
+    }
+
+    /**
+     * Стратифицированная выборка для предварительного результата: из каждой пары категория/производитель
+     * берется доля товаров, пропорциональная maxProducts, но не меньше одного товара.
+     * Выборка идет целыми группами (по хэшу ключа группы), чтобы СТЕ выборки не дробились.
+     */
+    public Selection sample(Selection selection, int maxProducts) {
+        ProductSnapshot snapshot = selection.snapshot;
+        double rate = Math.min(1.0, (double) maxProducts / Math.max(1, selection.rows()));
+        Selection sampled = new Selection(snapshot, createSpillContext());
+        sampled.matched = selection.matched;
+        SpillContext spill = sampled.spill;
+        try {
+            for (CategoryBucket category : selection.categories.values()) {
+                CategoryBucket target = sampled.bucket(category.categoryId());
+                forEachRun(category.rows(), snapshot::manufacturerKeyCode, spill,
+                        (manufacturerCode, stratum, length) -> sampleStratum(snapshot, stratum, length, rate, target, spill));
+            }
+            return sampled;
+        } catch (IOException e) {
+            sampled.close();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            sampled.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Группирует отобранные товары и сохраняет СТЕ как версию результата задачи.
+     * Версия не видна читателям до публикации. Отбор расходуется: номера строк категорий
+     * переходят к партициям и освобождаются по мере разбиения.
+     *
+     * @param consultLlm можно ли обращаться к LLM за выбором характеристик (не нужно для быстрого предпросмотра)
+     * @return количество созданных СТЕ
+     */
+    public long group(UUID taskId, int version, Selection selection, ProgressListener listener, boolean consultLlm) {
+        // Ключ секции cte_entities: все СТЕ задачи пишутся в секцию месяца ее создания
+        LocalDateTime taskCreatedAt = taskRepository.findCreatedAt(taskId)
+                .orElseThrow(() -> new ResourceNotFoundException("Task not found: " + taskId));
+        ProductSnapshot snapshot = selection.snapshot;
+        long selected = selection.rows();
+        SpillContext spill = selection.spill;
+        List<PartitionGroups> grouped = new ArrayList<>();
+        try {
+            try {
+                // Фаза 1: группы и статистика характеристик по партициям
+                groupPartitions(taskId, snapshot, selection.categories, spill, listener, grouped);
+
+                Map<Long, AttributeStatistics> statistics = new HashMap<>();
+                for (PartitionGroups result : grouped) {
+                    statistics.merge(result.categoryId(), result.statistics(), (left, right) -> {
+                        left.merge(right);
+                        return left;
+                    });
+                }
+                Map<Long, AttributeSelection> selections = attributeSelector.selectAll(taskId, snapshot,
+                        statistics.values(), consultLlm);
+
+                // Фаза 2: сборка и сохранение СТЕ
+                ProgressTracker progress = new ProgressTracker(selected, PARTITION_PHASE_PERCENT, 100,
+                        "Сохранено товаров", listener);
+                AtomicLong created = new AtomicLong();
+                invokeAll(grouped.stream()
+                        .<Runnable>map(result -> () -> created.addAndGet(saveGroups(taskId, version, taskCreatedAt,
+                                snapshot, result,
+                                selections.getOrDefault(result.categoryId(), AttributeSelection.empty()),
+                                progress)))
+                        .toList());
+                return created.get();
+            } finally {
+                for (PartitionGroups result : grouped) {
+                    result.groups().close();
+                }
+                reportSpill(taskId, spill);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Grouping spill failed for task " + taskId, e);
+        }
+    }
+
+    /**
+     * Фаза 1: разбиение на партиции, группы и статистика характеристик по партициям.
+     * Номера строк партиций освобождаются в конце фазы: дальше партиции не нужны.
+     */
+    private void groupPartitions(UUID taskId, ProductSnapshot snapshot, Map<Long, CategoryBucket> categories,
+                                 SpillContext spill, ProgressListener listener, List<PartitionGroups> grouped)
+            throws IOException {
+        List<ProductPartition> partitions = plan(snapshot, categories.values(), spill);
+        try {
+            long selected = partitions.stream().mapToLong(ProductPartition::size).sum();
+            log.info("Task {}: {} products in {} categories split into {} partitions",
+                    taskId, selected, categories.size(), partitions.size());
+            listener.onProgress(0, "Отобрано товаров: " + selected + ", партиций: " + partitions.size());
+
+            // Прогресс растет по мере завершения партиций, пропорционально их размеру
+            ProgressTracker progress = new ProgressTracker(selected, 0, PARTITION_PHASE_PERCENT,
+                    "Сгруппировано товаров", listener);
+            List<Runnable> jobs = new ArrayList<>(partitions.size());
+            for (ProductPartition partition : partitions) {
+                PartitionGroups result = new PartitionGroups(partition.categoryId(), partition.size(),
+                        new AttributeStatistics(partition.categoryId(), partition.rows().first()), new GroupSpool(spill));
+                grouped.add(result);
+                jobs.add(() -> {
+                    groupPartition(taskId, snapshot, spill, partition, result);
+                    progress.advance(partition.size());
+                });
+            }
+            invokeAll(jobs);
+        } finally {
+            closeAll(partitions);
+        }
+    }
+
+    /**
+     * Разбиение категорий на партиции не больше maxPartitionSize (по возможности).
+     * Небольшая категория становится партицией целиком: номера строк передаются без копирования.
+     * Строки крупной категории упорядочиваются по коду производителя внешней сортировкой в пределах бюджета
+     * и раскладываются по новым партициям, после чего освобождаются. Номера строк партиций учтены в бюджете
+     * и сбрасываются на диск сверх него (см. {@link RowSpool}).
+     * Партиции отсортированы по убыванию размера, чтобы крупные начинали обрабатываться первыми.
+     */
+    List<ProductPartition> plan(ProductSnapshot snapshot, Collection<CategoryBucket> categories, SpillContext spill)
+            throws IOException {
+        int maxSize = groupingProperties.maxPartitionSize();
+        List<ProductPartition> partitions = new ArrayList<>();
+        try {
+            for (CategoryBucket category : categories) {
+                Long categoryId = category.categoryId();
+                if (category.size() <= maxSize) {
+                    partitions.add(new ProductPartition(categoryId, null, category.rows()));
+                    continue;
+                }
+                try {
+                    forEachRun(category.rows(), snapshot::manufacturerKeyCode, spill,
+                            (manufacturerCode, rows, length) -> splitManufacturer(snapshot, spill, categoryId,
+                                    manufacturerCode, rows, length, partitions));
+                } finally {
+                    category.rows().close();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            closeAll(partitions);
+            throw e;
+        }
+
+        partitions.sort(Comparator.comparingInt(ProductPartition::size).reversed());
+        return partitions;
+    }
+
+    /**
+     * Партиции производителя: крупный производитель делится на бакеты по хэшу модели,
+     * товары одной модели попадают в один бакет, поэтому группы не разрываются
+     */
+    private void splitManufacturer(ProductSnapshot snapshot, SpillContext spill, Long categoryId, int manufacturerCode,
+                                   int[] rows, int length, List<ProductPartition> partitions) throws IOException {
+        int maxSize = groupingProperties.maxPartitionSize();
+        String manufacturer = snapshot.manufacturerKey(manufacturerCode);
+        int buckets = (length + maxSize - 1) / maxSize;
+        RowSpool[] split = new RowSpool[buckets];
+        for (int i = 0; i < length; i++) {
+            int bucket = buckets == 1 ? 0 : modelBucket(snapshot, rows[i], buckets);
+            if (split[bucket] == null) {
+                split[bucket] = new RowSpool(spill);
+                partitions.add(new ProductPartition(categoryId, manufacturer, split[bucket]));
+            }
+            split[bucket].add(rows[i]);
+        }
+    }
+
+    private static int modelBucket(ProductSnapshot snapshot, int row, int buckets) {
+        return Math.floorMod(Integer.hashCode(snapshot.modelKeyCode(row)), buckets);
+    }
+
+    private void invokeAll(List<Runnable> jobs) {
+        List<ForkJoinTask<?>> tasks = jobs.stream()
+                .<ForkJoinTask<?>>map(ForkJoinTask::adapt)
+                .toList();
+        groupingPool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * Группы партиции: строки сортируются по (хэш ключа группы, номер строки) в пределах бюджета памяти,
+     * подряд идущие строки с одинаковым хэшем разбиваются по самому ключу (коллизии хэша)
+     */
+    private void groupPartition(UUID taskId, ProductSnapshot snapshot, SpillContext spill, ProductPartition partition,
+                                PartitionGroups result) {
+        log.debug("Task {}: grouping partition category={}, manufacturer={}, size={}",
+                taskId, partition.categoryId(), partition.manufacturer(), partition.size());
+        try {
+            forEachRun(partition.rows(), row -> groupKey(snapshot, row).hashCode(), spill,
+                    (hash, run, length) -> emitGroups(snapshot, run, length, result));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Передает группы отрезка одного хэша в хранилище партиции. Обычно отрезок - одна группа;
+     * при коллизии хэша строки разбиваются по ключу в порядке первого появления ключа.
+     */
+    private static void emitGroups(ProductSnapshot snapshot, int[] run, int length, PartitionGroups result)
+            throws IOException {
+        if (length == 1) {
+            addGroup(snapshot, new int[]{run[0]}, result);
+            return;
+        }
+        String[] keys = new String[length];
+        for (int i = 0; i < length; i++) {
+            keys[i] = groupKey(snapshot, run[i]);
+        }
+        boolean[] emitted = new boolean[length];
+        for (int first = 0; first < length; first++) {
+            if (emitted[first]) {
+                continue;
+            }
+            int count = 0;
+            for (int i = first; i < length; i++) {
+                if (!emitted[i] && keys[i].equals(keys[first])) {
+                    count++;
+                }
+            }
+            int[] rows = new int[count];
+            count = 0;
+            for (int i = first; i < length; i++) {
+                if (!emitted[i] && keys[i].equals(keys[first])) {
+                    emitted[i] = true;
+                    rows[count++] = run[i];
+                }
+            }
+            addGroup(snapshot, rows, result);
+        }
+    }
+
+    private static void addGroup(ProductSnapshot snapshot, int[] rows, PartitionGroups result) throws IOException {
+        result.groups().add(rows);
+        result.statistics().addCluster(snapshot, rows);
+    }
+
+    /**
+     * Обходит строки отрезками одного ключа: пары (ключ, номер строки) сортируются {@link ExternalLongSorter}
+     * в пределах бюджета памяти (излишек сбрасывается на диск), подряд идущие строки с одинаковым ключом
+     * передаются обработчику одним отрезком. Буфер отрезка учтен в бюджете, переиспользуется
+     * и действителен только во время вызова обработчика.
+     */
+    static void forEachRun(int[] rows, int size, IntUnaryOperator keyOf, SpillContext spill, RunConsumer consumer)
+            throws IOException {
+        forEachRun(rowConsumer -> {
+            for (int i = 0; i < size; i++) {
+                rowConsumer.accept(rows[i]);
+            }
+        }, keyOf, spill, consumer);
+    }
+
+    static void forEachRun(RowSpool rows, IntUnaryOperator keyOf, SpillContext spill, RunConsumer consumer)
+            throws IOException {
+        forEachRun(rows::forEach, keyOf, spill, consumer);
+    }
+
+    private static void forEachRun(RowSource rows, IntUnaryOperator keyOf, SpillContext spill, RunConsumer consumer)
+            throws IOException {
+        try (ExternalLongSorter sorter = new ExternalLongSorter(spill)) {
+            rows.forEach(row -> sorter.add(((long) keyOf.applyAsInt(row) << 32) | (row & 0xFFFFFFFFL)));
+
+            PrimitiveIterator.OfLong sorted = sorter.sorted();
+            int[] run = new int[16];
+            long reserved = 0;
+            int length = 0;
+            int runKey = 0;
+            try {
+                while (sorted.hasNext()) {
+                    long value = sorted.nextLong();
+                    int key = (int) (value >>> 32);
+                    if (length > 0 && key != runKey) {
+                        consumer.accept(runKey, run, length);
+                        length = 0;
+                    }
+                    if (length == run.length) {
+                        long extra = (long) run.length * Integer.BYTES;
+                        spill.budget().reserve(extra);
+                        reserved += extra;
+                        run = Arrays.copyOf(run, run.length * 2);
+                    }
+                    runKey = key;
+                    run[length++] = (int) value;
+                }
+                if (length > 0) {
+                    consumer.accept(runKey, run, length);
+                }
+            } finally {
+                spill.budget().release(reserved);
+            }
+        }
+    }
+
+    /**
+     * Обработчик отрезка строк с одинаковым ключом: rows[0..length)
+     */
+    @FunctionalInterface
+    interface RunConsumer {
+        void accept(int key, int[] rows, int length) throws IOException;
+    }
+
+    /**
+     * Источник номеров строк для {@link #forEachRun}: массив или {@link RowSpool}
+     */
+    @FunctionalInterface
+    private interface RowSource {
+        void forEach(RowSpool.RowConsumer consumer) throws IOException;
+    }
+
+    private static void closeAll(List<ProductPartition> partitions) throws IOException {
+        for (ProductPartition partition : partitions) {
+            partition.rows().close();
+        }
+    }
+
+    private long saveGroups(UUID taskId, int version, LocalDateTime taskCreatedAt, ProductSnapshot snapshot,
+                            PartitionGroups result, AttributeSelection selection, ProgressTracker progress) {
+        int saveBatch = groupingProperties.saveBatchSize();
+        List<CteEntity> batch = new ArrayList<>(saveBatch);
+        try {
+            result.groups().forEach(rows -> {
+                CteEntity cte = cteAssembler.assemble(taskId, version, snapshot, rows, selection);
+                cte.setTaskCreatedAt(taskCreatedAt);
+                batch.add(cte);
+                if (batch.size() >= saveBatch) {
+                    cteRepository.saveAll(batch);
+                    batch.clear();
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!batch.isEmpty()) {
+            cteRepository.saveAll(batch);
+        }
+
+        progress.advance(result.size());
+        return result.groups().size();
+    }
+
+    private void reportSpill(UUID taskId, SpillContext spill) {
+        meterRegistry.counter("grouping.spill.bytes").increment(spill.spilledBytes());
+        meterRegistry.counter("grouping.spill.files").increment(spill.spillFiles());
+        meterRegistry.counter("grouping.merge.passes").increment(spill.mergePasses());
+        if (spill.spilledBytes() > 0) {
+            log.info("Task {}: memory budget exceeded, spilled {} bytes to {} files, {} merge passes",
+                    taskId, spill.spilledBytes(), spill.spillFiles(), spill.mergePasses());
+        }
+    }
+
+    private SpillContext createSpillContext() {
+        try {
+            return SpillContext.create(Path.of(groupingProperties.spillDir()),
+                    groupingProperties.memoryBudget().toBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Берет из стратума целые группы (отрезки одного хэша ключа группы), пока не набрана квота
+     */
+    private static void sampleStratum(ProductSnapshot snapshot, int[] rows, int length, double rate,
+                                      CategoryBucket target, SpillContext spill) throws IOException {
+        int quota = Math.max(1, (int) Math.round(length * rate));
+        long before = target.size();
+        forEachRun(rows, length, row -> groupKey(snapshot, row).hashCode(), spill, (hash, group, groupLength) -> {
+            if (target.size() - before < quota) {
+                for (int i = 0; i < groupLength; i++) {
+                    target.add(group[i]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Ключ группы (точное блокирование в пределах категории): коды канонических ID производителя и ключа модели
+     * из словарей снапшота, без модели - нормализованное название. Строки модели при этом не декодируются.
+     */
+    static String groupKey(ProductSnapshot snapshot, int row) {
+        int manufacturer = snapshot.manufacturerKeyCode(row);
+        return snapshot.hasModelKey(row)
+                ? manufacturer + "|m:" + snapshot.modelKeyCode(row)
+                : manufacturer + "|t:" + normalizeKey(snapshot.title(row));
+    }
+
+    static String normalizeKey(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]", "");
+    }
+
+    /**
+     * Партиция товаров, обрабатываемая независимо от остальных
+     */
+    record ProductPartition(Long categoryId, String manufacturer, RowSpool rows) {
+
+        int size() {
+            return (int) rows.size();
+        }
+    }
+
+    /**
+     * Группы товаров партиции и статистика их характеристик
+     */
+    record PartitionGroups(Long categoryId, int size, AttributeStatistics statistics, GroupSpool groups) {
+    }
+
+    /**
+     * Товары, отобранные по запросу (или выборка из них), разложенные по категориям
+     */
+    public static final class Selection implements AutoCloseable {
+
+        private final ProductSnapshot snapshot;
+        private final SpillContext spill;
+        private final Map<Long, CategoryBucket> categories = new HashMap<>();
+        private long matched;
+        private boolean closed;
+
+        private Selection(ProductSnapshot snapshot, SpillContext spill) {
+            this.snapshot = snapshot;
+            this.spill = spill;
+        }
+
+        private void add(long productId) {
+            int row = snapshot.rowOf(productId);
+            if (row < 0) {
+                return;
+            }
+            try {
+                bucket(snapshot.categoryId(row)).add(row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private CategoryBucket bucket(Long categoryId) {
+            return categories.computeIfAbsent(categoryId, id -> new CategoryBucket(id, new RowSpool(spill)));
+        }
+
+        /**
+         * Количество товаров, подошедших под запрос
+         */
+        public long matched() {
+            return matched;
+        }
+
+        /**
+         * Количество товаров в отборе
+         */
+        public long rows() {
+            return categories.values().stream().mapToLong(CategoryBucket::size).sum();
+        }
+
+        /**
+         * Удаляет временные файлы отбора; ошибка удаления не влияет на результат группировки
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                spill.close();
+            } catch (IOException e) {
+                log.warn("Failed to delete grouping spill files: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Номера строк снапшота, относящихся к одной категории (в пределах бюджета отбора)
+     */
+    record CategoryBucket(Long categoryId, RowSpool rows) {
+
+        void add(int row) throws IOException {
+            rows.add(row);
+        }
+
+        long size() {
+            return rows.size();
+        }
+    }
+
+    /**
+     * Потокобезопасный учет прогресса фазы: обработанные товары отображаются на отрезок процентов [from, to],
+     * уведомление отправляется при изменении целого процента. Уведомления упорядочены:
+     * вызывается не чаще раза на партицию, поэтому блокировка не мешает параллельной обработке.
+     */
+    static final class ProgressTracker {
+
+        private final long total;
+        private final int from;
+        private final int to;
+        private final String message;
+        private final ProgressListener listener;
+        private long processed;
+        private int lastPercent;
+
+        ProgressTracker(long total, int from, int to, String message, ProgressListener listener) {
+            this.total = total;
+            this.from = from;
+            this.to = to;
+            this.message = message;
+            this.listener = listener;
+            this.lastPercent = from;
+        }
+
+        synchronized void advance(long products) {
+            processed += products;
+            int percent = total == 0 ? to : (int) Math.min(to, from + processed * (to - from) / total);
+            if (percent > lastPercent) {
+                lastPercent = percent;
+                listener.onProgress(percent, message + ": " + processed + " из " + total);
+            }
+        }
+    }
+}
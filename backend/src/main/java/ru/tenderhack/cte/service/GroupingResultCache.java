@@ -0,0 +1,135 @@
+package ru.tenderhack.cte.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.tenderhack.cte.entity.GroupingTaskEntity;
+import ru.tenderhack.cte.entity.Status;
+import ru.tenderhack.cte.repository.GroupingTaskRepository;
+import ru.tenderhack.cte.repository.RawProductRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Кэш результатов группировки.
+ * Задача с эквивалентным (после нормализации) запросом на той же версии raw_products
+ * не пересчитывается, а ссылается на набор СТЕ уже готовой задачи (source_task_id).
+ * Изменение raw_products увеличивает версию товаров, и старые записи перестают совпадать.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GroupingResultCache {
+
+    private static final List<Status> REUSABLE_STATUSES = List.of(Status.COMPLETED, Status.APPROVED);
+
+    private final GroupingTaskRepository taskRepository;
+    private final RawProductRepository rawProductRepository;
+    private final QueryNormalizer queryNormalizer;
+    private final ResultVersionService versionService;
+    private final TaskMetadataCache metadataCache;
+
+    // Быстрый путь без обращения к БД: (нормализованный запрос, версия товаров) -> задача-источник
+    private final Map<CacheKey, UUID> sourceTasks = new ConcurrentHashMap<>();
+
+    /**
+     * Вычисляет ключ кэша для запроса на текущей версии товаров
+     */
+    public CacheKey keyFor(String query) {
+        return new CacheKey(queryNormalizer.normalize(query), rawProductRepository.findProductsVersion());
+    }
+
+    /**
+     * Ищет готовую задачу, результаты которой можно переиспользовать
+     */
+    @Transactional(readOnly = true)
+    public Optional<UUID> findReusableTask(CacheKey key) {
+        UUID cached = sourceTasks.get(key);
+        if (cached != null) {
+            Optional<GroupingTaskEntity> task = taskRepository.findById(cached);
+            if (task.isPresent() && isReusable(task.get(), key)) {
+                return Optional.of(cached);
+            }
+            sourceTasks.remove(key, cached);
+        }
+
+        Optional<UUID> found = taskRepository
+                .findFirstByNormalizedQueryAndProductsVersionAndSourceTaskIdIsNullAndStatusInOrderByCreatedAtDesc(
+                        key.normalizedQuery(), key.productsVersion(), REUSABLE_STATUSES)
+                .map(GroupingTaskEntity::getId);
+        found.ifPresent(id -> register(key, id));
+        return found;
+    }
+
+    /**
+     * Регистрирует задачу как источник результатов для ключа
+     */
+    public void register(CacheKey key, UUID taskId) {
+        sourceTasks.entrySet().removeIf(entry -> entry.getKey().productsVersion() < key.productsVersion());
+        sourceTasks.put(key, taskId);
+    }
+
+    /**
+     * Удаляет задачу из кэша (перед перезаписью её результатов)
+     */
+    public void evict(UUID taskId) {
+        sourceTasks.values().removeIf(taskId::equals);
+    }
+
+    /**
+     * Возвращает задачу, которой фактически принадлежат результаты (сама задача или её источник)
+     */
+    public TaskMetadata resolveResultTask(UUID taskId) {
+        TaskMetadata task = metadataCache.get(taskId);
+        if (task.sourceTaskId() == null) {
+            return task;
+        }
+        return metadataCache.find(task.sourceTaskId()).orElse(task);
+    }
+
+    /**
+     * Находит задачи, ссылающиеся на результаты указанной
+     */
+    @Transactional(readOnly = true)
+    public List<UUID> findDependentTasks(UUID sourceTaskId) {
+        return taskRepository.findBySourceTaskId(sourceTaskId).stream()
+                .map(GroupingTaskEntity::getId)
+                .toList();
+    }
+
+    /**
+     * Отвязывает задачу-ссылку от источника после того, как ей скопированы результаты (copy-on-write).
+     * Если задача уже отвязана или удалена, копия ей не нужна и удаляется.
+     *
+     * @param version версия, под которой сохранена копия (null - копировать было нечего)
+     */
+    @Transactional
+    public void detach(UUID taskId, UUID sourceTaskId, Integer version) {
+        if (taskRepository.detachFromSource(taskId, sourceTaskId) == 0) {
+            log.debug("Task {} no longer references task {}, copied results are discarded", taskId, sourceTaskId);
+            if (version != null) {
+                versionService.discard(taskId, version);
+            }
+            return;
+        }
+        metadataCache.evict(taskId);
+        if (version != null) {
+            versionService.adopt(taskId, version);
+        }
+    }
+
+    private boolean isReusable(GroupingTaskEntity task, CacheKey key) {
+        return task.getSourceTaskId() == null
+                && REUSABLE_STATUSES.contains(task.getStatus())
+                && key.normalizedQuery().equals(task.getNormalizedQuery())
+                && key.productsVersion() == (task.getProductsVersion() == null ? -1 : task.getProductsVersion());
+    }
+
+    public record CacheKey(String normalizedQuery, long productsVersion) {
+    }
+}
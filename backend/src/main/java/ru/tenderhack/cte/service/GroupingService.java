@@ -1,20 +1,57 @@
 package ru.tenderhack.cte.service;
 
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import ru.tenderhack.cte.config.GroupingProperties;
 import ru.tenderhack.cte.dto.TaskStatus;
+import ru.tenderhack.cte.entity.Status;
+import ru.tenderhack.cte.repository.GroupingTaskRepository;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class GroupingService {
 
     private final NotificationService notificationService;
-    // private final LlmService llmService; // Ваш сервис LLM
-    // private final CteRepository cteRepository; // Репозиторий
+    private final GroupingEngine groupingEngine;
+    private final GroupingTaskRepository taskRepository;
+    private final GroupingResultCache resultCache;
+    private final ResultVersionService versionService;
+    private final GroupingProperties groupingProperties;
+    private final TaskStatusTracker statusTracker;
+    private final AsyncTaskExecutor taskExecutor;
+
+    // Ограничение одновременных прогонов: с виртуальными потоками @Async не ограничен размером пула
+    private final Semaphore runSlots;
+
+    public GroupingService(NotificationService notificationService,
+                           GroupingEngine groupingEngine,
+                           GroupingTaskRepository taskRepository,
+                           GroupingResultCache resultCache,
+                           ResultVersionService versionService,
+                           GroupingProperties groupingProperties,
+                           TaskStatusTracker statusTracker,
+                           @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+                           AsyncTaskExecutor taskExecutor) {
+        this.notificationService = notificationService;
+        this.groupingEngine = groupingEngine;
+        this.taskRepository = taskRepository;
+        this.resultCache = resultCache;
+        this.versionService = versionService;
+        this.groupingProperties = groupingProperties;
+        this.statusTracker = statusTracker;
+        this.taskExecutor = taskExecutor;
+        this.runSlots = new Semaphore(groupingProperties.maxConcurrentRuns(), true);
+    }
 
     /**
      * Метод запускает тяжелую задачу.
@@ -22,26 +59,168 @@ public class GroupingService {
      */
     @Async
     public void startGroupingTask(UUID taskId, String userQuery) {
+        runWithSlot(taskId, () -> groupingEngine.select(userQuery));
+    }
+
+    /**
+     * Пакет группировок: отбор товаров общий для всех запросов (один снапшот и один оператор отбора),
+     * затем группировки запросов идут параллельно, каждая со своим прогрессом в топике своей задачи.
+     * Задачи-дубликаты (тот же нормализованный запрос в пакете) ссылаются на результат основной задачи
+     * и завершаются вместе с ней.
+     */
+    @Async
+    public void startGroupingBatch(List<BatchRun> runs) {
+        List<GroupingEngine.Selection> selections;
+        try {
+            runs.forEach(run -> run.taskIds().forEach(taskId -> notificationService.notifyTaskProgress(taskId, 0,
+                    "Общий отбор товаров для пакета из " + runs.size() + " запросов...")));
+            selections = groupingEngine.selectAll(runs.stream().map(BatchRun::query).toList());
+        } catch (Exception e) {
+            log.error("Batch selection for {} queries failed: {}", runs.size(), e.getMessage(), e);
+            for (BatchRun run : runs) {
+                run.taskIds().forEach(taskId -> fail(taskId, e));
+            }
+            return;
+        }
+
+        for (int i = 0; i < runs.size(); i++) {
+            BatchRun run = runs.get(i);
+            GroupingEngine.Selection selection = selections.get(i);
+            taskExecutor.execute(() -> {
+                boolean completed;
+                try {
+                    completed = runWithSlot(run.taskId(), () -> selection);
+                } finally {
+                    selection.close();
+                }
+                for (UUID duplicate : run.duplicateTaskIds()) {
+                    completeDuplicate(duplicate, run.taskId(), completed);
+                }
+            });
+        }
+    }
+
+    private boolean runWithSlot(UUID taskId, Supplier<GroupingEngine.Selection> selector) {
+        if (!runSlots.tryAcquire()) {
+            notificationService.notifyTaskProgress(taskId, 0, "Ожидаем завершения других группировок...");
+            try {
+                runSlots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        try {
+            return runGroupingTask(taskId, selector);
+        } finally {
+            runSlots.release();
+        }
+    }
+
+    private boolean runGroupingTask(UUID taskId, Supplier<GroupingEngine.Selection> selector) {
+        Integer version = null;
+        GroupingEngine.Selection selection = null;
         try {
             // 1. Уведомляем, что начали (если нужно, или фронт и так знает)
             notificationService.notifyTaskStatus(taskId, TaskStatus.RUNNING, "Начинаем анализ товаров...");
+            statusTracker.transition(taskId, Status.PROCESSING, Status.PENDING);
 
-            // Эмуляция работы LLM (задержка 5 секунд)
-            Thread.sleep(2000);
-            notificationService.notifyTaskStatus(taskId, TaskStatus.RUNNING, "Генерация эмбеддингов...");
+            // 2. Отбор товаров; при большом отборе сначала публикуется предварительный результат по выборке
+            selection = selector.get();
+            publishPreview(taskId, selection);
 
-            Thread.sleep(3000);
+            // 3. Параллельная группировка по партициям в новую версию результата,
+            // предыдущая (или предварительная) версия продолжает обслуживать чтение до публикации
+            version = versionService.allocate(taskId);
+            long created = groupingEngine.group(taskId, version, selection,
+                    (percent, message) -> notificationService.notifyTaskProgress(taskId, percent, message), true);
+            versionService.publish(taskId, version);
 
-            // ТУТ ВАША ЛОГИКА ГРУППИРОВКИ
-            // var result = llmService.group(userQuery);
-            // cteRepository.save(result);
+            if (statusTracker.transition(taskId, Status.COMPLETED, Status.PROCESSING)) {
+                taskRepository.findById(taskId)
+                        .filter(task -> task.getNormalizedQuery() != null && task.getProductsVersion() != null)
+                        .ifPresent(task -> resultCache.register(
+                                new GroupingResultCache.CacheKey(task.getNormalizedQuery(), task.getProductsVersion()), taskId));
+            }
 
-            // 2. Уведомляем об успехе
-            notificationService.notifyTaskStatus(taskId, TaskStatus.COMPLETED, "Группировка завершена успешно!");
+            // 4. Уведомляем об успехе
+            notificationService.notifyTaskStatus(taskId, TaskStatus.COMPLETED,
+                    "Группировка завершена успешно! Создано СТЕ: " + created);
+            return true;
 
         } catch (Exception e) {
-            // 3. Уведомляем об ошибке
-            notificationService.notifyTaskStatus(taskId, TaskStatus.ERROR, "Ошибка при группировке: " + e.getMessage());
+            log.error("Grouping task {} failed: {}", taskId, e.getMessage(), e);
+            if (version != null) {
+                versionService.discard(taskId, version);
+            }
+            // 5. Уведомляем об ошибке
+            fail(taskId, e);
+            return false;
+        } finally {
+            if (selection != null) {
+                selection.close();
+            }
+        }
+    }
+
+    private void fail(UUID taskId, Exception e) {
+        statusTracker.transition(taskId, Status.FAILED, Status.PENDING, Status.PROCESSING);
+        notificationService.notifyTaskStatus(taskId, TaskStatus.ERROR, "Ошибка при группировке: " + e.getMessage());
+    }
+
+    private void completeDuplicate(UUID taskId, UUID sourceTaskId, boolean sourceCompleted) {
+        if (sourceCompleted && statusTracker.transition(taskId, Status.COMPLETED, Status.PENDING)) {
+            notificationService.notifyTaskStatus(taskId, TaskStatus.COMPLETED,
+                    "Группировка взята из результата задачи " + sourceTaskId + " с тем же запросом в пакете");
+        } else if (!sourceCompleted && statusTracker.transition(taskId, Status.FAILED, Status.PENDING)) {
+            notificationService.notifyTaskStatus(taskId, TaskStatus.ERROR,
+                    "Ошибка при группировке задачи " + sourceTaskId + " с тем же запросом в пакете");
+        }
+    }
+
+    /**
+     * Завершает задачу, результаты которой взяты из кэша эквивалентной группировки
+     */
+    @Async
+    public void completeFromCache(UUID taskId, UUID sourceTaskId) {
+        notificationService.notifyTaskStatus(taskId, TaskStatus.COMPLETED,
+                "Группировка взята из готового результата задачи " + sourceTaskId);
+    }
+
+    /**
+     * Запрос пакета: основная задача и задачи с тем же нормализованным запросом, которые ссылаются на её результат
+     */
+    public record BatchRun(UUID taskId, String query, List<UUID> duplicateTaskIds) {
+
+        List<UUID> taskIds() {
+            List<UUID> ids = new ArrayList<>(duplicateTaskIds.size() + 1);
+            ids.add(taskId);
+            ids.addAll(duplicateTaskIds);
+            return ids;
+        }
+    }
+
+    /**
+     * Группирует стратифицированную выборку без обращений к LLM и публикует её как предварительный результат.
+     * Только для задачи без опубликованной версии: при перегенерации выборка не заменяет полный результат.
+     */
+    private void publishPreview(UUID taskId, GroupingEngine.Selection selection) {
+        int previewSize = groupingProperties.previewSize();
+        if (previewSize == 0 || selection.rows() <= 2L * previewSize
+                || taskRepository.findCurrentVersion(taskId) != null) {
+            return;
+        }
+        int version = versionService.allocate(taskId);
+        try (GroupingEngine.Selection sample = groupingEngine.sample(selection, previewSize)) {
+            long created = groupingEngine.group(taskId, version, sample, (percent, message) -> { }, false);
+            if (versionService.publishPreview(taskId, version)) {
+                notificationService.notifyTaskProgress(taskId, 0, "Предварительный результат по выборке из "
+                        + sample.rows() + " товаров: СТЕ " + created + ". Продолжаем полную группировку...");
+            }
+        } catch (Exception e) {
+            // Предпросмотр не обязателен: полный прогон продолжается
+            log.warn("Preview grouping for task {} failed: {}", taskId, e.getMessage());
+            versionService.discard(taskId, version);
         }
     }
 }
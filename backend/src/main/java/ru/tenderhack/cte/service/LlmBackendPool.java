@@ -0,0 +1,209 @@
+package ru.tenderhack.cte.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import ru.tenderhack.cte.config.LlmConfigProperties;
+import ru.tenderhack.cte.config.RestClientConfig;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Пул бэкендов LLM: выбор бэкенда с наименьшим числом выполняющихся запросов,
+ * активная проверка доступности и circuit breaker на каждый бэкенд
+ */
+@Slf4j
+@Component
+public class LlmBackendPool {
+
+    private static final Duration HEALTH_CHECK_TIMEOUT = Duration.ofSeconds(2);
+    private static final String HEALTH_CHECK_PATH = "/api/tags";
+
+    private final List<Backend> backends;
+    private final RestClient healthClient;
+
+    public LlmBackendPool(LlmConfigProperties llmConfig, Environment environment) {
+        this.backends = llmConfig.endpoints().stream()
+                .map(url -> new Backend(url, llmConfig.failureThreshold(), llmConfig.openDuration()))
+                .toList();
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(
+                RestClientConfig.httpClient(HEALTH_CHECK_TIMEOUT, Threading.VIRTUAL.isActive(environment)));
+        factory.setReadTimeout(HEALTH_CHECK_TIMEOUT);
+        this.healthClient = RestClient.builder().requestFactory(factory).build();
+        log.info("LLM backend pool: {}", llmConfig.endpoints());
+    }
+
+    /**
+     * Резервирует доступный бэкенд с наименьшим числом выполняющихся запросов
+     *
+     * @param exclude бэкенды, уже использованные для этого запроса
+     * @return резерв бэкенда или null, если доступных нет; резерв освобождается через {@link Lease#release}
+     * или {@link Lease#abandon}
+     */
+    public synchronized Lease acquire(Collection<Backend> exclude) {
+        Backend best = backends.stream()
+                .filter(backend -> !exclude.contains(backend) && backend.isAvailable())
+                .min(Comparator.comparingInt(Backend::outstanding))
+                .orElse(null);
+        return best == null ? null : best.reserve();
+    }
+
+    /**
+     * Есть ли хотя бы один бэкенд, способный принять запрос
+     */
+    public boolean isAvailable() {
+        return backends.stream().anyMatch(Backend::isAvailable);
+    }
+
+    List<Backend> backends() {
+        return backends;
+    }
+
+    @Scheduled(fixedDelayString = "${llm.health-check-interval:PT10S}")
+    public void checkHealth() {
+        for (Backend backend : backends) {
+            boolean healthy;
+            try {
+                healthClient.get()
+                        .uri(URI.create(backend.url()).resolve(HEALTH_CHECK_PATH))
+                        .retrieve()
+                        .toBodilessEntity();
+                healthy = true;
+            } catch (Exception e) {
+                healthy = false;
+            }
+            if (healthy != backend.healthy) {
+                log.info("LLM backend {} is {}", backend.url(), healthy ? "up" : "down");
+            }
+            backend.healthy = healthy;
+        }
+    }
+
+    /**
+     * Резерв бэкенда под один запрос.
+     *
+     * @param epoch номер открытия breaker на момент резерва: ответы на запросы, отправленные до открытия,
+     *              не меняют состояние breaker
+     * @param trial пробный запрос в состоянии HALF_OPEN
+     */
+    public record Lease(Backend backend, long epoch, boolean trial) {
+
+        /**
+         * Освобождает бэкенд после ответа и учитывает результат в circuit breaker
+         */
+        public void release(boolean success) {
+            backend.release(this, success);
+        }
+
+        /**
+         * Освобождает бэкенд без учета результата (запрос отменен, например проигравший дубль при hedging)
+         */
+        public void abandon() {
+            backend.abandon(this);
+        }
+    }
+
+    /**
+     * Бэкенд LLM с состоянием circuit breaker.
+     * CLOSED - запросы идут; OPEN - бэкенд исключен на openDuration;
+     * HALF_OPEN - пропускается один пробный запрос, только его результат закрывает или снова открывает breaker.
+     */
+    public static final class Backend {
+
+        private enum State {
+            CLOSED,
+            OPEN,
+            HALF_OPEN
+        }
+
+        private final String url;
+        private final int failureThreshold;
+        private final Duration openDuration;
+        private volatile boolean healthy = true;
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private long epoch;
+        private boolean trialInFlight;
+        private int outstanding;
+
+        private Backend(String url, int failureThreshold, Duration openDuration) {
+            this.url = url;
+            this.failureThreshold = failureThreshold;
+            this.openDuration = openDuration;
+        }
+
+        public String url() {
+            return url;
+        }
+
+        synchronized int outstanding() {
+            return outstanding;
+        }
+
+        synchronized boolean isAvailable() {
+            if (!healthy) {
+                return false;
+            }
+            return switch (state) {
+                case CLOSED -> true;
+                case OPEN -> System.nanoTime() - openedAt >= openDuration.toNanos();
+                case HALF_OPEN -> !trialInFlight;
+            };
+        }
+
+        private synchronized Lease reserve() {
+            outstanding++;
+            if (state == State.OPEN) {
+                state = State.HALF_OPEN;
+            }
+            boolean trial = state == State.HALF_OPEN;
+            if (trial) {
+                trialInFlight = true;
+            }
+            return new Lease(this, epoch, trial);
+        }
+
+        private synchronized void release(Lease lease, boolean success) {
+            outstanding--;
+            if (lease.trial()) {
+                trialInFlight = false;
+            } else if (lease.epoch() != epoch) {
+                // Запрос отправлен до открытия breaker: состояние после открытия решает только пробный запрос
+                return;
+            }
+            if (success) {
+                consecutiveFailures = 0;
+                state = State.CLOSED;
+                return;
+            }
+            consecutiveFailures++;
+            if (lease.trial() || consecutiveFailures >= failureThreshold) {
+                log.warn("LLM backend {} circuit opened after {} failures", url, consecutiveFailures);
+                state = State.OPEN;
+                openedAt = System.nanoTime();
+                epoch++;
+            }
+        }
+
+        private synchronized void abandon(Lease lease) {
+            outstanding--;
+            if (lease.trial()) {
+                trialInFlight = false;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return url;
+        }
+    }
+}
@@ -1,27 +1,37 @@
 package ru.tenderhack.cte.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClient;
 import ru.tenderhack.cte.config.LlmConfigProperties;
+import ru.tenderhack.cte.exception.LlmUnavailableException;
 
-import java.util.Map;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
- * Сервис для взаимодействия с локальной LLM
+ * Сервис для взаимодействия с локальной LLM.
+ * Запросы распределяются по пулу бэкендов; при ошибке запрос уходит на следующий бэкенд,
+ * при долгом ответе дублируется (hedging) и берется первый успешный ответ.
+ * Запросы отправляются асинхронно (HttpClient.sendAsync): отмена проигравшего дубля прерывает его HTTP-обмен.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class LlmClientService {
 
-    private final RestClient restClient;
+    private final HttpClient llmHttpClient;
     private final LlmConfigProperties llmConfig;
     private final ObjectMapper objectMapper;
+    private final LlmBackendPool backendPool;
 
     /**
      * Отправляет prompt в LLM и возвращает ответ
@@ -30,35 +40,150 @@ public class LlmClientService {
      * @return строковый ответ от LLM
      */
     public String generate(String prompt) {
-        log.debug("Sending prompt to LLM: {}", prompt);
+        return call(prompt, false);
+    }
 
-        Map<String, Object> requestBody = Map.of(
-                "model", llmConfig.model(),
-                "prompt", prompt,
-                "stream", false
-        );
+    /**
+     * Отправляет prompt в LLM в режиме структурированного вывода (Ollama format: json)
+     *
+     * @param prompt текст запроса к LLM
+     * @return ответ LLM - JSON-документ
+     */
+    public String generateJson(String prompt) {
+        return call(prompt, true);
+    }
 
-        try {
-            String response = restClient.post()
-                    .uri(llmConfig.url())
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .body(requestBody)
-                    .retrieve()
-                    .body(String.class);
+    /**
+     * Есть ли доступный бэкенд; если нет - вызывающие работают в деградированном режиме на эвристиках
+     */
+    public boolean isAvailable() {
+        return backendPool.isAvailable();
+    }
 
-            log.debug("Received response from LLM: {}", response);
+    private String call(String prompt, boolean json) {
+        log.debug("Sending prompt to LLM: {}", prompt);
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", llmConfig.model());
+        requestBody.put("prompt", prompt);
+        requestBody.put("stream", false);
+        requestBody.put("options", Map.of("num_ctx", llmConfig.contextWindow()));
+        if (json) {
+            requestBody.put("format", "json");
+        }
 
+        String response = execute(requestBody);
+        log.debug("Received response from LLM: {}", response);
+
+        try {
             // Парсим ответ и извлекаем поле "response"
             JsonNode jsonNode = objectMapper.readTree(response);
             if (jsonNode.has("response")) {
                 return jsonNode.get("response").asText();
             }
-
             return response;
         } catch (Exception e) {
-            log.error("Error calling LLM: {}", e.getMessage(), e);
+            log.error("Error parsing LLM response: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to call LLM service", e);
         }
     }
-}
 
+    /**
+     * Выполняет запрос на пуле: следующий бэкенд подключается при ошибке или, если включен hedging,
+     * по истечении hedgeAfter без ответа. Возвращается первый успешный ответ.
+     */
+    private String execute(Map<String, Object> requestBody) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(requestBody);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize LLM request", e);
+        }
+
+        Set<LlmBackendPool.Backend> tried = new HashSet<>();
+        List<Attempt> inFlight = new ArrayList<>();
+        long hedgeAfter = llmConfig.hedgeAfter().toMillis();
+        long waitMillis = hedgeAfter > 0 ? hedgeAfter : llmConfig.readTimeout().toMillis();
+        Throwable lastError = null;
+        boolean launchNext = true;
+
+        try {
+            while (true) {
+                if (launchNext) {
+                    LlmBackendPool.Lease lease = backendPool.acquire(tried);
+                    if (lease != null) {
+                        tried.add(lease.backend());
+                        inFlight.add(send(lease, body));
+                    }
+                }
+                if (inFlight.isEmpty()) {
+                    throw new LlmUnavailableException("No LLM backend available", lastError);
+                }
+
+                try {
+                    return (String) CompletableFuture.anyOf(inFlight.stream()
+                                    .map(Attempt::result)
+                                    .toArray(CompletableFuture[]::new))
+                            .get(waitMillis, TimeUnit.MILLISECONDS);
+                } catch (ExecutionException e) {
+                    lastError = e.getCause();
+                    inFlight.removeIf(attempt -> attempt.result().isCompletedExceptionally());
+                    log.warn("LLM request failed, trying next backend: {}", lastError.getMessage());
+                    launchNext = true;
+                } catch (TimeoutException e) {
+                    launchNext = hedgeAfter > 0;
+                    if (launchNext) {
+                        log.debug("LLM request is slow after {} ms, hedging to another backend", hedgeAfter);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Failed to call LLM service", e);
+        } finally {
+            inFlight.forEach(Attempt::cancel);
+        }
+    }
+
+    private Attempt send(LlmBackendPool.Lease lease, byte[] body) {
+        String url = lease.backend().url();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                // LLM может долго отвечать, но зависший бэкенд не должен держать запрос дольше таймаута пула
+                .timeout(llmConfig.readTimeout())
+                .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        CompletableFuture<HttpResponse<String>> exchange =
+                llmHttpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        CompletableFuture<String> result = exchange.handle((response, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                if (cause instanceof CancellationException) {
+                    lease.abandon();
+                } else {
+                    lease.release(false);
+                }
+                throw new CompletionException(cause);
+            }
+            boolean success = response.statusCode() / 100 == 2;
+            lease.release(success);
+            if (!success) {
+                throw new CompletionException(new IllegalStateException(
+                        "LLM backend " + url + " responded with HTTP " + response.statusCode()));
+            }
+            return response.body();
+        });
+        return new Attempt(exchange, result);
+    }
+
+    /**
+     * Запрос к одному бэкенду: отмена прерывает сам HTTP-обмен, а не только ожидание результата
+     */
+    private record Attempt(CompletableFuture<HttpResponse<String>> exchange, CompletableFuture<String> result) {
+
+        void cancel() {
+            exchange.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package ru.tenderhack.cte.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.tenderhack.cte.config.LlmConfigProperties;
+
+import java.util.*;
+import java.util.function.BiPredicate;
+
+/**
+ * Упаковка множества мелких решений LLM в общие запросы.
+ * Решения набираются в пачку, пока промпт укладывается в бюджет токенов, ответ запрашивается в JSON,
+ * каждый ответ проверяется отдельно, повторно отправляются только решения без валидного ответа.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LlmPromptPacker {
+
+    /**
+     * Грубая оценка для кириллицы в токенизаторах семейства Qwen/Llama
+     */
+    private static final double CHARS_PER_TOKEN = 3.0;
+    private static final String ANSWER_FORMAT = """
+
+            Ответь только JSON-объектом вида {"answers": [{"id": "<номер вопроса>", "answer": <ответ>}]}, \
+            по одному элементу на каждый вопрос.
+
+            Вопросы:
+            """;
+
+    private final LlmClientService llmClientService;
+    private final LlmConfigProperties llmConfig;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Одно решение: идентификатор вызывающей стороны и текст вопроса
+     */
+    public record Decision(String id, String question) {
+    }
+
+    /**
+     * Получает ответы на решения, упаковывая их в запросы под бюджет токенов
+     *
+     * @param instruction общая для всех решений инструкция
+     * @param validator   проверка ответа на решение по его идентификатору
+     * @return валидные ответы по идентификаторам решений; решения без ответа после всех попыток отсутствуют
+     */
+    public Map<String, JsonNode> decide(String instruction, List<Decision> decisions,
+                                        BiPredicate<String, JsonNode> validator) {
+        Map<String, JsonNode> answers = new HashMap<>();
+        List<Decision> pending = decisions;
+        int requests = 0;
+        for (int attempt = 1; attempt <= llmConfig.maxAttempts() && !pending.isEmpty(); attempt++) {
+            if (!llmClientService.isAvailable()) {
+                // Деградированный режим: все бэкенды недоступны, решения остаются за эвристиками
+                log.warn("No LLM backend available, {} decisions left to heuristics", pending.size());
+                return answers;
+            }
+            List<Decision> failed = new ArrayList<>();
+            for (List<Decision> batch : pack(instruction, pending)) {
+                requests++;
+                Map<String, JsonNode> batchAnswers = ask(instruction, batch);
+                for (Decision decision : batch) {
+                    JsonNode answer = batchAnswers.get(decision.id());
+                    if (answer != null && validator.test(decision.id(), answer)) {
+                        answers.put(decision.id(), answer);
+                    } else {
+                        failed.add(decision);
+                    }
+                }
+            }
+            pending = failed;
+        }
+
+        log.info("LLM answered {} of {} decisions in {} requests", answers.size(), decisions.size(), requests);
+        if (!pending.isEmpty()) {
+            log.warn("LLM gave no valid answer for {} decisions after {} attempts", pending.size(), llmConfig.maxAttempts());
+        }
+        return answers;
+    }
+
+    /**
+     * Жадная упаковка решений в пачки под бюджет токенов; решение больше бюджета уходит отдельным запросом
+     */
+    List<List<Decision>> pack(String instruction, List<Decision> decisions) {
+        int budget = llmConfig.tokenBudget() - estimateTokens(instruction) - estimateTokens(ANSWER_FORMAT);
+        List<List<Decision>> batches = new ArrayList<>();
+        List<Decision> current = new ArrayList<>();
+        int used = 0;
+        for (Decision decision : decisions) {
+            int tokens = estimateTokens(decision.question()) + 4;
+            if (!current.isEmpty() && used + tokens > budget) {
+                batches.add(current);
+                current = new ArrayList<>();
+                used = 0;
+            }
+            current.add(decision);
+            used += tokens;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    /**
+     * Внутри запроса решения нумеруются с 1: короткие номера дешевле идентификаторов и реже искажаются моделью
+     */
+    private Map<String, JsonNode> ask(String instruction, List<Decision> batch) {
+        StringBuilder prompt = new StringBuilder(instruction).append(ANSWER_FORMAT);
+        for (int i = 0; i < batch.size(); i++) {
+            prompt.append('[').append(i + 1).append("] ").append(batch.get(i).question()).append('\n');
+        }
+
+        Map<String, JsonNode> answers = new HashMap<>();
+        try {
+            JsonNode items = objectMapper.readTree(llmClientService.generateJson(prompt.toString())).path("answers");
+            for (JsonNode item : items) {
+                int index = item.path("id").asInt(0) - 1;
+                if (index >= 0 && index < batch.size() && item.has("answer")) {
+                    answers.put(batch.get(index).id(), item.get("answer"));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("LLM batch of {} decisions failed: {}", batch.size(), e.getMessage());
+        }
+        return answers;
+    }
+
+    private static int estimateTokens(String text) {
+        return (int) Math.ceil(text.length() / CHARS_PER_TOKEN);
+    }
+}
@@ -4,7 +4,9 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
+import ru.tenderhack.cte.dto.CteChange;
 import ru.tenderhack.cte.dto.TaskStatus;
+import ru.tenderhack.cte.dto.TaskStatusChange;
 import ru.tenderhack.cte.dto.TaskStatusEvent;
 
 import java.time.Instant;
@@ -21,17 +23,47 @@ public class NotificationService {
      * Отправляет обновление статуса в топик /topic/tasks/{taskId}/status
      */
     public void notifyTaskStatus(UUID taskId, TaskStatus status, String message) {
+        send(taskId, status, null, message);
+    }
+
+    /**
+     * Отправляет прогресс выполнения задачи (0-100%) в топик /topic/tasks/{taskId}/status
+     */
+    public void notifyTaskProgress(UUID taskId, int progress, String message) {
+        send(taskId, TaskStatus.RUNNING, progress, message);
+    }
+
+    /**
+     * Отправляет изменения СТЕ после правки в топик /topic/tasks/{taskId}/changes
+     */
+    public void notifyCteChange(CteChange change) {
+        String destination = "/topic/tasks/" + change.taskId() + "/changes";
+        log.info("Sending WS notification to {}: {} updated={} removed={}", destination, change.operation(),
+                change.updated().size(), change.removed().size());
+        messagingTemplate.convertAndSend(destination, change);
+    }
+
+    /**
+     * Отправляет смену статуса задачи в общий топик /topic/tasks/status (одна подписка на все задачи)
+     */
+    public void notifyTaskStatusChange(TaskStatusChange change) {
+        log.debug("Sending WS notification to /topic/tasks/status: {} {} -> {}", change.taskId(), change.previous(),
+                change.status());
+        messagingTemplate.convertAndSend("/topic/tasks/status", change);
+    }
+
+    private void send(UUID taskId, TaskStatus status, Integer progress, String message) {
         String destination = "/topic/tasks/" + taskId + "/status";
 
         TaskStatusEvent event = new TaskStatusEvent(
                 taskId,
                 status,
-                null, // progress можно добавить по желанию
+                progress,
                 message,
                 Instant.now()
         );
 
-        log.info("Sending WS notification to {}: {}", destination, status);
+        log.info("Sending WS notification to {}: {} {}", destination, status, progress != null ? progress + "%" : "");
         messagingTemplate.convertAndSend(destination, event);
     }
 }
@@ -0,0 +1,81 @@
+package ru.tenderhack.cte.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.tenderhack.cte.config.ProductKeyProperties;
+import ru.tenderhack.cte.normalize.ProductKeyCanonicalizer;
+import ru.tenderhack.cte.repository.ProductKeyRepository;
+import ru.tenderhack.cte.repository.ProductKeyRepository.ProductKeys;
+import ru.tenderhack.cte.repository.ProductKeyRepository.ProductSource;
+
+import java.util.List;
+
+/**
+ * Дозаполняет model_key и manufacturer_id товаров, загруженных в обход приложения (CSV),
+ * и пересчитывает их после изменения словаря производителей.
+ * Каждая пачка фиксируется своей транзакцией и продвигает keyset-курсор по id, поэтому
+ * дозаполнение большой таблицы не держит блокировки строк и снимки MVCC до конца прохода.
+ * Запись ключей не меняет версию raw_products (триггер версии следит только за исходными колонками),
+ * поэтому дозаполнение не инвалидирует кэш группировок и снапшот: снапшот сам вычисляет ключи
+ * товаров, записанных с другим отпечатком словаря.
+ */
+@Slf4j
+@Service
+public class ProductKeyBackfillService {
+
+    private final ProductKeyRepository keyRepository;
+    private final ProductKeyCanonicalizer canonicalizer;
+    private final ProductKeyProperties properties;
+    private final TransactionTemplate transaction;
+
+    public ProductKeyBackfillService(ProductKeyRepository keyRepository,
+                                     ProductKeyCanonicalizer canonicalizer,
+                                     ProductKeyProperties properties,
+                                     PlatformTransactionManager transactionManager) {
+        this.keyRepository = keyRepository;
+        this.canonicalizer = canonicalizer;
+        this.properties = properties;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${product-keys.backfill-interval:PT10M}", initialDelay = 10_000)
+    public void backfill() {
+        String version = canonicalizer.fingerprint();
+        long started = System.currentTimeMillis();
+        long updated = 0;
+        long lastId = 0;
+        while (true) {
+            long afterId = lastId;
+            Batch batch = transaction.execute(status -> writeBatch(afterId, version));
+            if (batch == null || batch.size() == 0) {
+                break;
+            }
+            updated += batch.updated();
+            lastId = batch.lastId();
+        }
+        if (updated > 0) {
+            log.info("Canonical product keys ({}) computed for {} products in {} ms",
+                    version, updated, System.currentTimeMillis() - started);
+        }
+    }
+
+    private Batch writeBatch(long afterId, String version) {
+        List<ProductSource> products = keyRepository.findStale(afterId, version, properties.backfillBatchSize());
+        if (products.isEmpty()) {
+            return new Batch(0, 0, afterId);
+        }
+        List<ProductKeys> keys = products.stream()
+                .map(product -> new ProductKeys(product.id(),
+                        canonicalizer.modelKey(product.model()),
+                        canonicalizer.manufacturerId(product.manufacturer())))
+                .toList();
+        int updated = keyRepository.updateKeys(keys, version);
+        return new Batch(products.size(), updated, products.get(products.size() - 1).id());
+    }
+
+    private record Batch(int size, int updated, long lastId) {
+    }
+}
@@ -0,0 +1,114 @@
+package ru.tenderhack.cte.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.tenderhack.cte.repository.QueryMatchView;
+import ru.tenderhack.cte.repository.RawProductRepository;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Сервис отбора товаров из raw_products по текстовому запросу группировки.
+ * ID отдаются потоком из курсора БД, чтобы движок группировки мог начинать
+ * обработку до завершения отбора.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductQueryService {
+
+    private static final int MIN_MODEL_TOKEN_LENGTH = 3;
+
+    private final RawProductRepository rawProductRepository;
+
+    /**
+     * Передает consumer'у ID всех товаров, подходящих под запрос, по мере чтения из курсора
+     *
+     * @param query    текст запроса пользователя
+     * @param consumer обработчик очередного ID товара
+     * @return количество отобранных товаров
+     */
+    @Transactional(readOnly = true)
+    public long forEachMatchingProductId(String query, LongConsumer consumer) {
+        query = QueryNormalizer.foldDecimalCommas(query);
+        String modelTokens = String.join(" ", extractModelTokens(query));
+        log.debug("Selecting products for query: '{}', model tokens: '{}'", query, modelTokens);
+
+        long count = 0;
+        try (Stream<Long> ids = rawProductRepository.streamIdsByQuery(query, modelTokens)) {
+            var iterator = ids.iterator();
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+                count++;
+            }
+        }
+
+        log.info("Selected {} products for query: '{}'", count, query);
+        return count;
+    }
+
+    /**
+     * Отбор по всем запросам пакета одним оператором: consumer получает номер запроса и ID товара.
+     * Товар, подходящий под несколько запросов, передается для каждого из них.
+     *
+     * @return количество отобранных товаров по каждому запросу
+     */
+    @Transactional(readOnly = true)
+    public long[] forEachMatchingProductId(List<String> queries, MatchConsumer consumer) {
+        queries = queries.stream().map(QueryNormalizer::foldDecimalCommas).toList();
+        String[] modelTokens = queries.stream()
+                .map(query -> String.join(" ", extractModelTokens(query)))
+                .toArray(String[]::new);
+        log.debug("Selecting products for {} queries", queries.size());
+
+        long[] counts = new long[queries.size()];
+        try (Stream<QueryMatchView> matches = rawProductRepository.streamIdsByQueries(
+                queries.toArray(String[]::new), modelTokens)) {
+            var iterator = matches.iterator();
+            while (iterator.hasNext()) {
+                QueryMatchView match = iterator.next();
+                consumer.accept(match.getQueryIndex(), match.getProductId());
+                counts[match.getQueryIndex()]++;
+            }
+        }
+
+        log.info("Selected products for {} queries: {}", queries.size(), Arrays.toString(counts));
+        return counts;
+    }
+
+    /**
+     * Обработчик товара, подошедшего под запрос пакета с номером queryIndex
+     */
+    @FunctionalInterface
+    public interface MatchConsumer {
+        void accept(int queryIndex, long productId);
+    }
+
+    /**
+     * Выделяет из запроса токены, похожие на артикулы/модели (буквы вместе с цифрами: "SKS-5", "IND80").
+     * Такие токены плохо обрабатываются словарем russian, поэтому ищутся триграммами по колонке model.
+     */
+    static Set<String> extractModelTokens(String query) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (query == null) {
+            return tokens;
+        }
+        for (String raw : query.split("\\s+")) {
+            String token = raw.toLowerCase(Locale.ROOT).replaceAll("^[^\\p{L}\\p{N}]+|[^\\p{L}\\p{N}]+$", "");
+            if (token.length() >= MIN_MODEL_TOKEN_LENGTH
+                    && token.chars().anyMatch(Character::isDigit)
+                    && token.chars().anyMatch(Character::isLetter)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
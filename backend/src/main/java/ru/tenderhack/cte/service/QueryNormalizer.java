@@ -0,0 +1,47 @@
+package ru.tenderhack.cte.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.tenderhack.cte.repository.RawProductRepository;
+
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Нормализация текстовых запросов группировки.
+ * Ключ строится из того, что фактически выполняет отбор товаров ({@link ProductQueryService}):
+ * текста websearch_to_tsquery('russian', ...) и набора токенов-артикулов для триграммного поиска.
+ * Поэтому "Шины летние" и "шины  летние" дают один ключ, а "шины -летние" и "шины летние" - разные.
+ * Десятичная запятая заменяется точкой до отбора и до построения ключа: PostgreSQL разбирает "16.5" как
+ * одно число, а "16,5" - как "16" и "5", поэтому "шины 12-16,5" иначе отбирало бы другие товары.
+ */
+@Component
+@RequiredArgsConstructor
+public class QueryNormalizer {
+
+    private static final Pattern DECIMAL_COMMA = Pattern.compile("(?<=\\d),(?=\\d)");
+
+    private final RawProductRepository rawProductRepository;
+
+    /**
+     * Приводит запрос к каноническому виду: полнотекстовый запрос после разбора и стемминга PostgreSQL
+     * с сохранением операторов и порядка, затем отсортированные токены-артикулы
+     * (условие по ним - OR, от порядка не зависит)
+     */
+    public String normalize(String query) {
+        if (query == null || query.isBlank()) {
+            return "";
+        }
+        query = foldDecimalCommas(query);
+        String tsQuery = rawProductRepository.findTsQueryText(query);
+        String modelTokens = String.join(" ", new TreeSet<>(ProductQueryService.extractModelTokens(query)));
+        return (tsQuery == null ? "" : tsQuery) + " | " + modelTokens;
+    }
+
+    /**
+     * Заменяет десятичную запятую точкой: "12-16,5" - "12-16.5"
+     */
+    public static String foldDecimalCommas(String query) {
+        return query == null ? null : DECIMAL_COMMA.matcher(query).replaceAll(".");
+    }
+}
@@ -0,0 +1,133 @@
+package ru.tenderhack.cte.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.tenderhack.cte.entity.GroupingTaskEntity;
+import ru.tenderhack.cte.entity.Status;
+import ru.tenderhack.cte.exception.ConflictException;
+import ru.tenderhack.cte.exception.ResourceNotFoundException;
+import ru.tenderhack.cte.repository.CteRepository;
+import ru.tenderhack.cte.repository.GroupingTaskRepository;
+
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+/**
+ * Copy-on-write переиспользованных результатов перед правкой или перегенерацией задачи.
+ * Зависимые задачи получают неизмененную копию результатов, задача-ссылка - собственную копию результатов
+ * источника. Копии пишутся под следующими номерами версий задач; все изменения выполняются одной транзакцией
+ * под блокировкой задачи, поэтому ошибка не оставляет задачу наполовину отвязанной.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ResultCopyService {
+
+    private final GroupingTaskRepository taskRepository;
+    private final CteRepository cteRepository;
+    private final GroupingResultCache resultCache;
+    private final ResultVersionService versionService;
+
+    /**
+     * Готовит задачу к правке СТЕ
+     *
+     * @return преобразование идентификаторов СТЕ, полученных клиентом, в идентификаторы правимой версии
+     */
+    @Transactional
+    public UnaryOperator<UUID> prepareEdit(UUID taskId) {
+        GroupingTaskEntity task = lockIdle(taskId);
+        copyResultsToDependents(task);
+        Integer version = copySourceResults(task);
+        if (version == null) {
+            return UnaryOperator.identity();
+        }
+        return cteId -> CteRepository.copiedCteId(taskId, version, cteId);
+    }
+
+    /**
+     * Готовит задачу к перегенерации: отвязывает результаты и сбрасывает запрос, задача переходит в PENDING
+     *
+     * @return статус задачи до перегенерации
+     */
+    @Transactional
+    public Status prepareRegeneration(UUID taskId, String query, GroupingResultCache.CacheKey cacheKey) {
+        GroupingTaskEntity task = lockIdle(taskId);
+        Status previous = task.getStatus();
+        copyResultsToDependents(task);
+        copySourceResults(task);
+        taskRepository.resetQuery(taskId, query, cacheKey.normalizedQuery(), cacheKey.productsVersion(), Status.PENDING);
+        return previous;
+    }
+
+    /**
+     * Откатывает задачу к версии результатов. Задача-ссылка видит версии источника
+     * (см. {@link GroupingResultCache#resolveResultTask}), поэтому выбранная версия источника
+     * копируется в задачу как собственная следующая версия и становится текущей.
+     */
+    @Transactional
+    public void rollback(UUID taskId, int version) {
+        GroupingTaskEntity task = taskRepository.findByIdForUpdate(taskId)
+                .orElseThrow(() -> new ResourceNotFoundException("Task not found: " + taskId));
+        UUID sourceTaskId = task.getSourceTaskId();
+        if (sourceTaskId == null) {
+            versionService.rollback(taskId, version);
+            return;
+        }
+        if (cteRepository.countByTaskIdAndVersion(sourceTaskId, version) == 0) {
+            throw new ResourceNotFoundException("Version " + version + " not found for task: " + taskId);
+        }
+        int ownVersion = versionService.allocate(taskId);
+        cteRepository.copyTaskResults(sourceTaskId, version, taskId, ownVersion);
+        resultCache.detach(taskId, sourceTaskId, ownVersion);
+        log.info("Task {}: rolled back to version {} of source task {} (own version {})",
+                taskId, version, sourceTaskId, ownVersion);
+    }
+
+    /**
+     * Блокирует задачу; задачу в очереди или в работе менять нельзя - прогон перезапишет результат
+     */
+    private GroupingTaskEntity lockIdle(UUID taskId) {
+        GroupingTaskEntity task = taskRepository.findByIdForUpdate(taskId)
+                .orElseThrow(() -> new ResourceNotFoundException("Task not found: " + taskId));
+        if (task.getStatus() == Status.PENDING || task.getStatus() == Status.PROCESSING) {
+            throw new ConflictException("Grouping is in progress: " + taskId);
+        }
+        return task;
+    }
+
+    private void copyResultsToDependents(GroupingTaskEntity task) {
+        Integer version = task.getCurrentVersion();
+        for (UUID dependentId : resultCache.findDependentTasks(task.getId())) {
+            Integer copiedVersion = null;
+            if (version != null) {
+                copiedVersion = versionService.allocate(dependentId);
+                int copied = cteRepository.copyTaskResults(task.getId(), version, dependentId, copiedVersion);
+                log.debug("Task {} detached from results of task {}, copied {} CTEs", dependentId, task.getId(), copied);
+            }
+            resultCache.detach(dependentId, task.getId(), copiedVersion);
+        }
+    }
+
+    /**
+     * @return версия задачи с копией результатов источника (null - задача не ссылается на источник
+     * или у источника нет опубликованных результатов)
+     */
+    private Integer copySourceResults(GroupingTaskEntity task) {
+        UUID sourceTaskId = task.getSourceTaskId();
+        if (sourceTaskId == null) {
+            return null;
+        }
+        Integer sourceVersion = taskRepository.findCurrentVersion(sourceTaskId);
+        if (sourceVersion == null) {
+            resultCache.detach(task.getId(), sourceTaskId, null);
+            return null;
+        }
+        int version = versionService.allocate(task.getId());
+        int copied = cteRepository.copyTaskResults(sourceTaskId, sourceVersion, task.getId(), version);
+        resultCache.detach(task.getId(), sourceTaskId, version);
+        log.debug("Task {} materialized {} CTEs of source task {}", task.getId(), copied, sourceTaskId);
+        return version;
+    }
+}
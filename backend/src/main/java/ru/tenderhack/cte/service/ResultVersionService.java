@@ -0,0 +1,146 @@
+package ru.tenderhack.cte.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.tenderhack.cte.config.GroupingProperties;
+import ru.tenderhack.cte.dto.ResultVersion;
+import ru.tenderhack.cte.entity.GroupingTaskEntity;
+import ru.tenderhack.cte.exception.ResourceNotFoundException;
+import ru.tenderhack.cte.repository.CteRepository;
+import ru.tenderhack.cte.repository.GroupingTaskRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Версии результатов группировки.
+ * Движок пишет СТЕ новой версии, пока читатели видят опубликованную; публикация -
+ * одно атомарное переключение grouping_tasks.current_version. Предыдущие версии хранятся
+ * для отката и удаляются по политике grouping.retained-versions.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ResultVersionService {
+
+    private final GroupingTaskRepository taskRepository;
+    private final CteRepository cteRepository;
+    private final GroupingProperties groupingProperties;
+    private final TaskMetadataCache metadataCache;
+
+    /**
+     * Выделяет номер следующей версии результатов задачи
+     */
+    @Transactional
+    public int allocate(UUID taskId) {
+        GroupingTaskEntity task = taskRepository.findByIdForUpdate(taskId)
+                .orElseThrow(() -> new ResourceNotFoundException("Task not found: " + taskId));
+        int version = task.getLatestVersion() + 1;
+        taskRepository.setLatestVersion(taskId, version);
+        return version;
+    }
+
+    /**
+     * Публикует полностью записанную версию и удаляет устаревшие
+     *
+     * @return true, если версия стала текущей (более новая версия не была опубликована раньше)
+     */
+    @Transactional
+    public boolean publish(UUID taskId, int version) {
+        return publish(taskId, version, false);
+    }
+
+    /**
+     * Публикует версию, счетчики значений которой уже записаны (правка СТЕ переносит и корректирует
+     * счетчики предыдущей версии, не пересчитывая их по всем СТЕ)
+     *
+     * @param facetsBuilt true - счетчики версии уже записаны
+     */
+    @Transactional
+    public boolean publish(UUID taskId, int version, boolean facetsBuilt) {
+        boolean published = taskRepository.publishVersion(taskId, version) > 0;
+        if (published) {
+            metadataCache.evict(taskId);
+            if (!facetsBuilt) {
+                cteRepository.buildFacets(taskId, version);
+            }
+            // Предварительная версия по выборке заменена полной и не хранится для отката
+            Integer preview = taskRepository.findPreviewVersion(taskId);
+            if (preview != null) {
+                taskRepository.clearPreviewVersion(taskId);
+                discard(taskId, preview);
+            }
+            int maxObsolete = version - 1 - groupingProperties.retainedVersions();
+            if (maxObsolete > 0) {
+                cteRepository.deleteFacetsUpTo(taskId, maxObsolete, version);
+                int deleted = cteRepository.deleteVersionsUpTo(taskId, maxObsolete, version);
+                log.debug("Task {}: removed {} CTEs of versions <= {}", taskId, deleted, maxObsolete);
+            }
+        } else {
+            log.info("Task {}: version {} superseded by a newer published version, discarding", taskId, version);
+            discard(taskId, version);
+        }
+        return published;
+    }
+
+    /**
+     * Публикует предварительную версию, построенную по выборке товаров, если у задачи еще нет опубликованной
+     * (иначе версия удаляется). Следующая полная публикация заменяет и удаляет её.
+     */
+    @Transactional
+    public boolean publishPreview(UUID taskId, int version) {
+        boolean published = taskRepository.publishPreviewVersion(taskId, version) > 0;
+        if (!published) {
+            discard(taskId, version);
+            return false;
+        }
+        metadataCache.evict(taskId);
+        cteRepository.buildFacets(taskId, version);
+        return true;
+    }
+
+    /**
+     * Делает задачу владельцем скопированной версии результатов
+     */
+    @Transactional
+    public void adopt(UUID taskId, int version) {
+        taskRepository.setLatestVersion(taskId, version);
+        taskRepository.setCurrentVersion(taskId, version);
+        metadataCache.evict(taskId);
+        cteRepository.buildFacets(taskId, version);
+    }
+
+    /**
+     * Удаляет незавершенную или устаревшую версию
+     */
+    @Transactional
+    public void discard(UUID taskId, int version) {
+        cteRepository.deleteFacets(taskId, version);
+        cteRepository.deleteVersion(taskId, version);
+    }
+
+    /**
+     * Откатывает задачу к сохраненной версии результатов
+     */
+    @Transactional
+    public void rollback(UUID taskId, int version) {
+        GroupingTaskEntity task = taskRepository.findByIdForUpdate(taskId)
+                .orElseThrow(() -> new ResourceNotFoundException("Task not found: " + taskId));
+        if (version > task.getLatestVersion() || cteRepository.countByTaskIdAndVersion(taskId, version) == 0) {
+            throw new ResourceNotFoundException("Version " + version + " not found for task: " + taskId);
+        }
+        taskRepository.setCurrentVersion(taskId, version);
+        metadataCache.evict(taskId);
+        log.info("Task {}: rolled back to version {}", taskId, version);
+    }
+
+    @Transactional(readOnly = true)
+    public List<ResultVersion> listVersions(TaskMetadata task) {
+        return cteRepository.countByTaskIdGroupByVersion(task.id()).stream()
+                .map(view -> new ResultVersion(view.getVersion(), view.getCteCount(),
+                        view.getVersion().equals(task.currentVersion())))
+                .toList();
+    }
+}
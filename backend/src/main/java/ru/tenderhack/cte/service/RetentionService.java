@@ -0,0 +1,156 @@
+package ru.tenderhack.cte.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.tenderhack.cte.config.RetentionProperties;
+import ru.tenderhack.cte.entity.Status;
+import ru.tenderhack.cte.repository.CtePartitionRepository;
+import ru.tenderhack.cte.repository.CtePartitionRepository.MonthPartition;
+import ru.tenderhack.cte.repository.CteRepository;
+import ru.tenderhack.cte.repository.GroupingTaskRepository;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Очистка неподтвержденных задач по политике retention.
+ * Секции cte_entities месяцев, все задачи которых просрочены, удаляются целиком вместе с задачами;
+ * остальные СТЕ и сами задачи удаляются пакетами одним запросом на пакет.
+ */
+@Slf4j
+@Service
+public class RetentionService {
+
+    // Задачи в работе не удаляются, даже если зависли дольше срока хранения
+    private static final List<Status> EXPIRABLE_STATUSES = List.of(Status.COMPLETED, Status.FAILED);
+
+    private final GroupingTaskRepository taskRepository;
+    private final CteRepository cteRepository;
+    private final CtePartitionRepository partitionRepository;
+    private final GroupingResultCache resultCache;
+    private final TaskMetadataCache metadataCache;
+    private final RetentionProperties retentionProperties;
+    private final TaskStatusTracker statusTracker;
+    private final TransactionTemplate transaction;
+
+    public RetentionService(GroupingTaskRepository taskRepository,
+                            CteRepository cteRepository,
+                            CtePartitionRepository partitionRepository,
+                            GroupingResultCache resultCache,
+                            TaskMetadataCache metadataCache,
+                            RetentionProperties retentionProperties,
+                            TaskStatusTracker statusTracker,
+                            PlatformTransactionManager transactionManager) {
+        this.taskRepository = taskRepository;
+        this.cteRepository = cteRepository;
+        this.partitionRepository = partitionRepository;
+        this.resultCache = resultCache;
+        this.metadataCache = metadataCache;
+        this.retentionProperties = retentionProperties;
+        this.statusTracker = statusTracker;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Создает секции текущего и retention.partitions-ahead следующих месяцев
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensurePartitions() {
+        if (!partitionRepository.isPartitioned()) {
+            log.info("cte_entities is not partitioned, partition maintenance is disabled");
+            return;
+        }
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= retentionProperties.partitionsAhead(); i++) {
+            YearMonth month = current.plusMonths(i);
+            try {
+                partitionRepository.createMonthPartition(month);
+            } catch (Exception e) {
+                // Например, секция по умолчанию уже содержит строки этого месяца
+                log.warn("Failed to create cte_entities partition for {}: {}", month, e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(cron = "${retention.cleanup-cron:0 30 3 * * *}")
+    public void cleanup() {
+        ensurePartitions();
+        LocalDateTime cutoff = LocalDateTime.now().minus(retentionProperties.unapprovedTtl());
+        int droppedPartitions = dropExpiredPartitions(cutoff);
+
+        long deletedTasks = 0;
+        long deletedCtes = 0;
+        List<UUID> batch;
+        while (!(batch = taskRepository.findExpiredTaskIds(EXPIRABLE_STATUSES, cutoff,
+                PageRequest.of(0, retentionProperties.batchSize()))).isEmpty()) {
+            List<UUID> ids = batch;
+            batch.forEach(resultCache::evict);
+            metadataCache.evictAll(batch);
+            deletedCtes += transaction.execute(status -> {
+                int ctes = cteRepository.deleteByTaskIdIn(ids);
+                taskRepository.clearSourceTask(ids);
+                taskRepository.deleteByIdIn(ids);
+                return ctes;
+            });
+            deletedTasks += batch.size();
+        }
+        if (droppedPartitions > 0 || deletedTasks > 0) {
+            statusTracker.resync();
+            log.info("Retention cleanup: dropped {} partitions, removed {} tasks and {} CTEs older than {}",
+                    droppedPartitions, deletedTasks, deletedCtes, cutoff);
+        }
+    }
+
+    /**
+     * Удаляет секции месяцев до cutoff вместе с задачами, если все задачи месяца просрочены.
+     * Задачи месяца блокируются и перепроверяются в той же транзакции, что отсоединяет и удаляет секцию:
+     * задача не может ожить или получить задачу-ссылку между проверкой и удалением.
+     */
+    private int dropExpiredPartitions(LocalDateTime cutoff) {
+        if (!partitionRepository.isPartitioned()) {
+            return 0;
+        }
+        int dropped = 0;
+        for (MonthPartition partition : partitionRepository.findMonthPartitions()) {
+            LocalDateTime from = partition.month().atDay(1).atStartOfDay();
+            LocalDateTime to = partition.month().plusMonths(1).atDay(1).atStartOfDay();
+            if (!to.isBefore(cutoff)) {
+                break;
+            }
+            List<UUID> taskIds;
+            try {
+                taskIds = transaction.execute(status -> {
+                    List<UUID> ids = taskRepository.lockCreatedBetween(from, to);
+                    if (!ids.isEmpty() && taskRepository.countExpired(ids, EXPIRABLE_STATUSES, cutoff) < ids.size()) {
+                        return null;
+                    }
+                    partitionRepository.dropPartition(partition);
+                    if (!ids.isEmpty()) {
+                        taskRepository.clearSourceTask(ids);
+                        taskRepository.deleteByIdIn(ids);
+                    }
+                    return ids;
+                });
+            } catch (Exception e) {
+                log.warn("Failed to drop cte_entities partition {}: {}", partition.name(), e.getMessage());
+                continue;
+            }
+            if (taskIds == null) {
+                continue;
+            }
+            taskIds.forEach(resultCache::evict);
+            metadataCache.evictAll(taskIds);
+            dropped++;
+            log.info("Dropped cte_entities partition {} with {} tasks", partition.name(), taskIds.size());
+        }
+        return dropped;
+    }
+}
@@ -0,0 +1,43 @@
+package ru.tenderhack.cte.service;
+
+import ru.tenderhack.cte.entity.GroupingTaskEntity;
+import ru.tenderhack.cte.entity.Status;
+
+import java.util.UUID;
+
+/**
+ * Состояние задачи группировки, нужное для обслуживания чтения результатов
+ *
+ * @param sourceTaskId задача, результаты которой переиспользуются (null - результаты свои)
+ * @param currentVersion опубликованная версия результатов (null - результатов еще нет)
+ * @param previewVersion предварительная версия по выборке товаров
+ */
+public record TaskMetadata(
+        UUID id,
+        Status status,
+        UUID sourceTaskId,
+        Integer currentVersion,
+        Integer previewVersion,
+        Integer rating
+) {
+
+    public static TaskMetadata of(GroupingTaskEntity task) {
+        return new TaskMetadata(task.getId(), task.getStatus(), task.getSourceTaskId(), task.getCurrentVersion(),
+                task.getPreviewVersion(), task.getRating());
+    }
+
+    public TaskMetadata withStatus(Status status) {
+        return new TaskMetadata(id, status, sourceTaskId, currentVersion, previewVersion, rating);
+    }
+
+    public TaskMetadata withRating(Integer rating) {
+        return new TaskMetadata(id, status, sourceTaskId, currentVersion, previewVersion, rating);
+    }
+
+    /**
+     * Опубликованная версия построена по выборке товаров
+     */
+    public boolean isPreview() {
+        return currentVersion != null && currentVersion.equals(previewVersion);
+    }
+}
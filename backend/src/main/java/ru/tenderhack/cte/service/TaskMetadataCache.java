@@ -0,0 +1,95 @@
+package ru.tenderhack.cte.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.tenderhack.cte.config.TaskProperties;
+import ru.tenderhack.cte.exception.ResourceNotFoundException;
+import ru.tenderhack.cte.repository.GroupingTaskRepository;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Write-through кэш метаданных задач: чтение результатов не обращается к grouping_tasks на каждый запрос.
+ * Код, меняющий задачу, обновляет запись ({@link #update}) или удаляет её ({@link #evict});
+ * изменения с других экземпляров сервиса видны не позже чем через tasks.metadata-cache-ttl.
+ */
+@Service
+@RequiredArgsConstructor
+public class TaskMetadataCache {
+
+    private final GroupingTaskRepository taskRepository;
+    private final TaskProperties taskProperties;
+
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Метаданные задачи из кэша или из БД
+     */
+    public Optional<TaskMetadata> find(UUID taskId) {
+        Entry entry = entries.get(taskId);
+        if (entry != null && entry.expiresAt() - System.nanoTime() > 0) {
+            return Optional.of(entry.metadata());
+        }
+        Optional<TaskMetadata> loaded = taskRepository.findById(taskId).map(TaskMetadata::of);
+        loaded.ifPresentOrElse(this::put, () -> entries.remove(taskId));
+        return loaded;
+    }
+
+    public TaskMetadata get(UUID taskId) {
+        return find(taskId).orElseThrow(() -> new ResourceNotFoundException("Task not found: " + taskId));
+    }
+
+    /**
+     * Применяет к закэшированной записи изменение, уже записанное в БД
+     */
+    public void update(UUID taskId, UnaryOperator<TaskMetadata> change) {
+        entries.computeIfPresent(taskId, (id, entry) -> new Entry(change.apply(entry.metadata()), entry.expiresAt()));
+    }
+
+    /**
+     * Удаляет запись; внутри транзакции - еще раз после коммита, чтобы не закэшировать
+     * состояние, прочитанное параллельным запросом до коммита
+     */
+    public void evict(UUID taskId) {
+        entries.remove(taskId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    entries.remove(taskId);
+                }
+            });
+        }
+    }
+
+    public void evictAll(Collection<UUID> taskIds) {
+        taskIds.forEach(this::evict);
+    }
+
+    private void put(TaskMetadata metadata) {
+        int maxSize = taskProperties.metadataCacheSize();
+        if (maxSize == 0) {
+            return;
+        }
+        // Переполнение - редкий случай (тысячи активно читаемых задач), вытесняем произвольные записи
+        if (entries.size() >= maxSize) {
+            Iterator<UUID> iterator = entries.keySet().iterator();
+            for (int i = 0; i < Math.max(1, maxSize / 10) && iterator.hasNext(); i++) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        entries.put(metadata.id(), new Entry(metadata, System.nanoTime() + taskProperties.metadataCacheTtl().toNanos()));
+    }
+
+    private record Entry(TaskMetadata metadata, long expiresAt) {
+    }
+}
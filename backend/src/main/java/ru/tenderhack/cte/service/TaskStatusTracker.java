@@ -0,0 +1,114 @@
+package ru.tenderhack.cte.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.tenderhack.cte.dto.TaskStatusChange;
+import ru.tenderhack.cte.entity.Status;
+import ru.tenderhack.cte.repository.GroupingTaskRepository;
+import ru.tenderhack.cte.repository.StatusCountView;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счетчики задач по статусам и общий поток смен статуса для дашборда.
+ * Счетчики ведутся инкрементально на каждой смене статуса; периодическая сверка с БД
+ * исправляет расхождения от массовых удалений и других экземпляров сервиса.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TaskStatusTracker {
+
+    private final GroupingTaskRepository taskRepository;
+    private final NotificationService notificationService;
+    private final TaskMetadataCache metadataCache;
+
+    private final Map<Status, AtomicLong> counts = newCounts();
+
+    /**
+     * Задача создана в статусе status
+     */
+    public void created(UUID taskId, Status status) {
+        counts.get(status).incrementAndGet();
+        publish(taskId, null, status);
+    }
+
+    /**
+     * Переводит задачу в статус status одним условным UPDATE, если она в одном из статусов from
+     *
+     * @return false - задача не найдена или в другом статусе
+     */
+    public boolean transition(UUID taskId, Status status, Status... from) {
+        for (Status previous : from) {
+            if (taskRepository.transitionStatus(taskId, previous, status) > 0) {
+                metadataCache.update(taskId, metadata -> metadata.withStatus(status));
+                changed(taskId, previous, status);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Задача перешла из статуса previous в status
+     */
+    public void changed(UUID taskId, Status previous, Status status) {
+        if (previous == status) {
+            return;
+        }
+        if (previous != null) {
+            counts.get(previous).decrementAndGet();
+        }
+        counts.get(status).incrementAndGet();
+        publish(taskId, previous, status);
+    }
+
+    /**
+     * Текущее количество задач в каждом статусе
+     */
+    public Map<Status, Long> counts() {
+        Map<Status, Long> snapshot = new EnumMap<>(Status.class);
+        counts.forEach((status, count) -> snapshot.put(status, Math.max(count.get(), 0)));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Сверяет счетчики с БД
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${tasks.status-counts-resync:PT5M}", initialDelayString = "${tasks.status-counts-resync:PT5M}")
+    public void resync() {
+        Map<Status, Long> actual = new EnumMap<>(Status.class);
+        for (StatusCountView view : taskRepository.countGroupByStatus()) {
+            actual.put(view.getStatus(), view.getTaskCount());
+        }
+        counts.forEach((status, count) -> {
+            long value = actual.getOrDefault(status, 0L);
+            long previous = count.getAndSet(value);
+            if (previous != value) {
+                log.debug("Task status counter {} resynced: {} -> {}", status, previous, value);
+            }
+        });
+    }
+
+    private void publish(UUID taskId, Status previous, Status status) {
+        notificationService.notifyTaskStatusChange(new TaskStatusChange(taskId, previous, status, counts(), Instant.now()));
+    }
+
+    private static Map<Status, AtomicLong> newCounts() {
+        Map<Status, AtomicLong> counts = new EnumMap<>(Status.class);
+        for (Status status : Status.values()) {
+            counts.put(status, new AtomicLong());
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+}
@@ -0,0 +1,69 @@
+package ru.tenderhack.cte.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Секция снапшота, отображенная в память кусками: одно отображение FileChannel.map ограничено 2 ГБ, секция - нет.
+ * Адресация - long-смещением от начала секции. Размер куска - степень двойки не меньше 8, поэтому
+ * int- и long-элементы секции не пересекают границу кусков; байтовые строки читаются через границу.
+ * Все чтения абсолютные, экземпляр безопасно разделять между потоками.
+ */
+final class MappedSection {
+
+    /**
+     * Размер куска по умолчанию - 1 ГБ
+     */
+    static final int DEFAULT_CHUNK_BYTES = 1 << 30;
+
+    private final ByteBuffer[] chunks;
+    private final int chunkShift;
+    private final long chunkMask;
+
+    private MappedSection(ByteBuffer[] chunks, int chunkBytes) {
+        this.chunks = chunks;
+        this.chunkShift = Integer.numberOfTrailingZeros(chunkBytes);
+        this.chunkMask = chunkBytes - 1;
+    }
+
+    static MappedSection map(FileChannel channel, long offset, long length, int chunkBytes) throws IOException {
+        if (chunkBytes < Long.BYTES || Integer.bitCount(chunkBytes) != 1) {
+            throw new IllegalArgumentException("Chunk size must be a power of two >= 8: " + chunkBytes);
+        }
+        int count = (int) ((length + chunkBytes - 1) / chunkBytes);
+        ByteBuffer[] chunks = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = (long) i * chunkBytes;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start, Math.min(chunkBytes, length - start));
+        }
+        return new MappedSection(chunks, chunkBytes);
+    }
+
+    int intAt(long index) {
+        long position = index * Integer.BYTES;
+        return chunks[(int) (position >>> chunkShift)].getInt((int) (position & chunkMask));
+    }
+
+    long longAt(long index) {
+        long position = index * Long.BYTES;
+        return chunks[(int) (position >>> chunkShift)].getLong((int) (position & chunkMask));
+    }
+
+    /**
+     * Читает length байт с позиции position
+     */
+    byte[] bytes(long position, int length) {
+        byte[] result = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            ByteBuffer chunk = chunks[(int) (position >>> chunkShift)];
+            int offset = (int) (position & chunkMask);
+            int count = Math.min(length - copied, chunk.limit() - offset);
+            chunk.get(offset, result, copied, count);
+            copied += count;
+            position += count;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,221 @@
+package ru.tenderhack.cte.snapshot;
+
+import ru.tenderhack.cte.snapshot.ProductSnapshotFormat.Section;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+
+/**
+ * Колоночный снапшот raw_products, отображенный в память (mmap) только для чтения.
+ * Открытие стоит O(число секций), данные читаются прямо из page cache без копирования в heap.
+ * Секции отображаются кусками ({@link MappedSection}) и адресуются long-смещениями,
+ * поэтому размер секции и число пар характеристик не ограничены 2 ГБ.
+ * Все методы используют абсолютные чтения, поэтому экземпляр безопасно разделять между потоками.
+ */
+public final class ProductSnapshot {
+
+    private final Path file;
+    private final long productsVersion;
+    private final int rowCount;
+    private final EnumMap<Section, MappedSection> sections = new EnumMap<>(Section.class);
+
+    private final MappedSection ids;
+    private final MappedSection categoryIds;
+    private final MappedSection categoryCodes;
+    private final MappedSection manufacturerCodes;
+    private final MappedSection countryCodes;
+    private final MappedSection manufacturerKeyCodes;
+    private final MappedSection modelKeyCodes;
+    private final MappedSection attributeOffsets;
+    private final MappedSection attributePairs;
+
+    private ProductSnapshot(Path file, long productsVersion, int rowCount, EnumMap<Section, MappedSection> mapped) {
+        this.file = file;
+        this.productsVersion = productsVersion;
+        this.rowCount = rowCount;
+        this.sections.putAll(mapped);
+        this.ids = mapped.get(Section.IDS);
+        this.categoryIds = mapped.get(Section.CATEGORY_IDS);
+        this.categoryCodes = mapped.get(Section.CATEGORY_CODES);
+        this.manufacturerCodes = mapped.get(Section.MANUFACTURER_CODES);
+        this.countryCodes = mapped.get(Section.COUNTRY_CODES);
+        this.manufacturerKeyCodes = mapped.get(Section.MANUFACTURER_KEY_CODES);
+        this.modelKeyCodes = mapped.get(Section.MODEL_KEY_CODES);
+        this.attributeOffsets = mapped.get(Section.ATTRIBUTE_OFFSETS);
+        this.attributePairs = mapped.get(Section.ATTRIBUTE_PAIRS);
+    }
+
+    /**
+     * Отображает файл снапшота в память. Отображение остается валидным после закрытия канала.
+     */
+    public static ProductSnapshot open(Path file) throws IOException {
+        return open(file, MappedSection.DEFAULT_CHUNK_BYTES);
+    }
+
+    static ProductSnapshot open(Path file, int chunkBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, ProductSnapshotFormat.HEADER_BYTES);
+            if (header.getInt(0) != ProductSnapshotFormat.MAGIC) {
+                throw new IOException("Not a product snapshot: " + file);
+            }
+            if (header.getInt(4) != ProductSnapshotFormat.FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format version " + header.getInt(4) + ": " + file);
+            }
+            long productsVersion = header.getLong(8);
+            int rowCount = header.getInt(16);
+            int sectionCount = header.getInt(20);
+            if (sectionCount != Section.values().length) {
+                throw new IOException("Unexpected section count " + sectionCount + ": " + file);
+            }
+
+            MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, ProductSnapshotFormat.HEADER_BYTES,
+                    (long) sectionCount * ProductSnapshotFormat.SECTION_ENTRY_BYTES);
+            EnumMap<Section, MappedSection> mapped = new EnumMap<>(Section.class);
+            for (Section section : Section.values()) {
+                int entry = section.ordinal() * ProductSnapshotFormat.SECTION_ENTRY_BYTES;
+                long offset = table.getLong(entry);
+                long length = table.getLong(entry + 8);
+                mapped.put(section, MappedSection.map(channel, offset, length, chunkBytes));
+            }
+            return new ProductSnapshot(file, productsVersion, rowCount, mapped);
+        }
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public long productsVersion() {
+        return productsVersion;
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public long id(int row) {
+        return ids.longAt(row);
+    }
+
+    /**
+     * Номер строки товара по ID (бинарный поиск по отсортированной колонке) или -1
+     */
+    public int rowOf(long id) {
+        int low = 0;
+        int high = rowCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = ids.longAt(mid);
+            if (value < id) {
+                low = mid + 1;
+            } else if (value > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public Long categoryId(int row) {
+        long value = categoryIds.longAt(row);
+        return value == ProductSnapshotFormat.NULL_LONG ? null : value;
+    }
+
+    public int categoryCode(int row) {
+        return categoryCodes.intAt(row);
+    }
+
+    public String categoryName(int row) {
+        return dictionaryValue(Section.CATEGORY_DICT_OFFSETS, Section.CATEGORY_DICT_BYTES, categoryCodes.intAt(row));
+    }
+
+    public int manufacturerCode(int row) {
+        return manufacturerCodes.intAt(row);
+    }
+
+    public String manufacturer(int row) {
+        return manufacturerName(manufacturerCodes.intAt(row));
+    }
+
+    public String manufacturerName(int code) {
+        return dictionaryValue(Section.MANUFACTURER_DICT_OFFSETS, Section.MANUFACTURER_DICT_BYTES, code);
+    }
+
+    /**
+     * Код канонического ID производителя: написания одного производителя получают один код
+     */
+    public int manufacturerKeyCode(int row) {
+        return manufacturerKeyCodes.intAt(row);
+    }
+
+    public String manufacturerKey(int code) {
+        return dictionaryValue(Section.MANUFACTURER_KEY_DICT_OFFSETS, Section.MANUFACTURER_KEY_DICT_BYTES, code);
+    }
+
+    /**
+     * Код канонического ключа модели: "SKS-5" и "sks 5" получают один код
+     */
+    public int modelKeyCode(int row) {
+        return modelKeyCodes.intAt(row);
+    }
+
+    public boolean hasModelKey(int row) {
+        return modelKeyCodes.intAt(row) != ProductSnapshotFormat.NULL_CODE;
+    }
+
+    public String country(int row) {
+        return dictionaryValue(Section.COUNTRY_DICT_OFFSETS, Section.COUNTRY_DICT_BYTES, countryCodes.intAt(row));
+    }
+
+    public String title(int row) {
+        return string(Section.TITLE_OFFSETS, Section.TITLE_BYTES, row);
+    }
+
+    public String model(int row) {
+        return string(Section.MODEL_OFFSETS, Section.MODEL_BYTES, row);
+    }
+
+    public String imageUrl(int row) {
+        return string(Section.IMAGE_OFFSETS, Section.IMAGE_BYTES, row);
+    }
+
+    public int attributeCount(int row) {
+        return (int) (attributeOffsets.longAt(row + 1L) - attributeOffsets.longAt(row));
+    }
+
+    public int attributeNameId(int row, int index) {
+        return attributePairs.intAt(2 * (attributeOffsets.longAt(row) + index));
+    }
+
+    public int attributeValueId(int row, int index) {
+        return attributePairs.intAt(2 * (attributeOffsets.longAt(row) + index) + 1);
+    }
+
+    public String attributeName(int nameId) {
+        return dictionaryValue(Section.ATTRIBUTE_NAME_DICT_OFFSETS, Section.ATTRIBUTE_NAME_DICT_BYTES, nameId);
+    }
+
+    public String attributeValue(int valueId) {
+        return dictionaryValue(Section.ATTRIBUTE_VALUE_DICT_OFFSETS, Section.ATTRIBUTE_VALUE_DICT_BYTES, valueId);
+    }
+
+    private String dictionaryValue(Section offsets, Section bytes, int code) {
+        return code == ProductSnapshotFormat.NULL_CODE ? null : string(offsets, bytes, code);
+    }
+
+    private String string(Section offsetsSection, Section bytesSection, int index) {
+        MappedSection offsets = sections.get(offsetsSection);
+        long start = offsets.longAt(index);
+        long end = offsets.longAt(index + 1L);
+        if (end == start) {
+            return null;
+        }
+        return new String(sections.get(bytesSection).bytes(start, (int) (end - start)), StandardCharsets.UTF_8);
+    }
+}
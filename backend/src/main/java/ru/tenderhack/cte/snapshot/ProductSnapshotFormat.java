@@ -0,0 +1,58 @@
+package ru.tenderhack.cte.snapshot;
+
+/**
+ * Формат колоночного снапшота raw_products.
+ * <pre>
+ * header:   magic(int) formatVersion(int) productsVersion(long) rowCount(int) sectionCount(int)
+ * sections: sectionCount x (offset(long), length(long))
+ * data:     секции в порядке {@link Section}
+ * </pre>
+ * Строки хранятся как offsets(long[n + 1]) + UTF-8 bytes, пустая строка означает null.
+ * Характеристики строки - пары (название, значение) int-кодов с номера пары ATTRIBUTE_OFFSETS(long[n + 1]).
+ * Производитель, категория, страна, характеристики и канонические ключи производителя и модели
+ * закодированы словарями (код -1 - null).
+ */
+final class ProductSnapshotFormat {
+
+    static final int MAGIC = 0x43544553; // "CTES"
+    static final int FORMAT_VERSION = 3;
+    static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4;
+    static final int SECTION_ENTRY_BYTES = 8 + 8;
+    static final long NULL_LONG = Long.MIN_VALUE;
+    static final int NULL_CODE = -1;
+
+    enum Section {
+        IDS,
+        CATEGORY_IDS,
+        CATEGORY_CODES,
+        MANUFACTURER_CODES,
+        COUNTRY_CODES,
+        MANUFACTURER_KEY_CODES,
+        MODEL_KEY_CODES,
+        TITLE_OFFSETS,
+        TITLE_BYTES,
+        MODEL_OFFSETS,
+        MODEL_BYTES,
+        IMAGE_OFFSETS,
+        IMAGE_BYTES,
+        ATTRIBUTE_OFFSETS,
+        ATTRIBUTE_PAIRS,
+        CATEGORY_DICT_OFFSETS,
+        CATEGORY_DICT_BYTES,
+        MANUFACTURER_DICT_OFFSETS,
+        MANUFACTURER_DICT_BYTES,
+        COUNTRY_DICT_OFFSETS,
+        COUNTRY_DICT_BYTES,
+        ATTRIBUTE_NAME_DICT_OFFSETS,
+        ATTRIBUTE_NAME_DICT_BYTES,
+        ATTRIBUTE_VALUE_DICT_OFFSETS,
+        ATTRIBUTE_VALUE_DICT_BYTES,
+        MANUFACTURER_KEY_DICT_OFFSETS,
+        MANUFACTURER_KEY_DICT_BYTES,
+        MODEL_KEY_DICT_OFFSETS,
+        MODEL_KEY_DICT_BYTES
+    }
+
+    private ProductSnapshotFormat() {
+    }
+}
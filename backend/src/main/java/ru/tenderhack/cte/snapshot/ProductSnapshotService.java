@@ -0,0 +1,158 @@
+package ru.tenderhack.cte.snapshot;
+
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.tenderhack.cte.config.GroupingProperties;
+import ru.tenderhack.cte.entity.RawProductEntity;
+import ru.tenderhack.cte.normalize.AttributeNormalizer;
+import ru.tenderhack.cte.normalize.ProductKeyCanonicalizer;
+import ru.tenderhack.cte.repository.RawProductRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Управляет колоночным снапшотом raw_products.
+ * Снапшот строится лениво одним проходом по таблице: при первом отборе товаров после изменения raw_products
+ * (новая версия) или фоновым прогревом после старта (grouping.snapshot-warmup); загрузка товаров сама
+ * его не строит. Готовый снапшот открывается через mmap: запуск группировки не читает товары через JDBC.
+ */
+@Slf4j
+@Service
+public class ProductSnapshotService {
+
+    private final RawProductRepository rawProductRepository;
+    private final EntityManager entityManager;
+    private final AttributeNormalizer normalizer;
+    private final ProductKeyCanonicalizer canonicalizer;
+    private final TransactionTemplate snapshotTransaction;
+    private final Path snapshotDir;
+    private final boolean warmup;
+    private final ReentrantLock buildLock = new ReentrantLock();
+
+    private volatile ProductSnapshot current;
+
+    public ProductSnapshotService(RawProductRepository rawProductRepository,
+                                  EntityManager entityManager,
+                                  PlatformTransactionManager transactionManager,
+                                  GroupingProperties groupingProperties,
+                                  AttributeNormalizer normalizer,
+                                  ProductKeyCanonicalizer canonicalizer) {
+        this.rawProductRepository = rawProductRepository;
+        this.entityManager = entityManager;
+        this.normalizer = normalizer;
+        this.canonicalizer = canonicalizer;
+        this.snapshotDir = Path.of(groupingProperties.snapshotDir());
+        this.warmup = groupingProperties.snapshotWarmup();
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        // Версия и содержимое читаются из одного снимка БД
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * Возвращает снапшот, соответствующий текущей версии raw_products, при необходимости перестраивая его
+     */
+    public ProductSnapshot acquire() {
+        long version = rawProductRepository.findProductsVersion();
+        ProductSnapshot snapshot = current;
+        if (snapshot != null && snapshot.productsVersion() >= version) {
+            return snapshot;
+        }
+
+        buildLock.lock();
+        try {
+            snapshot = current;
+            if (snapshot != null && snapshot.productsVersion() >= version) {
+                return snapshot;
+            }
+            current = loadOrBuild();
+            return current;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to prepare product snapshot", e);
+        } finally {
+            buildLock.unlock();
+        }
+    }
+
+    /**
+     * Фоновая загрузка (или построение) снапшота после готовности приложения (grouping.snapshot-warmup):
+     * старт не ждет снапшот, а первая группировка не платит за его загрузку
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!warmup) {
+            return;
+        }
+        try {
+            acquire();
+        } catch (Exception e) {
+            // Снапшот будет построен первой группировкой
+            log.warn("Product snapshot warm-up failed: {}", e.getMessage());
+        }
+    }
+
+    private ProductSnapshot loadOrBuild() throws IOException {
+        Files.createDirectories(snapshotDir);
+        ProductSnapshot snapshot = snapshotTransaction.execute(status -> {
+            long version = rawProductRepository.findProductsVersion();
+            // Снапшот, построенный с другими словарями нормализации и ключей, не переиспользуется,
+            // как и снапшот прежней версии формата
+            Path file = snapshotDir.resolve("products-" + version + "-v" + ProductSnapshotFormat.FORMAT_VERSION + "-"
+                    + normalizer.fingerprint() + canonicalizer.fingerprint() + ".snap");
+            try {
+                if (!Files.exists(file)) {
+                    build(file, version);
+                }
+                return ProductSnapshot.open(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        deleteStale(snapshot.file());
+        log.info("Product snapshot ready: version {}, {} rows, file {}",
+                snapshot.productsVersion(), snapshot.rowCount(), snapshot.file());
+        return snapshot;
+    }
+
+    private void build(Path file, long version) throws IOException {
+        long started = System.currentTimeMillis();
+        try (ProductSnapshotWriter writer = new ProductSnapshotWriter(file, version, normalizer, canonicalizer);
+             Stream<RawProductEntity> products = rawProductRepository.streamAllOrderById()) {
+            var iterator = products.iterator();
+            while (iterator.hasNext()) {
+                RawProductEntity product = iterator.next();
+                writer.append(product);
+                entityManager.detach(product);
+            }
+            writer.finish();
+            log.info("Built product snapshot version {} with {} rows in {} ms",
+                    version, writer.rowCount(), System.currentTimeMillis() - started);
+        }
+    }
+
+    private void deleteStale(Path keep) {
+        try (var files = Files.list(snapshotDir)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".snap")).toList()) {
+                if (!file.equals(keep)) {
+                    // Уже открытые отображения остаются валидными после удаления файла
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean up stale snapshots in {}: {}", snapshotDir, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package ru.tenderhack.cte.snapshot;
+
+import ru.tenderhack.cte.entity.RawProductEntity;
+import ru.tenderhack.cte.normalize.AttributeNormalizer;
+import ru.tenderhack.cte.normalize.ProductKeyCanonicalizer;
+import ru.tenderhack.cte.service.CharacteristicsParser;
+import ru.tenderhack.cte.snapshot.ProductSnapshotFormat.Section;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Потоковая запись колоночного снапшота.
+ * Каждая колонка пишется в свой временный файл, в памяти держатся только словари,
+ * поэтому расход heap не зависит от числа товаров. Товары должны поступать по возрастанию ID.
+ * Названия и значения характеристик записываются нормализованными; нормализация выполняется
+ * один раз на каждую различную исходную строку, дальше исходная строка сразу отображается в код словаря.
+ * Канонические ключи производителя и модели берутся из raw_products, если они вычислены текущим словарем,
+ * иначе вычисляются здесь же.
+ */
+public class ProductSnapshotWriter implements Closeable {
+
+    private final Path target;
+    private final long productsVersion;
+    private final Path workDir;
+    private final AttributeNormalizer normalizer;
+    private final ProductKeyCanonicalizer canonicalizer;
+    private final EnumMap<Section, ColumnOutput> columns = new EnumMap<>(Section.class);
+
+    private final Dictionary categories = new Dictionary(false);
+    private final Dictionary manufacturers = new Dictionary(false);
+    private final Dictionary countries = new Dictionary(false);
+    private final Dictionary attributeNames = new Dictionary(true);
+    private final Dictionary attributeValues = new Dictionary(true);
+    private final Dictionary manufacturerKeys = new Dictionary(false);
+    private final Dictionary modelKeys = new Dictionary(false);
+    // Исходная строка -> код нормализованного значения в словаре
+    private final Map<String, Integer> rawNameCodes = new HashMap<>();
+    private final Map<String, Integer> rawValueCodes = new HashMap<>();
+    private final Set<Integer> rowNameCodes = new HashSet<>();
+
+    private final StringColumn titles;
+    private final StringColumn models;
+    private final StringColumn images;
+
+    private int rowCount;
+    private long attributePairs;
+    private long lastId = Long.MIN_VALUE;
+
+    public ProductSnapshotWriter(Path target, long productsVersion, AttributeNormalizer normalizer,
+                                 ProductKeyCanonicalizer canonicalizer) throws IOException {
+        this.target = target;
+        this.productsVersion = productsVersion;
+        this.normalizer = normalizer;
+        this.canonicalizer = canonicalizer;
+        this.workDir = Files.createTempDirectory(target.toAbsolutePath().getParent(), "snapshot-");
+        for (Section section : Section.values()) {
+            columns.put(section, new ColumnOutput(workDir.resolve(section.name())));
+        }
+        titles = new StringColumn(columns.get(Section.TITLE_OFFSETS), columns.get(Section.TITLE_BYTES));
+        models = new StringColumn(columns.get(Section.MODEL_OFFSETS), columns.get(Section.MODEL_BYTES));
+        images = new StringColumn(columns.get(Section.IMAGE_OFFSETS), columns.get(Section.IMAGE_BYTES));
+        columns.get(Section.ATTRIBUTE_OFFSETS).out.writeLong(0);
+    }
+
+    public void append(RawProductEntity product) throws IOException {
+        if (product.getId() <= lastId) {
+            throw new IllegalStateException("Products must be appended in ascending id order: " + product.getId());
+        }
+        lastId = product.getId();
+
+        columns.get(Section.IDS).out.writeLong(product.getId());
+        columns.get(Section.CATEGORY_IDS).out.writeLong(
+                product.getCategoryId() != null ? product.getCategoryId() : ProductSnapshotFormat.NULL_LONG);
+        columns.get(Section.CATEGORY_CODES).out.writeInt(categories.code(product.getCategoryName()));
+        columns.get(Section.MANUFACTURER_CODES).out.writeInt(manufacturers.code(product.getManufacturer()));
+        columns.get(Section.COUNTRY_CODES).out.writeInt(countries.code(product.getCountry()));
+        boolean keysCurrent = canonicalizer.fingerprint().equals(product.getCanonicalKeysVersion());
+        columns.get(Section.MANUFACTURER_KEY_CODES).out.writeInt(manufacturerKeys.code(keysCurrent
+                ? product.getManufacturerId() : canonicalizer.manufacturerId(product.getManufacturer())));
+        columns.get(Section.MODEL_KEY_CODES).out.writeInt(modelKeys.code(keysCurrent
+                ? product.getModelKey() : canonicalizer.modelKey(product.getModel())));
+        titles.append(product.getTitle());
+        models.append(product.getModel());
+        images.append(product.getImageUrl());
+
+        DataOutputStream pairs = columns.get(Section.ATTRIBUTE_PAIRS).out;
+        for (Map.Entry<String, String> attribute : CharacteristicsParser.parse(product.getCharacteristics()).entrySet()) {
+            int nameCode = rawNameCodes.computeIfAbsent(attribute.getKey(),
+                    raw -> attributeNames.code(normalizer.normalizeName(raw)));
+            int valueCode = rawValueCodes.computeIfAbsent(attribute.getValue(),
+                    raw -> attributeValues.code(normalizer.normalizeValue(raw)));
+            // Синонимы названий могут свести две характеристики товара к одной - остается первая
+            if (nameCode == ProductSnapshotFormat.NULL_CODE || valueCode == ProductSnapshotFormat.NULL_CODE
+                    || !rowNameCodes.add(nameCode)) {
+                continue;
+            }
+            pairs.writeInt(nameCode);
+            pairs.writeInt(valueCode);
+            attributePairs++;
+        }
+        rowNameCodes.clear();
+        columns.get(Section.ATTRIBUTE_OFFSETS).out.writeLong(attributePairs);
+        rowCount++;
+    }
+
+    /**
+     * Дописывает словари, собирает секции в итоговый файл и атомарно публикует его
+     */
+    public void finish() throws IOException {
+        categories.writeTo(columns.get(Section.CATEGORY_DICT_OFFSETS), columns.get(Section.CATEGORY_DICT_BYTES));
+        manufacturers.writeTo(columns.get(Section.MANUFACTURER_DICT_OFFSETS), columns.get(Section.MANUFACTURER_DICT_BYTES));
+        countries.writeTo(columns.get(Section.COUNTRY_DICT_OFFSETS), columns.get(Section.COUNTRY_DICT_BYTES));
+        attributeNames.writeTo(columns.get(Section.ATTRIBUTE_NAME_DICT_OFFSETS), columns.get(Section.ATTRIBUTE_NAME_DICT_BYTES));
+        attributeValues.writeTo(columns.get(Section.ATTRIBUTE_VALUE_DICT_OFFSETS), columns.get(Section.ATTRIBUTE_VALUE_DICT_BYTES));
+        manufacturerKeys.writeTo(columns.get(Section.MANUFACTURER_KEY_DICT_OFFSETS), columns.get(Section.MANUFACTURER_KEY_DICT_BYTES));
+        modelKeys.writeTo(columns.get(Section.MODEL_KEY_DICT_OFFSETS), columns.get(Section.MODEL_KEY_DICT_BYTES));
+        for (ColumnOutput column : columns.values()) {
+            column.out.close();
+        }
+
+        Path assembled = workDir.resolve("snapshot.tmp");
+        try (FileChannel out = FileChannel.open(assembled, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            int sectionCount = Section.values().length;
+            ByteBuffer header = ByteBuffer
+                    .allocate(ProductSnapshotFormat.HEADER_BYTES + sectionCount * ProductSnapshotFormat.SECTION_ENTRY_BYTES)
+                    .order(ByteOrder.BIG_ENDIAN);
+            header.putInt(ProductSnapshotFormat.MAGIC)
+                    .putInt(ProductSnapshotFormat.FORMAT_VERSION)
+                    .putLong(productsVersion)
+                    .putInt(rowCount)
+                    .putInt(sectionCount);
+            long offset = header.capacity();
+            for (Section section : Section.values()) {
+                long length = Files.size(columns.get(section).file);
+                header.putLong(offset).putLong(length);
+                offset += length;
+            }
+            header.flip();
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            for (Section section : Section.values()) {
+                try (FileChannel in = FileChannel.open(columns.get(section).file, StandardOpenOption.READ)) {
+                    long size = in.size();
+                    long position = 0;
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+            }
+            out.force(true);
+        }
+        Files.move(assembled, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ColumnOutput column : columns.values()) {
+            column.out.close();
+        }
+        try (var files = Files.list(workDir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(workDir);
+    }
+
+    private static final class ColumnOutput {
+
+        private final Path file;
+        private final DataOutputStream out;
+
+        private ColumnOutput(Path file) throws IOException {
+            this.file = file;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        }
+    }
+
+    private static final class StringColumn {
+
+        private final ColumnOutput offsets;
+        private final ColumnOutput bytes;
+        private long length;
+
+        private StringColumn(ColumnOutput offsets, ColumnOutput bytes) throws IOException {
+            this.offsets = offsets;
+            this.bytes = bytes;
+            offsets.out.writeLong(0);
+        }
+
+        private void append(String value) throws IOException {
+            if (value != null) {
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                bytes.out.write(encoded);
+                length += encoded.length;
+            }
+            offsets.out.writeLong(length);
+        }
+    }
+
+    private static final class Dictionary {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        // Без учета регистра: в словарь попадает первое встреченное написание
+        private final boolean ignoreCase;
+
+        private Dictionary(boolean ignoreCase) {
+            this.ignoreCase = ignoreCase;
+        }
+
+        private int code(String value) {
+            if (value == null || value.isBlank()) {
+                return ProductSnapshotFormat.NULL_CODE;
+            }
+            String trimmed = value.trim();
+            return codes.computeIfAbsent(ignoreCase ? trimmed.toLowerCase(Locale.ROOT) : trimmed, key -> {
+                values.add(trimmed);
+                return values.size() - 1;
+            });
+        }
+
+        private void writeTo(ColumnOutput offsets, ColumnOutput bytes) throws IOException {
+            StringColumn column = new StringColumn(offsets, bytes);
+            for (String value : values) {
+                column.append(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package ru.tenderhack.cte.spill;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Сортировка long-значений в ограниченной памяти (external merge sort).
+ * Значения копятся в буфере; буфер растет, пока бюджет дает резерв, иначе сортируется и сбрасывается
+ * на диск отдельным прогоном. Прогоны сливаются k-путевым слиянием, при большом числе прогонов - в несколько проходов.
+ * Минимальный буфер выделяется вне бюджета, чтобы сортировка всегда продвигалась.
+ */
+public final class ExternalLongSorter implements Closeable {
+
+    private static final int MIN_BUFFER = 1 << 16;
+    private static final int MAX_FAN_IN = 64;
+    private static final int IO_BUFFER = 1 << 16;
+
+    private final SpillContext context;
+    private final List<Run> runs = new ArrayList<>();
+    private long[] buffer = new long[1024];
+    private int size;
+    private long reserved;
+    private MergeIterator merge;
+
+    public ExternalLongSorter(SpillContext context) {
+        this.context = context;
+    }
+
+    public void add(long value) throws IOException {
+        if (size == buffer.length) {
+            grow();
+        }
+        buffer[size++] = value;
+    }
+
+    /**
+     * Возвращает все добавленные значения по возрастанию. Вызывается один раз.
+     * Файлы прогонов открыты до {@link #close()}, в том числе если обход прерван исключением.
+     */
+    public PrimitiveIterator.OfLong sorted() throws IOException {
+        if (runs.isEmpty()) {
+            Arrays.sort(buffer, 0, size);
+            return Arrays.stream(buffer, 0, size).iterator();
+        }
+        if (size > 0) {
+            spillRun();
+        }
+        releaseBuffer();
+
+        while (runs.size() > MAX_FAN_IN) {
+            List<Run> merged = new ArrayList<>();
+            for (int from = 0; from < runs.size(); from += MAX_FAN_IN) {
+                merged.add(mergeToRun(runs.subList(from, Math.min(from + MAX_FAN_IN, runs.size()))));
+            }
+            runs.clear();
+            runs.addAll(merged);
+            context.recordMergePass();
+        }
+        context.recordMergePass();
+        merge = new MergeIterator(runs);
+        return merge;
+    }
+
+    @Override
+    public void close() throws IOException {
+        releaseBuffer();
+        if (merge != null) {
+            merge.close();
+            merge = null;
+        }
+        for (Run run : runs) {
+            Files.deleteIfExists(run.file());
+        }
+        runs.clear();
+    }
+
+    private void grow() throws IOException {
+        int length = buffer.length * 2;
+        if (length > MIN_BUFFER) {
+            long extra = (long) (length - buffer.length) * Long.BYTES;
+            if (!context.budget().tryReserve(extra)) {
+                spillRun();
+                return;
+            }
+            reserved += extra;
+        }
+        buffer = Arrays.copyOf(buffer, length);
+    }
+
+    private void spillRun() throws IOException {
+        Arrays.sort(buffer, 0, size);
+        Path file = context.newFile("sort-");
+        try (DataOutputStream out = output(file)) {
+            for (int i = 0; i < size; i++) {
+                out.writeLong(buffer[i]);
+            }
+        }
+        context.recordSpill((long) size * Long.BYTES);
+        runs.add(new Run(file, size));
+        size = 0;
+    }
+
+    private Run mergeToRun(List<Run> sources) throws IOException {
+        Path file = context.newFile("merge-");
+        long count = 0;
+        MergeIterator sourcesMerge = new MergeIterator(sources);
+        try (DataOutputStream out = output(file)) {
+            while (sourcesMerge.hasNext()) {
+                out.writeLong(sourcesMerge.nextLong());
+                count++;
+            }
+        } finally {
+            sourcesMerge.close();
+        }
+        for (Run source : sources) {
+            Files.deleteIfExists(source.file());
+        }
+        context.recordSpill(count * Long.BYTES);
+        return new Run(file, count);
+    }
+
+    private void releaseBuffer() {
+        context.budget().release(reserved);
+        reserved = 0;
+        buffer = new long[0];
+        size = 0;
+    }
+
+    private static DataOutputStream output(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER));
+    }
+
+    private record Run(Path file, long count) {
+    }
+
+    /**
+     * Прочитанный прогон: текущее значение и остаток
+     */
+    private static final class RunReader {
+
+        private final DataInputStream in;
+        private long remaining;
+        private long head;
+
+        RunReader(Run run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.file()), IO_BUFFER));
+            this.remaining = run.count();
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                in.close();
+                return false;
+            }
+            head = in.readLong();
+            remaining--;
+            return true;
+        }
+    }
+
+    private static final class MergeIterator implements PrimitiveIterator.OfLong, Closeable {
+
+        private final PriorityQueue<RunReader> queue =
+                new PriorityQueue<>(Comparator.comparingLong((RunReader reader) -> reader.head));
+
+        MergeIterator(List<Run> runs) throws IOException {
+            try {
+                for (Run run : runs) {
+                    RunReader reader = new RunReader(run);
+                    boolean open = false;
+                    try {
+                        open = reader.advance();
+                    } finally {
+                        if (open) {
+                            queue.add(reader);
+                        } else {
+                            reader.in.close();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public long nextLong() {
+            RunReader reader = queue.poll();
+            if (reader == null) {
+                throw new NoSuchElementException();
+            }
+            long value = reader.head;
+            try {
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            } catch (IOException e) {
+                try {
+                    reader.in.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw new UncheckedIOException(e);
+            }
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (RunReader reader : queue) {
+                reader.in.close();
+            }
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package ru.tenderhack.cte.spill;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Хранилище групп (массивов номеров строк) партиции между фазами группировки.
+ * Группы держатся в памяти, пока бюджет дает резерв; остальные дописываются во временный файл.
+ */
+public final class GroupSpool implements Closeable {
+
+    /**
+     * Заголовок массива и ссылка в списке
+     */
+    private static final int GROUP_OVERHEAD = 24;
+    private static final int IO_BUFFER = 1 << 16;
+
+    /**
+     * Обработчик группы при чтении
+     */
+    @FunctionalInterface
+    public interface GroupConsumer {
+        void accept(int[] rows) throws IOException;
+    }
+
+    private final SpillContext context;
+    private final List<int[]> inMemory = new ArrayList<>();
+    private long reserved;
+    private Path file;
+    private DataOutputStream out;
+    private int spilledGroups;
+
+    public GroupSpool(SpillContext context) {
+        this.context = context;
+    }
+
+    public void add(int[] rows) throws IOException {
+        long bytes = (long) rows.length * Integer.BYTES + GROUP_OVERHEAD;
+        if (out == null && context.budget().tryReserve(bytes)) {
+            inMemory.add(rows);
+            reserved += bytes;
+            return;
+        }
+        if (out == null) {
+            file = context.newFile("groups-");
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER));
+        }
+        out.writeInt(rows.length);
+        for (int row : rows) {
+            out.writeInt(row);
+        }
+        spilledGroups++;
+        context.recordSpill((long) (rows.length + 1) * Integer.BYTES);
+    }
+
+    public int size() {
+        return inMemory.size() + spilledGroups;
+    }
+
+    /**
+     * Передает все группы обработчику: сначала находящиеся в памяти, затем сброшенные на диск
+     */
+    public void forEach(GroupConsumer consumer) throws IOException {
+        for (int[] rows : inMemory) {
+            consumer.accept(rows);
+        }
+        if (out == null) {
+            return;
+        }
+        out.flush();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), IO_BUFFER))) {
+            for (int group = 0; group < spilledGroups; group++) {
+                int[] rows = new int[in.readInt()];
+                for (int i = 0; i < rows.length; i++) {
+                    rows[i] = in.readInt();
+                }
+                consumer.accept(rows);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.budget().release(reserved);
+        reserved = 0;
+        inMemory.clear();
+        if (out != null) {
+            out.close();
+            out = null;
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ru.tenderhack.cte.spill;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Бюджет памяти запуска группировки, общий для параллельно обрабатываемых партиций.
+ * Структуры, не получившие резерв, сбрасывают данные на диск.
+ */
+public final class MemoryBudget {
+
+    private final long limit;
+    private final AtomicLong used = new AtomicLong();
+
+    public MemoryBudget(long limit) {
+        this.limit = limit;
+    }
+
+    public boolean tryReserve(long bytes) {
+        while (true) {
+            long current = used.get();
+            if (current + bytes > limit) {
+                return false;
+            }
+            if (used.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Обязательный резерв под данные, которые нельзя сбросить на диск (например, отрезок строк одного ключа).
+     * Может превысить лимит; структуры, резервирующие через {@link #tryReserve}, тогда сбрасываются раньше.
+     */
+    public void reserve(long bytes) {
+        used.addAndGet(bytes);
+    }
+
+    public void release(long bytes) {
+        used.addAndGet(-bytes);
+    }
+
+    public long used() {
+        return used.get();
+    }
+}
@@ -0,0 +1,114 @@
+package ru.tenderhack.cte.spill;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Номера строк снапшота (категория отбора, партиция) в пределах бюджета памяти.
+ * Буфер растет, пока бюджет дает резерв; иначе его содержимое дописывается во временный файл
+ * и буфер заполняется заново. Минимальный буфер выделяется вне бюджета, чтобы запись всегда продвигалась.
+ * Файл открывается только на время дозаписи и чтения: хранилищ (по одному на категорию) может быть много.
+ * Порядок строк при чтении - порядок добавления.
+ */
+public final class RowSpool implements Closeable {
+
+    private static final int MIN_BUFFER = 16;
+    private static final int IO_BUFFER = 1 << 16;
+
+    /**
+     * Обработчик номера строки при чтении
+     */
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(int row) throws IOException;
+    }
+
+    private final SpillContext context;
+    private int[] buffer = new int[MIN_BUFFER];
+    private int buffered;
+    private long reserved;
+    private Path file;
+    private long spilled;
+    private int first = -1;
+
+    public RowSpool(SpillContext context) {
+        this.context = context;
+    }
+
+    public void add(int row) throws IOException {
+        if (buffered == buffer.length) {
+            grow();
+        }
+        if (first < 0) {
+            first = row;
+        }
+        buffer[buffered++] = row;
+    }
+
+    /**
+     * Количество строк; сохраняется после закрытия
+     */
+    public long size() {
+        return spilled + buffered;
+    }
+
+    /**
+     * Первая добавленная строка или -1
+     */
+    public int first() {
+        return first;
+    }
+
+    /**
+     * Передает строки обработчику: сначала сброшенные на диск, затем находящиеся в памяти
+     */
+    public void forEach(RowConsumer consumer) throws IOException {
+        if (spilled > 0) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(file), IO_BUFFER))) {
+                for (long i = 0; i < spilled; i++) {
+                    consumer.accept(in.readInt());
+                }
+            }
+        }
+        for (int i = 0; i < buffered; i++) {
+            consumer.accept(buffer[i]);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.budget().release(reserved);
+        reserved = 0;
+        buffer = new int[0];
+        if (file != null) {
+            Files.deleteIfExists(file);
+            file = null;
+        }
+    }
+
+    private void grow() throws IOException {
+        long extra = (long) buffer.length * Integer.BYTES;
+        if (context.budget().tryReserve(extra)) {
+            reserved += extra;
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            return;
+        }
+        if (file == null) {
+            file = context.newFile("rows-");
+        }
+        int ioBuffer = Math.min(IO_BUFFER, buffered * Integer.BYTES);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.APPEND), ioBuffer))) {
+            for (int i = 0; i < buffered; i++) {
+                out.writeInt(buffer[i]);
+            }
+        }
+        context.recordSpill((long) buffered * Integer.BYTES);
+        spilled += buffered;
+        buffered = 0;
+    }
+}
@@ -0,0 +1,70 @@
+package ru.tenderhack.cte.spill;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Временный каталог, бюджет памяти и счетчики сброса на диск одного запуска группировки.
+ * При закрытии каталог удаляется со всеми файлами.
+ */
+public final class SpillContext implements Closeable {
+
+    private final Path directory;
+    private final MemoryBudget budget;
+    private final AtomicLong spilledBytes = new AtomicLong();
+    private final AtomicLong spillFiles = new AtomicLong();
+    private final AtomicLong mergePasses = new AtomicLong();
+
+    private SpillContext(Path directory, MemoryBudget budget) {
+        this.directory = directory;
+        this.budget = budget;
+    }
+
+    public static SpillContext create(Path parent, long budgetBytes) throws IOException {
+        Files.createDirectories(parent);
+        return new SpillContext(Files.createTempDirectory(parent, "run-"), new MemoryBudget(budgetBytes));
+    }
+
+    public MemoryBudget budget() {
+        return budget;
+    }
+
+    public long spilledBytes() {
+        return spilledBytes.get();
+    }
+
+    public long spillFiles() {
+        return spillFiles.get();
+    }
+
+    public long mergePasses() {
+        return mergePasses.get();
+    }
+
+    Path newFile(String prefix) throws IOException {
+        spillFiles.incrementAndGet();
+        return Files.createTempFile(directory, prefix, ".spill");
+    }
+
+    void recordSpill(long bytes) {
+        spilledBytes.addAndGet(bytes);
+    }
+
+    void recordMergePass() {
+        mergePasses.incrementAndGet();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
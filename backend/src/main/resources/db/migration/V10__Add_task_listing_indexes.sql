@@ -0,0 +1,7 @@
+-- Keyset-пагинация списка задач: (created_at, id) по убыванию, с фильтром по статусу и без.
+-- Составные индексы покрывают одиночные индексы по created_at и status из V1.
+CREATE INDEX IF NOT EXISTS idx_grouping_tasks_created_at_id ON grouping_tasks(created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_grouping_tasks_status_created_at_id ON grouping_tasks(status, created_at DESC, id DESC);
+
+DROP INDEX IF EXISTS idx_grouping_tasks_created_at;
+DROP INDEX IF EXISTS idx_grouping_tasks_status;
@@ -0,0 +1,21 @@
+-- Канонические ключи товара для точного блокирования дублей: (категория, производитель, модель).
+-- Значения вычисляет приложение (ProductKeyCanonicalizer) и дописывает ProductKeyBackfillService;
+-- canonical_keys_version - отпечаток словаря производителей, с которым вычислены ключи.
+ALTER TABLE raw_products ADD COLUMN IF NOT EXISTS model_key VARCHAR(500);
+ALTER TABLE raw_products ADD COLUMN IF NOT EXISTS manufacturer_id VARCHAR(500);
+ALTER TABLE raw_products ADD COLUMN IF NOT EXISTS canonical_keys_version VARCHAR(16);
+
+CREATE INDEX IF NOT EXISTS idx_raw_products_blocking_key ON raw_products(category_id, manufacturer_id, model_key);
+
+COMMENT ON COLUMN raw_products.model_key IS 'Канонический ключ модели (верхний регистр, без пунктуации)';
+COMMENT ON COLUMN raw_products.manufacturer_id IS 'Канонический ID производителя по словарю написаний';
+COMMENT ON COLUMN raw_products.canonical_keys_version IS 'Отпечаток словаря, с которым вычислены ключи';
+
+-- Ключи выводятся из содержимого товара и его не меняют: UPDATE только ключей (ProductKeyBackfillService)
+-- не должен увеличивать версию raw_products и инвалидировать кэш группировок и снапшот
+DROP TRIGGER IF EXISTS trg_raw_products_version ON raw_products;
+CREATE TRIGGER trg_raw_products_version
+    AFTER INSERT OR DELETE OR TRUNCATE
+        OR UPDATE OF ste_id, title, image_url, model, country, manufacturer, category_id, category_name, characteristics
+    ON raw_products
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_raw_products_version();
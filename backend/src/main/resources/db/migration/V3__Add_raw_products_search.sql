@@ -0,0 +1,17 @@
+-- Полнотекстовый поиск по raw_products для отбора товаров по GroupingRequest.query
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE raw_products
+    ADD COLUMN IF NOT EXISTS search_vector tsvector
+        GENERATED ALWAYS AS (
+            setweight(to_tsvector('russian', coalesce(title, '')), 'A') ||
+            setweight(to_tsvector('russian', coalesce(model, '')), 'A') ||
+            setweight(to_tsvector('russian', coalesce(manufacturer, '')), 'B') ||
+            setweight(to_tsvector('russian', coalesce(category_name, '')), 'C')
+        ) STORED;
+
+-- Индексы для полнотекстового поиска и триграммного поиска по артикулу
+CREATE INDEX IF NOT EXISTS idx_raw_products_search_vector ON raw_products USING GIN (search_vector);
+CREATE INDEX IF NOT EXISTS idx_raw_products_model_trgm ON raw_products USING GIN (lower(model) gin_trgm_ops);
+
+COMMENT ON COLUMN raw_products.search_vector IS 'Полнотекстовый индекс по названию, модели, производителю и категории';
@@ -0,0 +1,35 @@
+-- Версия содержимого raw_products: увеличивается при любом изменении таблицы
+CREATE TABLE IF NOT EXISTS raw_products_version (
+    id SMALLINT PRIMARY KEY DEFAULT 1 CHECK (id = 1),
+    version BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+INSERT INTO raw_products_version (id, version) VALUES (1, 0) ON CONFLICT (id) DO NOTHING;
+
+CREATE OR REPLACE FUNCTION bump_raw_products_version() RETURNS TRIGGER AS $$
+BEGIN
+    UPDATE raw_products_version SET version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE id = 1;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_raw_products_version ON raw_products;
+CREATE TRIGGER trg_raw_products_version
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON raw_products
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_raw_products_version();
+
+-- Кэш результатов группировки: нормализованный запрос + версия товаров + ссылка на задачу-источник
+ALTER TABLE grouping_tasks ADD COLUMN IF NOT EXISTS normalized_query TEXT;
+ALTER TABLE grouping_tasks ADD COLUMN IF NOT EXISTS products_version BIGINT;
+ALTER TABLE grouping_tasks ADD COLUMN IF NOT EXISTS source_task_id UUID;
+ALTER TABLE grouping_tasks
+    ADD CONSTRAINT fk_grouping_tasks_source FOREIGN KEY (source_task_id) REFERENCES grouping_tasks(id) ON DELETE SET NULL;
+
+CREATE INDEX IF NOT EXISTS idx_grouping_tasks_normalized_query ON grouping_tasks(normalized_query, products_version);
+CREATE INDEX IF NOT EXISTS idx_grouping_tasks_source_task_id ON grouping_tasks(source_task_id);
+
+COMMENT ON TABLE raw_products_version IS 'Версия содержимого raw_products для инвалидации кэша группировок';
+COMMENT ON COLUMN grouping_tasks.normalized_query IS 'Нормализованный запрос для поиска эквивалентных группировок';
+COMMENT ON COLUMN grouping_tasks.products_version IS 'Версия raw_products, на которой построена группировка';
+COMMENT ON COLUMN grouping_tasks.source_task_id IS 'Задача, чьи результаты переиспользуются (copy-on-write)';
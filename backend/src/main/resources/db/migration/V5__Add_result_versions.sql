@@ -0,0 +1,15 @@
+-- Версионирование результатов группировки: каждая перегруппировка пишет новую неизменяемую версию СТЕ
+ALTER TABLE cte_entities ADD COLUMN IF NOT EXISTS version INTEGER NOT NULL DEFAULT 1;
+ALTER TABLE grouping_tasks ADD COLUMN IF NOT EXISTS current_version INTEGER;
+ALTER TABLE grouping_tasks ADD COLUMN IF NOT EXISTS latest_version INTEGER NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS idx_cte_entities_task_version ON cte_entities(task_id, version);
+
+-- Уже существующие результаты становятся версией 1
+UPDATE grouping_tasks t
+SET current_version = 1, latest_version = 1
+WHERE EXISTS (SELECT 1 FROM cte_entities c WHERE c.task_id = t.id);
+
+COMMENT ON COLUMN cte_entities.version IS 'Версия результата группировки задачи, к которой относится СТЕ';
+COMMENT ON COLUMN grouping_tasks.current_version IS 'Опубликованная версия результатов, которую видят читатели';
+COMMENT ON COLUMN grouping_tasks.latest_version IS 'Последняя выделенная версия результатов';
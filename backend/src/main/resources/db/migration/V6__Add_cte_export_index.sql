@@ -0,0 +1,3 @@
+-- Индекс для потоковой выгрузки СТЕ версии результата в порядке id (keyset-пагинация для возобновления)
+CREATE INDEX IF NOT EXISTS idx_cte_entities_task_version_id ON cte_entities(task_id, version, id);
+DROP INDEX IF EXISTS idx_cte_entities_task_version;
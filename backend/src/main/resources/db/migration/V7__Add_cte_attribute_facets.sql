@@ -0,0 +1,19 @@
+-- Счетчики значений важных характеристик по версиям результатов.
+-- Фильтры читаются без агрегации по всем СТЕ, правки СТЕ меняют только затронутые значения.
+CREATE TABLE IF NOT EXISTS cte_attribute_facets (
+    task_id UUID NOT NULL,
+    version INT NOT NULL,
+    name TEXT NOT NULL,
+    value TEXT NOT NULL,
+    cte_count BIGINT NOT NULL,
+    CONSTRAINT pk_cte_attribute_facets PRIMARY KEY (task_id, version, name, value),
+    CONSTRAINT fk_cte_attribute_facets_task FOREIGN KEY (task_id) REFERENCES grouping_tasks(id) ON DELETE CASCADE
+);
+
+INSERT INTO cte_attribute_facets (task_id, version, name, value, cte_count)
+SELECT c.task_id, c.version, a ->> 'name', a ->> 'value', count(*)
+FROM cte_entities c CROSS JOIN LATERAL jsonb_array_elements(c.important_attributes) a
+WHERE a ->> 'name' IS NOT NULL AND a ->> 'value' IS NOT NULL
+GROUP BY 1, 2, 3, 4;
+
+COMMENT ON TABLE cte_attribute_facets IS 'Количество СТЕ версии результата для каждого значения важной характеристики';
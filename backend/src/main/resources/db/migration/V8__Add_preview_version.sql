@@ -0,0 +1,4 @@
+-- Предварительный результат группировки по выборке товаров, публикуемый до завершения полного прогона
+ALTER TABLE grouping_tasks ADD COLUMN IF NOT EXISTS preview_version INTEGER;
+
+COMMENT ON COLUMN grouping_tasks.preview_version IS 'Версия результатов, построенная по выборке товаров (предварительная)';
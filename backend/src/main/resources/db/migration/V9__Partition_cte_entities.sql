@@ -0,0 +1,61 @@
+-- cte_entities секционируется по месяцу создания задачи: все версии и копии результатов задачи лежат
+-- в одной секции, секция месяца содержит СТЕ ровно тех задач, что созданы в этом месяце, и удаляется
+-- вместе с ними целиком (DROP вместо построчного DELETE и последующего VACUUM). Первичный ключ
+-- (id, task_created_at) проверяет уникальность id в пределах задачи: повторная запись строки задачи
+-- попадает в ту же секцию.
+ALTER TABLE cte_entities RENAME TO cte_entities_old;
+
+CREATE TABLE cte_entities (
+    id UUID NOT NULL DEFAULT gen_random_uuid(),
+    task_id UUID NOT NULL,
+    version INTEGER NOT NULL DEFAULT 1,
+    image_url VARCHAR(500),
+    important_attributes JSONB DEFAULT '[]'::jsonb,
+    secondary_attributes JSONB DEFAULT '[]'::jsonb,
+    product_ids JSONB DEFAULT '[]'::jsonb,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    task_created_at TIMESTAMP NOT NULL,
+    CONSTRAINT fk_cte_task FOREIGN KEY (task_id) REFERENCES grouping_tasks(id) ON DELETE CASCADE
+) PARTITION BY RANGE (task_created_at);
+
+-- Секции всех месяцев с задачами и двух следующих; дальше секции заранее создает RetentionService
+DO $$
+DECLARE
+    first_month DATE;
+    last_month DATE := date_trunc('month', CURRENT_DATE) + INTERVAL '2 months';
+    m DATE;
+BEGIN
+    SELECT LEAST(date_trunc('month', min(created_at)), date_trunc('month', CURRENT_DATE))
+    INTO first_month FROM grouping_tasks;
+    first_month := coalesce(first_month, date_trunc('month', CURRENT_DATE));
+    m := first_month;
+    WHILE m <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF cte_entities FOR VALUES FROM (%L) TO (%L)',
+                       'cte_entities_' || to_char(m, 'YYYY_MM'), m, m + INTERVAL '1 month');
+        m := m + INTERVAL '1 month';
+    END LOOP;
+END $$;
+CREATE TABLE cte_entities_default PARTITION OF cte_entities DEFAULT;
+
+-- Время записи существующих СТЕ неизвестно - берется время создания задачи
+INSERT INTO cte_entities (id, task_id, version, image_url, important_attributes, secondary_attributes, product_ids,
+                          created_at, task_created_at)
+SELECT c.id, c.task_id, c.version, c.image_url, c.important_attributes, c.secondary_attributes, c.product_ids,
+       t.created_at, t.created_at
+FROM cte_entities_old c JOIN grouping_tasks t ON t.id = c.task_id;
+
+DROP TABLE cte_entities_old;
+
+ALTER TABLE cte_entities ADD CONSTRAINT pk_cte_entities PRIMARY KEY (id, task_created_at);
+CREATE INDEX IF NOT EXISTS idx_cte_entities_task_version_id ON cte_entities(task_id, version, id);
+CREATE INDEX IF NOT EXISTS idx_cte_entities_important_attributes ON cte_entities USING GIN (important_attributes);
+CREATE INDEX IF NOT EXISTS idx_cte_entities_secondary_attributes ON cte_entities USING GIN (secondary_attributes);
+CREATE INDEX IF NOT EXISTS idx_cte_entities_product_ids ON cte_entities USING GIN (product_ids);
+
+COMMENT ON TABLE cte_entities IS 'Канонические торговые сущности (группированные карточки товаров), секции по месяцу создания задачи';
+COMMENT ON COLUMN cte_entities.created_at IS 'Время записи СТЕ';
+COMMENT ON COLUMN cte_entities.task_created_at IS 'Время создания задачи (grouping_tasks.created_at), ключ секционирования';
+COMMENT ON COLUMN cte_entities.important_attributes IS 'Важные характеристики товара в формате JSONB';
+COMMENT ON COLUMN cte_entities.secondary_attributes IS 'Второстепенные характеристики товара в формате JSONB';
+COMMENT ON COLUMN cte_entities.product_ids IS 'Массив ID товаров, входящих в СТЕ, в формате JSONB';
+COMMENT ON COLUMN cte_entities.version IS 'Версия результата группировки задачи, к которой относится СТЕ';
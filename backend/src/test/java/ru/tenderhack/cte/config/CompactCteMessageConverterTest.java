@@ -0,0 +1,130 @@
+package ru.tenderhack.cte.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import ru.tenderhack.cte.dto.*;
+import ru.tenderhack.cte.mapper.CompactCteMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Компактный формат против обычного JSON на странице результатов: размер тела (как есть и после gzip)
+ * и время сериализации конвертером. Замер воспроизводится без БД и приложения:
+ * <pre>
+ * mvn -B test -Dtest=CompactCteMessageConverterTest -Dbench.pageSize=100 -Dbench.iterations=20000
+ * </pre>
+ */
+class CompactCteMessageConverterTest {
+
+    private static final String[][] ATTRIBUTES = {
+            {"Сезонность", "Зимняя", "Летняя", "Всесезонная"},
+            {"Ширина профиля, мм", "175", "185", "195", "205", "215", "225"},
+            {"Высота профиля, %", "55", "60", "65", "70"},
+            {"Посадочный диаметр, дюйм", "R14", "R15", "R16", "R17"},
+            {"Шипы", "Да", "Нет"},
+            {"Индекс скорости", "H", "T", "V"},
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CompactCteMessageConverter compact = new CompactCteMessageConverter(objectMapper,
+            new CompactCteMapper());
+    private final MappingJackson2HttpMessageConverter json = new MappingJackson2HttpMessageConverter(objectMapper);
+
+    @Test
+    void compactPageDecodesToSameAttributes() throws IOException {
+        PagedCteResponse page = page(50, new Random(1));
+
+        byte[] body = write(compact, page, CompactCteMessageConverter.MEDIA_TYPE);
+        CompactPagedCteResponse decoded = objectMapper.readValue(body, CompactPagedCteResponse.class);
+
+        assertThat(decoded.totalElements()).isEqualTo(page.totalElements());
+        assertThat(decoded.content()).hasSameSizeAs(page.content());
+        for (int i = 0; i < page.content().size(); i++) {
+            CteSummary expected = page.content().get(i);
+            CompactCteSummary actual = decoded.content().get(i);
+            assertThat(actual.id()).isEqualTo(expected.id());
+            assertThat(actual.imageUrl()).isEqualTo(expected.imageUrl());
+            List<Attribute> attributes = new ArrayList<>();
+            for (int j = 0; j < actual.attributes().length; j += 2) {
+                attributes.add(new Attribute(decoded.strings().get(actual.attributes()[j]),
+                        decoded.strings().get(actual.attributes()[j + 1])));
+            }
+            assertThat(attributes).isEqualTo(expected.attributes());
+        }
+    }
+
+    @Test
+    void compactPageIsSmallerAndFasterToWriteThanJson() throws IOException {
+        int pageSize = Integer.getInteger("bench.pageSize", 100);
+        int iterations = Integer.getInteger("bench.iterations", 2_000);
+        PagedCteResponse page = page(pageSize, new Random(pageSize));
+
+        byte[] jsonBody = write(json, page, MediaType.APPLICATION_JSON);
+        byte[] compactBody = write(compact, page, CompactCteMessageConverter.MEDIA_TYPE);
+        double jsonMicros = microsPerWrite(json, page, MediaType.APPLICATION_JSON, iterations);
+        double compactMicros = microsPerWrite(compact, page, CompactCteMessageConverter.MEDIA_TYPE, iterations);
+
+        System.out.printf("page of %d CTE, %d iterations%n", pageSize, iterations);
+        System.out.printf("| format  | bytes | gzip bytes | us/page |%n");
+        System.out.printf("| json    | %5d | %10d | %7.1f |%n", jsonBody.length, gzip(jsonBody).length, jsonMicros);
+        System.out.printf("| compact | %5d | %10d | %7.1f |%n", compactBody.length, gzip(compactBody).length,
+                compactMicros);
+
+        // Время только печатается: на общем CI-агенте оно нестабильно, размер - детерминирован
+        assertThat(compactBody.length).isLessThan(jsonBody.length / 2);
+        assertThat(gzip(compactBody).length).isLessThan(gzip(jsonBody).length);
+    }
+
+    private static PagedCteResponse page(int size, Random random) {
+        List<CteSummary> content = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            List<Attribute> attributes = new ArrayList<>(ATTRIBUTES.length);
+            for (String[] attribute : ATTRIBUTES) {
+                attributes.add(new Attribute(attribute[0], attribute[1 + random.nextInt(attribute.length - 1)]));
+            }
+            UUID id = new UUID(random.nextLong(), random.nextLong());
+            content.add(new CteSummary(id, "https://img.example.ru/products/" + random.nextInt(1_000_000) + ".jpg",
+                    attributes));
+        }
+        return new PagedCteResponse(content, 10, 10L * size, size, 0, false);
+    }
+
+    private static double microsPerWrite(AbstractHttpMessageConverter<Object> converter, Object body,
+                                         MediaType mediaType, int iterations) throws IOException {
+        for (int i = 0; i < iterations; i++) {
+            write(converter, body, mediaType);
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            write(converter, body, mediaType);
+        }
+        return (System.nanoTime() - started) / 1_000.0 / iterations;
+    }
+
+    private static byte[] write(AbstractHttpMessageConverter<Object> converter, Object body, MediaType mediaType)
+            throws IOException {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        converter.write(body, mediaType, message);
+        return message.getBodyAsBytes();
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,38 @@
+package ru.tenderhack.cte.normalize;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AttributeNormalizerTest {
+
+    private final AttributeNormalizer normalizer = new AttributeNormalizer();
+
+    @Test
+    void canonicalizesNumericValuesAndNumbersWithUnits() {
+        assertThat(normalizer.normalizeValue("16.50000")).isEqualTo("16.5");
+        assertThat(normalizer.normalizeValue(" 16,5 ")).isEqualTo("16.5");
+        assertThat(normalizer.normalizeValue("0,50")).isEqualTo("0.5");
+        assertThat(normalizer.normalizeValue("2,0")).isEqualTo("2");
+        assertThat(normalizer.normalizeValue("1.50 см")).isEqualTo("15 мм");
+        assertThat(normalizer.normalizeValue("500 гр")).isEqualTo(normalizer.normalizeValue("0,5 кг"));
+    }
+
+    @Test
+    void keepsNumbersInsideTextWithoutUnit() {
+        assertThat(normalizer.normalizeValue("Bluetooth 5.10")).isEqualTo("Bluetooth 5.10");
+        assertThat(normalizer.normalizeValue("01.10")).isEqualTo("01.10");
+        assertThat(normalizer.normalizeValue("Версия 2.10, ревизия 3.0")).isEqualTo("Версия 2.10, ревизия 3.0");
+        assertThat(normalizer.normalizeValue("195/65 R15 91.0")).isEqualTo("195/65 R15 91.0");
+    }
+
+    @Test
+    void normalizationIsIdempotent() {
+        for (String value : List.of("16,50", "Bluetooth 5.10", "01.10", "1.50 см", "зимние", "2,5 кг")) {
+            String normalized = normalizer.normalizeValue(value);
+            assertThat(normalizer.normalizeValue(normalized)).as(value).isEqualTo(normalized);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.tenderhack.cte.normalize;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductKeyCanonicalizerTest {
+
+    private final ProductKeyCanonicalizer canonicalizer = new ProductKeyCanonicalizer();
+
+    @Test
+    void modelKeyIgnoresPunctuationCaseAndCyrillicLookalikes() {
+        assertThat(canonicalizer.modelKey("SKS-5")).isEqualTo("SKS5");
+        assertThat(canonicalizer.modelKey("sks 5")).isEqualTo("SKS5");
+        // Кириллическая К
+        assertThat(canonicalizer.modelKey("SКS5")).isEqualTo("SKS5");
+        assertThat(canonicalizer.modelKey("Модель: SKS-5")).isEqualTo("SKS5");
+        assertThat(canonicalizer.modelKey("арт. SKS-5")).isEqualTo("SKS5");
+    }
+
+    @Test
+    void manufacturerIdDropsLegalFormAndResolvesAliases() {
+        assertThat(canonicalizer.manufacturerId("HUSQVARNA AB")).isEqualTo("husqvarna");
+        assertThat(canonicalizer.manufacturerId("Husqvarna")).isEqualTo("husqvarna");
+        assertThat(canonicalizer.manufacturerId("ООО «Хускварна»")).isEqualTo("husqvarna");
+        assertThat(canonicalizer.manufacturerId("Bosch GmbH")).isEqualTo(canonicalizer.manufacturerId("ООО «Бош»"));
+        // Форма без названия остается названием
+        assertThat(canonicalizer.manufacturerId("АО")).isEqualTo("ао");
+    }
+
+    @Test
+    void placeholdersHaveNoKey() {
+        for (String placeholder : new String[]{"", "  ", "нет", "Б/н", "без модели", "Не указано", "N/A", "-", null}) {
+            assertThat(canonicalizer.modelKey(placeholder)).as(placeholder).isNull();
+            assertThat(canonicalizer.manufacturerId(placeholder)).as(placeholder).isNull();
+        }
+    }
+}
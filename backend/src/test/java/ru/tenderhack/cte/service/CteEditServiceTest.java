@@ -0,0 +1,245 @@
+package ru.tenderhack.cte.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import ru.tenderhack.cte.dto.CteChange;
+import ru.tenderhack.cte.entity.AttributeJson;
+import ru.tenderhack.cte.entity.CteEntity;
+import ru.tenderhack.cte.entity.GroupingTaskEntity;
+import ru.tenderhack.cte.entity.RawProductEntity;
+import ru.tenderhack.cte.entity.Status;
+import ru.tenderhack.cte.mapper.CteMapper;
+import ru.tenderhack.cte.normalize.AttributeNormalizer;
+import ru.tenderhack.cte.normalize.ProductKeyCanonicalizer;
+import ru.tenderhack.cte.repository.CteRepository;
+import ru.tenderhack.cte.repository.GroupingTaskRepository;
+import ru.tenderhack.cte.snapshot.ProductSnapshot;
+import ru.tenderhack.cte.snapshot.ProductSnapshotService;
+import ru.tenderhack.cte.snapshot.ProductSnapshotWriter;
+
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Правки публикуют новую версию: незатронутые СТЕ копируются, затронутые записываются заново,
+ * счетчики фильтров корректируются на разницу важных характеристик затронутых СТЕ
+ */
+class CteEditServiceTest {
+
+    private static final UUID TASK_ID = UUID.randomUUID();
+    private static final UUID A = UUID.randomUUID();
+    private static final UUID B = UUID.randomUUID();
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GroupingTaskRepository taskRepository = mock(GroupingTaskRepository.class);
+    private final CteRepository cteRepository = mock(CteRepository.class);
+    private final ResultVersionService versionService = mock(ResultVersionService.class);
+    private final ProductSnapshotService snapshotService = mock(ProductSnapshotService.class);
+    private final Map<UUID, CteEntity> published = new HashMap<>();
+    private CteEditService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(snapshotService.acquire()).thenReturn(snapshot());
+        when(cteRepository.findByTaskIdAndVersionAndIdIn(eq(TASK_ID), eq(1), anyCollection()))
+                .thenAnswer(invocation -> invocation.<Collection<UUID>>getArgument(2).stream()
+                        .map(published::get).filter(Objects::nonNull).toList());
+        when(cteRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(versionService.allocate(TASK_ID)).thenReturn(2);
+        when(versionService.publish(TASK_ID, 2, true)).thenReturn(true);
+        task(1);
+        publish(A, 1, List.of(1L, 2L, 3L), "Michelin", "X-Ice", "Зимняя", "205");
+        publish(B, 1, List.of(4L, 5L), "Nokian", "Hakka", "Летняя", "195");
+        service = new CteEditService(taskRepository, cteRepository, versionService, snapshotService,
+                new CteAssembler(), new CteMapper(), objectMapper);
+    }
+
+    @Test
+    void mergePublishesNewVersionWithMergedCte() throws Exception {
+        CteChange change = service.merge(TASK_ID, A, List.of(B));
+
+        List<CteEntity> saved = saved();
+        assertThat(saved).singleElement().satisfies(cte -> {
+            assertThat(cte.getId()).isNull();
+            assertThat(cte.getVersion()).isEqualTo(2);
+            assertThat(cte.getProductIds()).containsExactly(1L, 2L, 3L, 4L, 5L);
+        });
+        assertThat(change.version()).isEqualTo(2);
+        assertThat(change.removed()).containsExactlyInAnyOrder(A, B);
+        verifyPublished(Set.of(A, B));
+        // Объединенная СТЕ повторяет характеристики A: из счетчиков уходят только значения B
+        assertThat(facetDeltas()).isEqualTo(Map.of(
+                "Производитель=Nokian", -1, "Модель=Hakka", -1, "Категория=Шины", -1, "Сезонность=Летняя", -1));
+        assertThat(published.get(A).getProductIds()).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void splitKeepsRemainderAndAddsCreatedCte() throws Exception {
+        CteChange change = service.split(TASK_ID, A, List.of(3L));
+
+        assertThat(saved()).extracting(CteEntity::getProductIds)
+                .containsExactly(List.of(1L, 2L), List.of(3L));
+        assertThat(change.updated()).hasSize(2);
+        assertThat(change.removed()).containsExactly(A);
+        verifyPublished(Set.of(A));
+        assertThat(facetDeltas()).isEqualTo(Map.of(
+                "Производитель=Michelin", 1, "Модель=X-Ice", 1, "Категория=Шины", 1, "Сезонность=Зимняя", 1));
+    }
+
+    @Test
+    void moveOfAllProductsRemovesEmptiedCte() throws Exception {
+        CteChange change = service.move(TASK_ID, B, A, List.of(4L, 5L));
+
+        assertThat(saved()).extracting(CteEntity::getProductIds).containsExactly(List.of(1L, 2L, 3L, 4L, 5L));
+        assertThat(change.removed()).containsExactlyInAnyOrder(A, B);
+        verifyPublished(Set.of(A, B));
+        assertThat(facetDeltas()).isEqualTo(Map.of(
+                "Производитель=Nokian", -1, "Модель=Hakka", -1, "Категория=Шины", -1, "Сезонность=Летняя", -1));
+    }
+
+    @Test
+    void moveResolvesIdOfEarlierVersionThroughCopies() throws Exception {
+        // Текущая версия 2: A записана правкой, B - копия СТЕ версии 1
+        task(2);
+        when(versionService.allocate(TASK_ID)).thenReturn(3);
+        when(versionService.publish(TASK_ID, 3, true)).thenReturn(true);
+        UUID copyOfB = CteRepository.copiedCteId(TASK_ID, 2, B);
+        CteEntity b = published.remove(B);
+        b.setId(copyOfB);
+        b.setVersion(2);
+        published.put(copyOfB, b);
+        published.get(A).setVersion(2);
+        when(cteRepository.findByTaskIdAndVersionAndIdIn(eq(TASK_ID), eq(2), anyCollection()))
+                .thenAnswer(invocation -> invocation.<Collection<UUID>>getArgument(2).stream()
+                        .map(published::get).filter(Objects::nonNull).toList());
+        when(cteRepository.findVersion(TASK_ID, B)).thenReturn(Optional.of(1));
+        when(cteRepository.existsByTaskIdAndVersionAndId(TASK_ID, 2, copyOfB)).thenReturn(true);
+
+        CteChange change = service.move(TASK_ID, B, A, List.of(5L));
+
+        assertThat(change.version()).isEqualTo(3);
+        assertThat(change.removed()).containsExactlyInAnyOrder(A, B, copyOfB);
+        verify(cteRepository).copyVersionExcept(TASK_ID, 2, 3, Set.of(A, copyOfB));
+        verify(versionService).publish(TASK_ID, 3, true);
+    }
+
+    @Test
+    void rejectsProductThatIsNotInCte() {
+        assertThatThrownBy(() -> service.split(TASK_ID, A, List.of(4L)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Product 4 is not in CTE: " + A);
+        assertThatThrownBy(() -> service.move(TASK_ID, B, A, List.of(1L)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Product 1 is not in CTE: " + B);
+        verifyNothingWritten();
+    }
+
+    @Test
+    void rejectsSplitWithEmptyRemainder() {
+        assertThatThrownBy(() -> service.split(TASK_ID, B, List.of(4L, 5L)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Split must leave at least one product in CTE: " + B);
+        verifyNothingWritten();
+    }
+
+    private void task(int currentVersion) {
+        GroupingTaskEntity task = GroupingTaskEntity.builder()
+                .id(TASK_ID)
+                .status(Status.COMPLETED)
+                .currentVersion(currentVersion)
+                .latestVersion(currentVersion)
+                .build();
+        when(taskRepository.findByIdForUpdate(TASK_ID)).thenReturn(Optional.of(task));
+    }
+
+    private void publish(UUID id, int version, List<Long> productIds, String manufacturer, String model,
+                         String season, String width) {
+        published.put(id, CteEntity.builder()
+                .id(id)
+                .taskId(TASK_ID)
+                .version(version)
+                .importantAttributes(new ArrayList<>(List.of(
+                        new AttributeJson(CteAssembler.MANUFACTURER, manufacturer),
+                        new AttributeJson(CteAssembler.MODEL, model),
+                        new AttributeJson(CteAssembler.CATEGORY, "Шины"),
+                        new AttributeJson("Сезонность", season))))
+                .secondaryAttributes(new ArrayList<>(List.of(new AttributeJson("Ширина профиля, мм", width))))
+                .productIds(new ArrayList<>(productIds))
+                .build());
+    }
+
+    private ProductSnapshot snapshot() throws Exception {
+        Path file = dir.resolve("products.snap");
+        try (ProductSnapshotWriter writer = new ProductSnapshotWriter(file, 1, new AttributeNormalizer(),
+                new ProductKeyCanonicalizer())) {
+            for (long id = 1; id <= 5; id++) {
+                boolean michelin = id <= 3;
+                writer.append(RawProductEntity.builder()
+                        .id(id)
+                        .title("Шина " + id)
+                        .model(michelin ? "X-Ice" : "Hakka")
+                        .manufacturer(michelin ? "Michelin" : "Nokian")
+                        .categoryId(1L)
+                        .categoryName("Шины")
+                        .characteristics(michelin ? "Сезонность: зимние;Ширина профиля, мм: 205;"
+                                : "Сезонность: летние;Ширина профиля, мм: 195;")
+                        .build());
+            }
+            writer.finish();
+        }
+        return ProductSnapshot.open(file);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<CteEntity> saved() {
+        ArgumentCaptor<List<CteEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cteRepository).saveAll(captor.capture());
+        return captor.getValue();
+    }
+
+    private void verifyPublished(Set<UUID> touched) {
+        verify(cteRepository).copyVersionExcept(TASK_ID, 1, 2, touched);
+        verify(cteRepository).copyFacets(TASK_ID, 1, 2);
+        verify(cteRepository).deleteEmptyFacets(TASK_ID, 2);
+        verify(versionService).publish(TASK_ID, 2, true);
+        verify(taskRepository).clearProductsVersion(TASK_ID);
+    }
+
+    private void verifyNothingWritten() {
+        verify(cteRepository, never()).copyVersionExcept(any(), anyInt(), anyInt(), any());
+        verify(cteRepository, never()).saveAll(any());
+        verify(versionService, never()).publish(any(), anyInt(), anyBoolean());
+    }
+
+    /**
+     * Итоговое изменение счетчиков фильтров новой версии по парам "характеристика=значение"
+     */
+    private Map<String, Integer> facetDeltas() throws Exception {
+        ArgumentCaptor<String> attributes = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Integer> deltas = ArgumentCaptor.forClass(Integer.class);
+        verify(cteRepository, times(2)).adjustFacets(eq(TASK_ID), anyInt(), attributes.capture(), deltas.capture());
+        Map<String, Integer> result = new TreeMap<>();
+        for (int i = 0; i < attributes.getAllValues().size(); i++) {
+            for (AttributeJson attribute : objectMapper.readValue(attributes.getAllValues().get(i),
+                    new TypeReference<List<AttributeJson>>() {
+                    })) {
+                result.merge(attribute.getName() + "=" + attribute.getValue(), deltas.getAllValues().get(i),
+                        Integer::sum);
+            }
+        }
+        result.values().removeIf(delta -> delta == 0);
+        return result;
+    }
+}
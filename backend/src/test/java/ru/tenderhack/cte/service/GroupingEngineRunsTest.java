@@ -0,0 +1,60 @@
+package ru.tenderhack.cte.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.tenderhack.cte.spill.SpillContext;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GroupingEngineRunsTest {
+
+    @TempDir
+    Path spillDir;
+
+    @Test
+    void passesRowsOfEachKeyAsOneSortedRun() throws Exception {
+        assertRuns(1 << 24, 50_000);
+    }
+
+    @Test
+    void groupsRowsThroughSpilledSortWhenBudgetIsExhausted() throws Exception {
+        SpillContext spill = assertRuns(0, 300_000);
+        assertThat(spill.spillFiles()).isGreaterThan(1);
+    }
+
+    private SpillContext assertRuns(long budget, int size) throws Exception {
+        int[] rows = new int[size + 10];
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            rows[i] = random.nextInt(Integer.MAX_VALUE);
+        }
+        // Ключ с отрицательными значениями: отрезки должны идти по возрастанию ключа со знаком
+        IntUnaryOperator keyOf = row -> row % 1_000 - 500;
+
+        Map<Integer, List<Integer>> expected = new TreeMap<>();
+        for (int i = 0; i < size; i++) {
+            expected.computeIfAbsent(keyOf.applyAsInt(rows[i]), k -> new ArrayList<>()).add(rows[i]);
+        }
+        expected.values().forEach(Collections::sort);
+
+        Map<Integer, List<Integer>> actual = new LinkedHashMap<>();
+        try (SpillContext spill = SpillContext.create(spillDir, budget)) {
+            GroupingEngine.forEachRun(rows, size, keyOf, spill, (key, run, length) -> {
+                assertThat(actual).doesNotContainKey(key);
+                List<Integer> values = new ArrayList<>(length);
+                for (int i = 0; i < length; i++) {
+                    values.add(run[i]);
+                }
+                actual.put(key, values);
+            });
+            assertThat(spill.budget().used()).isZero();
+            assertThat(actual.keySet()).containsExactlyElementsOf(expected.keySet());
+            assertThat(actual).isEqualTo(expected);
+            return spill;
+        }
+    }
+}
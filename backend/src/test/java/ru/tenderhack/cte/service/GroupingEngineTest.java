@@ -0,0 +1,163 @@
+package ru.tenderhack.cte.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import ru.tenderhack.cte.config.GroupingProperties;
+import ru.tenderhack.cte.entity.CteEntity;
+import ru.tenderhack.cte.entity.RawProductEntity;
+import ru.tenderhack.cte.normalize.AttributeNormalizer;
+import ru.tenderhack.cte.normalize.ProductKeyCanonicalizer;
+import ru.tenderhack.cte.repository.CteRepository;
+import ru.tenderhack.cte.repository.GroupingTaskRepository;
+import ru.tenderhack.cte.snapshot.ProductSnapshot;
+import ru.tenderhack.cte.snapshot.ProductSnapshotService;
+import ru.tenderhack.cte.snapshot.ProductSnapshotWriter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Группировка в бюджете памяти в один байт: номера строк категорий, партиций и группы сбрасываются на диск,
+ * результат совпадает с группировкой в памяти
+ */
+class GroupingEngineTest {
+
+    private static final UUID TASK_ID = UUID.randomUUID();
+    private static final int PRODUCTS = 3_000;
+
+    @TempDir
+    Path dir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(2);
+    private final Queue<Set<Long>> saved = new ConcurrentLinkedQueue<>();
+    private final Queue<Integer> progress = new ConcurrentLinkedQueue<>();
+    private ProductSnapshot snapshot;
+
+    @BeforeEach
+    void writeSnapshot() throws Exception {
+        Path file = dir.resolve("products.snap");
+        try (ProductSnapshotWriter writer = new ProductSnapshotWriter(file, 1, new AttributeNormalizer(),
+                new ProductKeyCanonicalizer())) {
+            for (int i = 1; i <= PRODUCTS; i++) {
+                // Категория 1 крупная, в ней производитель M0 больше партиции и делится по моделям
+                long category = category(i);
+                writer.append(RawProductEntity.builder()
+                        .id((long) i)
+                        .title("Товар " + i)
+                        .model("X-" + i % 97)
+                        .manufacturer("M" + manufacturer(i))
+                        .categoryId(category)
+                        .categoryName("Категория " + category)
+                        .characteristics("Цвет: " + (i % 2 == 0 ? "белый" : "черный") + ";")
+                        .build());
+            }
+            writer.finish();
+        }
+        snapshot = ProductSnapshot.open(file);
+    }
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void groupsWithinOneByteBudgetLikeInMemory() throws Exception {
+        Set<Set<Long>> inMemory = group(DataSize.ofMegabytes(64), false);
+        Set<Set<Long>> spilled = group(DataSize.ofBytes(1), true);
+
+        // Группа - товары одной категории, производителя и модели
+        Map<String, Set<Long>> expected = new HashMap<>();
+        for (int i = 1; i <= PRODUCTS; i++) {
+            expected.computeIfAbsent(category(i) + "|" + manufacturer(i) + "|" + i % 97, key -> new HashSet<>())
+                    .add((long) i);
+        }
+        assertThat(inMemory).isEqualTo(new HashSet<>(expected.values()));
+        assertThat(spilled).isEqualTo(inMemory);
+    }
+
+    @Test
+    void reportsProgressWhilePartitionsAreGrouped() throws Exception {
+        group(DataSize.ofMegabytes(64), false);
+
+        // Фаза 1 занимает первую половину шкалы и продвигается по мере завершения партиций
+        List<Integer> percents = new ArrayList<>(progress);
+        assertThat(percents).isSorted();
+        assertThat(percents).filteredOn(percent -> percent > 0 && percent <= 50).hasSizeGreaterThan(1);
+        assertThat(percents).filteredOn(percent -> percent > 50).isNotEmpty();
+        assertThat(percents.get(percents.size() - 1)).isEqualTo(100);
+    }
+
+    private static long category(int i) {
+        return i % 10 == 0 ? 2 : i % 10 == 1 ? 3 : 1;
+    }
+
+    private static int manufacturer(int i) {
+        return i % 3 == 0 ? i % 7 : 0;
+    }
+
+    private Set<Set<Long>> group(DataSize budget, boolean expectSpill) throws Exception {
+        Path spillDir = Files.createDirectories(dir.resolve("spill-" + budget.toBytes()));
+        GroupingProperties properties = new GroupingProperties(2, 200, 100, null, null, null, null, null,
+                budget, spillDir.toString(), null, null);
+        ProductQueryService queryService = mock(ProductQueryService.class);
+        when(queryService.forEachMatchingProductId(anyString(), any(LongConsumer.class))).thenAnswer(invocation -> {
+            LongConsumer consumer = invocation.getArgument(1);
+            for (long id = 1; id <= PRODUCTS; id++) {
+                consumer.accept(id);
+            }
+            return (long) PRODUCTS;
+        });
+        ProductSnapshotService snapshotService = mock(ProductSnapshotService.class);
+        when(snapshotService.acquire()).thenReturn(snapshot);
+        GroupingTaskRepository taskRepository = mock(GroupingTaskRepository.class);
+        when(taskRepository.findCreatedAt(TASK_ID)).thenReturn(Optional.of(LocalDateTime.now()));
+        CteRepository cteRepository = mock(CteRepository.class);
+        saved.clear();
+        progress.clear();
+        when(cteRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            for (CteEntity cte : invocation.<List<CteEntity>>getArgument(0)) {
+                saved.add(new HashSet<>(cte.getProductIds()));
+            }
+            return invocation.getArgument(0);
+        });
+        AttributeSelector attributeSelector = mock(AttributeSelector.class);
+        when(attributeSelector.selectAll(any(), any(), anyCollection(), anyBoolean())).thenReturn(Map.of());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        GroupingEngine engine = new GroupingEngine(queryService, snapshotService, cteRepository, taskRepository,
+                new CteAssembler(), attributeSelector, properties, pool, meterRegistry);
+        try (GroupingEngine.Selection selection = engine.select("товар")) {
+            assertThat(selection.rows()).isEqualTo(PRODUCTS);
+            long created = engine.group(TASK_ID, 1, selection,
+                    (percent, message) -> progress.add(percent), false);
+            assertThat(created).isEqualTo(saved.size());
+        }
+
+        double spilledBytes = meterRegistry.counter("grouping.spill.bytes").count();
+        if (expectSpill) {
+            assertThat(spilledBytes).isPositive();
+        } else {
+            assertThat(spilledBytes).isZero();
+        }
+        // Временные файлы отбора удалены вместе с ним
+        try (Stream<Path> files = Files.list(spillDir)) {
+            assertThat(files).isEmpty();
+        }
+        return new HashSet<>(saved);
+    }
+}
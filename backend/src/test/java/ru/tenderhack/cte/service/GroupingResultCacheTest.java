@@ -0,0 +1,51 @@
+package ru.tenderhack.cte.service;
+
+import org.junit.jupiter.api.Test;
+import ru.tenderhack.cte.repository.GroupingTaskRepository;
+import ru.tenderhack.cte.repository.RawProductRepository;
+
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * Отвязка задачи-ссылки одним условным UPDATE без чтения задачи
+ */
+class GroupingResultCacheTest {
+
+    private static final UUID TASK_ID = UUID.randomUUID();
+    private static final UUID SOURCE_ID = UUID.randomUUID();
+
+    private final GroupingTaskRepository taskRepository = mock(GroupingTaskRepository.class);
+    private final ResultVersionService versionService = mock(ResultVersionService.class);
+    private final TaskMetadataCache metadataCache = mock(TaskMetadataCache.class);
+    private final RawProductRepository rawProductRepository = mock(RawProductRepository.class);
+    private final GroupingResultCache cache = new GroupingResultCache(taskRepository, rawProductRepository,
+            new QueryNormalizer(rawProductRepository), versionService, metadataCache);
+
+    @Test
+    void adoptsCopyWhenTaskStillReferencesSource() {
+        when(taskRepository.detachFromSource(TASK_ID, SOURCE_ID)).thenReturn(1);
+
+        cache.detach(TASK_ID, SOURCE_ID, 3);
+
+        verify(metadataCache).evict(TASK_ID);
+        verify(versionService).adopt(TASK_ID, 3);
+        verify(versionService, never()).discard(any(), anyInt());
+        verify(taskRepository, never()).findById(any());
+        verify(taskRepository, never()).save(any());
+    }
+
+    @Test
+    void discardsCopyWhenTaskIsAlreadyDetached() {
+        when(taskRepository.detachFromSource(TASK_ID, SOURCE_ID)).thenReturn(0);
+
+        cache.detach(TASK_ID, SOURCE_ID, 3);
+
+        verify(versionService).discard(TASK_ID, 3);
+        verify(versionService, never()).adopt(any(), anyInt());
+        verifyNoInteractions(metadataCache);
+    }
+}
@@ -0,0 +1,62 @@
+package ru.tenderhack.cte.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import ru.tenderhack.cte.config.LlmConfigProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LlmBackendPoolTest {
+
+    private final LlmBackendPool pool = new LlmBackendPool(new LlmConfigProperties(null, "model",
+            List.of("http://localhost:1/api/generate"), null, null, null, null, null, null, 1, Duration.ZERO),
+            new MockEnvironment());
+
+    @Test
+    void lateSuccessOfRequestSentBeforeOpenDoesNotCloseBreaker() {
+        LlmBackendPool.Lease early = pool.acquire(Set.of());
+        pool.acquire(Set.of()).release(false);
+
+        early.release(true);
+
+        LlmBackendPool.Lease trial = pool.acquire(Set.of());
+        assertThat(trial.trial()).isTrue();
+        assertThat(pool.acquire(Set.of())).isNull();
+    }
+
+    @Test
+    void onlyTrialRequestReleasesHalfOpenBackend() {
+        LlmBackendPool.Lease early = pool.acquire(Set.of());
+        pool.acquire(Set.of()).release(false);
+        LlmBackendPool.Lease trial = pool.acquire(Set.of());
+
+        early.release(false);
+        assertThat(pool.acquire(Set.of())).isNull();
+
+        trial.release(true);
+        LlmBackendPool.Lease next = pool.acquire(Set.of());
+        assertThat(next).isNotNull();
+        assertThat(next.trial()).isFalse();
+        next.release(true);
+        assertThat(pool.backends().get(0).outstanding()).isZero();
+    }
+
+    @Test
+    void failedTrialReopensAndAbandonedTrialAllowsNewTrial() {
+        pool.acquire(Set.of()).release(false);
+
+        pool.acquire(Set.of()).release(false);
+        LlmBackendPool.Lease trial = pool.acquire(Set.of());
+        assertThat(trial.trial()).isTrue();
+
+        trial.abandon();
+        LlmBackendPool.Lease retry = pool.acquire(Set.of());
+        assertThat(retry.trial()).isTrue();
+        retry.release(true);
+        assertThat(pool.acquire(Set.of()).trial()).isFalse();
+    }
+}
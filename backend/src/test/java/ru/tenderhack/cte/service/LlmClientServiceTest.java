@@ -0,0 +1,131 @@
+package ru.tenderhack.cte.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import ru.tenderhack.cte.config.LlmConfigProperties;
+import ru.tenderhack.cte.config.RestClientConfig;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Запросы к LLM на mock-бэкендах (HttpServer JDK)
+ */
+class LlmClientServiceTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void stopServers() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    @Test
+    void hedgedRequestAbortsSlowBackendExchange() throws Exception {
+        CountDownLatch aborted = new CountDownLatch(1);
+        String slow = start(exchange -> {
+            // Медленный бэкенд пишет ответ по кусочку, пока клиент не разорвет соединение
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < 200; i++) {
+                    out.write(' ');
+                    out.flush();
+                    Thread.sleep(50);
+                }
+                out.write("{\"response\":\"slow\"}".getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                aborted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        String fast = start(exchange -> respond(exchange, 200, "{\"response\":\"fast\"}"));
+        LlmBackendPool pool = pool(List.of(slow, fast), Duration.ofMillis(200));
+        LlmClientService client = client(pool, Duration.ofMillis(200));
+
+        assertThat(client.generate("prompt")).isEqualTo("fast");
+
+        assertThat(aborted.await(5, TimeUnit.SECONDS)).isTrue();
+        awaitReleased(pool);
+    }
+
+    @Test
+    void failedBackendIsSkippedAndCountedByBreaker() throws Exception {
+        AtomicInteger failedCalls = new AtomicInteger();
+        String failing = start(exchange -> {
+            failedCalls.incrementAndGet();
+            respond(exchange, 500, "boom");
+        });
+        String healthy = start(exchange -> respond(exchange, 200, "{\"response\":\"ok\"}"));
+        LlmBackendPool pool = pool(List.of(failing, healthy), Duration.ZERO);
+        LlmClientService client = client(pool, Duration.ZERO);
+
+        assertThat(client.generate("first")).isEqualTo("ok");
+        assertThat(client.generate("second")).isEqualTo("ok");
+
+        // failure-threshold 1: после первой ошибки бэкенд открыт на минуту и второй запрос его не трогает
+        assertThat(failedCalls).hasValue(1);
+        assertThat(pool.backends().get(0).isAvailable()).isFalse();
+        awaitReleased(pool);
+    }
+
+    private String start(HttpHandler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/generate", handler);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        servers.add(server);
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/generate";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static LlmBackendPool pool(List<String> endpoints, Duration hedgeAfter) {
+        return new LlmBackendPool(config(endpoints, hedgeAfter), new MockEnvironment());
+    }
+
+    private static LlmClientService client(LlmBackendPool pool, Duration hedgeAfter) {
+        List<String> endpoints = pool.backends().stream().map(LlmBackendPool.Backend::url).toList();
+        return new LlmClientService(RestClientConfig.httpClient(Duration.ofSeconds(1), false),
+                config(endpoints, hedgeAfter), new ObjectMapper(), pool);
+    }
+
+    private static LlmConfigProperties config(List<String> endpoints, Duration hedgeAfter) {
+        return new LlmConfigProperties(null, "model", endpoints, null, null, null, Duration.ofSeconds(30),
+                hedgeAfter, null, 1, Duration.ofMinutes(1));
+    }
+
+    /**
+     * Резервы освобождаются в обработчиках завершения HTTP-обмена, которые могут отработать после ответа
+     */
+    private static void awaitReleased(LlmBackendPool pool) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pool.backends().stream().anyMatch(backend -> backend.outstanding() > 0)
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(pool.backends()).allMatch(backend -> backend.outstanding() == 0);
+    }
+}
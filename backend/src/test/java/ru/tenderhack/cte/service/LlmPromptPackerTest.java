@@ -0,0 +1,149 @@
+package ru.tenderhack.cte.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import ru.tenderhack.cte.config.LlmConfigProperties;
+import ru.tenderhack.cte.config.RestClientConfig;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Пропускная способность решений LLM с упаковкой и без нее на mock-бэкенде с моделью задержки Ollama:
+ * постоянная задержка запроса плюс время генерации каждого ответа. Каждое десятое решение при первом
+ * вопросе остается без ответа, чтобы в замер попали повторы. Запуск с другими параметрами:
+ * <pre>
+ * mvn -B test -Dtest=LlmPromptPackerTest -Dbench.decisions=200 \
+ *     -Dbench.requestLatencyMs=200 -Dbench.answerLatencyMs=20
+ * </pre>
+ */
+class LlmPromptPackerTest {
+
+    private static final Pattern QUESTION = Pattern.compile("^\\[(\\d+)] (.*)$", Pattern.MULTILINE);
+    private static final String INSTRUCTION = "Для каждой категории выбери до 5 важных характеристик из списка.";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int requestLatencyMs = Integer.getInteger("bench.requestLatencyMs", 20);
+    private final int answerLatencyMs = Integer.getInteger("bench.answerLatencyMs", 2);
+    private final Set<String> asked = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpServer server;
+
+    @BeforeEach
+    void startBackend() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/generate", this::generate);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    void stopBackend() {
+        server.stop(0);
+    }
+
+    @Test
+    void packingAnswersAllDecisionsWithFewerRequests() throws Exception {
+        List<LlmPromptPacker.Decision> decisions = decisions(Integer.getInteger("bench.decisions", 100));
+
+        Result single = run(decisions, 1);
+        Result packed = run(decisions, 3000);
+
+        System.out.printf("%d decisions, request latency %d ms, answer latency %d ms%n",
+                decisions.size(), requestLatencyMs, answerLatencyMs);
+        System.out.printf("| token-budget | requests | answered | decisions/s |%n");
+        single.print("1");
+        packed.print("3000");
+
+        assertThat(single.answered()).isEqualTo(decisions.size());
+        assertThat(packed.answered()).isEqualTo(decisions.size());
+        // Без упаковки - запрос на решение плюс повтор каждого десятого; с упаковкой - несколько пачек
+        assertThat(single.requests()).isEqualTo(decisions.size() + (decisions.size() + 9) / 10);
+        assertThat(packed.requests()).isLessThan(single.requests() / 5);
+    }
+
+    private Result run(List<LlmPromptPacker.Decision> decisions, int tokenBudget) {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/generate";
+        LlmConfigProperties config = new LlmConfigProperties(null, "model", List.of(url), null, tokenBudget, 3,
+                Duration.ofSeconds(30), null, null, null, null);
+        LlmBackendPool pool = new LlmBackendPool(config, new MockEnvironment());
+        LlmClientService client = new LlmClientService(RestClientConfig.httpClient(Duration.ofSeconds(1), false),
+                config, objectMapper, pool);
+        LlmPromptPacker packer = new LlmPromptPacker(client, config, objectMapper);
+        asked.clear();
+        requests.set(0);
+
+        long started = System.nanoTime();
+        Map<String, JsonNode> answers = packer.decide(INSTRUCTION, decisions,
+                (id, answer) -> answer.isArray() && !answer.isEmpty());
+        double seconds = (System.nanoTime() - started) / 1e9;
+        return new Result(requests.get(), answers.size(), answers.size() / seconds);
+    }
+
+    /**
+     * Ответ Ollama /api/generate: поле response - JSON с ответами на пронумерованные вопросы промпта
+     */
+    private void generate(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String prompt = objectMapper.readTree(exchange.getRequestBody()).path("prompt").asText();
+        ObjectNode result = objectMapper.createObjectNode();
+        ArrayNode answers = result.putArray("answers");
+        Matcher question = QUESTION.matcher(prompt);
+        while (question.find()) {
+            String text = question.group(2);
+            boolean firstTime = asked.add(text);
+            if (firstTime && text.endsWith("0:")) {
+                continue;
+            }
+            ObjectNode answer = answers.addObject().put("id", question.group(1));
+            answer.putArray("answer").add("Сезонность").add("Ширина профиля, мм").add("Посадочный диаметр, дюйм");
+        }
+        try {
+            Thread.sleep(requestLatencyMs + (long) answerLatencyMs * answers.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        byte[] body = objectMapper.writeValueAsBytes(Map.of("response", objectMapper.writeValueAsString(result)));
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static List<LlmPromptPacker.Decision> decisions(int count) {
+        List<LlmPromptPacker.Decision> decisions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Номер категории в конце вопроса: каждое десятое решение ("...0:") mock при первом вопросе пропускает
+            String question = "Характеристики: Сезонность, Ширина профиля, мм, Высота профиля, %, "
+                    + "Посадочный диаметр, дюйм, Шипы, Индекс скорости, Индекс нагрузки, Ранфлэт. Категория " + i + ":";
+            decisions.add(new LlmPromptPacker.Decision(String.valueOf(i), question));
+        }
+        return decisions;
+    }
+
+    private record Result(int requests, int answered, double decisionsPerSecond) {
+
+        void print(String tokenBudget) {
+            System.out.printf("| %12s | %8d | %8d | %11.1f |%n", tokenBudget, requests, answered, decisionsPerSecond);
+        }
+    }
+}
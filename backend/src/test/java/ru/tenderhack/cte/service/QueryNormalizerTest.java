@@ -0,0 +1,40 @@
+package ru.tenderhack.cte.service;
+
+import org.junit.jupiter.api.Test;
+import ru.tenderhack.cte.repository.RawProductRepository;
+
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class QueryNormalizerTest {
+
+    private final RawProductRepository rawProductRepository = mock(RawProductRepository.class);
+    private final QueryNormalizer normalizer = new QueryNormalizer(rawProductRepository);
+
+    @Test
+    void decimalCommaAndDotGiveSameKey() {
+        // Разбор PostgreSQL подменен приведением к нижнему регистру: запятая должна быть заменена до него
+        when(rawProductRepository.findTsQueryText(anyString()))
+                .thenAnswer(invocation -> invocation.<String>getArgument(0).toLowerCase(Locale.ROOT));
+
+        assertThat(normalizer.normalize("Шины 12-16,5")).isEqualTo(normalizer.normalize("шины 12-16.5"));
+        verify(rawProductRepository).findTsQueryText("Шины 12-16.5");
+        verify(rawProductRepository).findTsQueryText("шины 12-16.5");
+        verifyNoMoreInteractions(rawProductRepository);
+    }
+
+    @Test
+    void selectionUsesSameQueryAsKey() {
+        when(rawProductRepository.streamIdsByQuery(anyString(), anyString())).thenReturn(Stream.empty());
+
+        new ProductQueryService(rawProductRepository).forEachMatchingProductId("Шины 12-16,5", id -> {
+        });
+
+        verify(rawProductRepository).streamIdsByQuery("Шины 12-16.5", "");
+        assertThat(QueryNormalizer.foldDecimalCommas("1,2,3 шт, 5")).isEqualTo("1.2.3 шт, 5");
+    }
+}
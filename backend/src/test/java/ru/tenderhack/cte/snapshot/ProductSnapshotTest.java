@@ -0,0 +1,111 @@
+package ru.tenderhack.cte.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.tenderhack.cte.entity.RawProductEntity;
+import ru.tenderhack.cte.normalize.AttributeNormalizer;
+import ru.tenderhack.cte.normalize.ProductKeyCanonicalizer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductSnapshotTest {
+
+    private static final int ROWS = 500;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsSnapshotMappedInSmallChunks() throws Exception {
+        Path file = write(dir.resolve("products.snap"));
+
+        // Куски по 64 байта: строки и словари пересекают границы кусков, секции состоят из многих кусков
+        ProductSnapshot chunked = ProductSnapshot.open(file, 64);
+        ProductSnapshot whole = ProductSnapshot.open(file);
+
+        assertThat(chunked.rowCount()).isEqualTo(ROWS);
+        for (int row = 0; row < ROWS; row++) {
+            assertThat(chunked.id(row)).isEqualTo(1000L + row);
+            assertThat(chunked.rowOf(1000L + row)).isEqualTo(row);
+            assertThat(chunked.categoryId(row)).isEqualTo(row % 3 == 0 ? null : (long) row % 7);
+            assertThat(chunked.title(row)).isEqualTo("Шина летняя модель " + row + " ".repeat(row % 50));
+            assertThat(chunked.model(row)).isEqualTo(whole.model(row));
+            assertThat(chunked.imageUrl(row)).isNull();
+            assertThat(chunked.manufacturer(row)).isEqualTo("Производитель " + row % 11);
+            assertThat(chunked.manufacturerKeyCode(row)).isEqualTo(whole.manufacturerKeyCode(row));
+            assertThat(chunked.manufacturerKey(chunked.manufacturerKeyCode(row)))
+                    .isEqualTo(whole.manufacturerKey(whole.manufacturerKeyCode(row)));
+            assertThat(chunked.attributeCount(row)).isEqualTo(whole.attributeCount(row)).isEqualTo(row % 4);
+            for (int i = 0; i < chunked.attributeCount(row); i++) {
+                assertThat(chunked.attributeName(chunked.attributeNameId(row, i)))
+                        .isEqualTo(whole.attributeName(whole.attributeNameId(row, i)));
+                assertThat(chunked.attributeValue(chunked.attributeValueId(row, i)))
+                        .isEqualTo(whole.attributeValue(whole.attributeValueId(row, i)));
+            }
+        }
+        assertThat(chunked.rowOf(999)).isEqualTo(-1);
+    }
+
+    @Test
+    void readsLongOffsetsAcrossChunks() throws Exception {
+        Path file = dir.resolve("section.bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(256);
+            for (long value = 0; value < 32; value++) {
+                buffer.putLong(value * 3_000_000_000L);
+            }
+            buffer.flip();
+            channel.write(buffer);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedSection section = MappedSection.map(channel, 0, 256, 16);
+            for (long index = 0; index < 32; index++) {
+                assertThat(section.longAt(index)).isEqualTo(index * 3_000_000_000L);
+            }
+            assertThat(section.intAt(63)).isEqualTo((int) (31 * 3_000_000_000L));
+            byte[] bytes = section.bytes(12, 40);
+            assertThat(ByteBuffer.wrap(bytes, 4, 8).getLong()).isEqualTo(2 * 3_000_000_000L);
+        }
+    }
+
+    @Test
+    void rejectsChunkSizeThatSplitsElements() {
+        assertThatThrownBy(() -> {
+            try (FileChannel channel = FileChannel.open(write(dir.resolve("products.snap")), StandardOpenOption.READ)) {
+                MappedSection.map(channel, 0, 64, 12);
+            }
+        }).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Path write(Path file) throws IOException {
+        try (ProductSnapshotWriter writer = new ProductSnapshotWriter(file, 7, new AttributeNormalizer(),
+                new ProductKeyCanonicalizer())) {
+            for (int row = 0; row < ROWS; row++) {
+                StringBuilder characteristics = new StringBuilder();
+                for (int i = 0; i < row % 4; i++) {
+                    characteristics.append("Характеристика ").append(i).append(": значение ").append(row % 5).append(';');
+                }
+                writer.append(RawProductEntity.builder()
+                        .id(1000L + row)
+                        .title("Шина летняя модель " + row + " ".repeat(row % 50))
+                        .model("SKS-" + row % 13)
+                        .manufacturer("Производитель " + row % 11)
+                        .categoryId(row % 3 == 0 ? null : (long) row % 7)
+                        .categoryName("Категория " + row % 7)
+                        .characteristics(characteristics.toString())
+                        .build());
+            }
+            writer.finish();
+        }
+        assertThat(Files.size(file)).isPositive();
+        return file;
+    }
+}
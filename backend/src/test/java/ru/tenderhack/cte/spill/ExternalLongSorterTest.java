@@ -0,0 +1,102 @@
+package ru.tenderhack.cte.spill;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ExternalLongSorterTest {
+
+    @TempDir
+    Path spillDir;
+
+    @Test
+    void sortsInMemoryWithinBudget() throws Exception {
+        long[] values = new Random(1).longs(10_000).toArray();
+        try (SpillContext spill = SpillContext.create(spillDir, 1 << 20)) {
+            assertThat(sort(spill, values)).isEqualTo(sorted(values));
+            assertThat(spill.spillFiles()).isZero();
+        }
+    }
+
+    @Test
+    void spillsRunsWhenBudgetIsExhaustedAndMergesThemInOrder() throws Exception {
+        long[] values = new Random(2).longs(300_000).toArray();
+        try (SpillContext spill = SpillContext.create(spillDir, 0)) {
+            assertThat(sort(spill, values)).isEqualTo(sorted(values));
+            assertThat(spill.spillFiles()).isGreaterThan(1);
+            assertThat(spill.spilledBytes()).isGreaterThanOrEqualTo((long) values.length * Long.BYTES);
+            assertThat(spill.mergePasses()).isPositive();
+            assertThat(spill.budget().used()).isZero();
+        }
+    }
+
+    @Test
+    void releasesReservedBufferOnClose() throws Exception {
+        try (SpillContext spill = SpillContext.create(spillDir, 64L << 20)) {
+            try (ExternalLongSorter sorter = new ExternalLongSorter(spill)) {
+                for (long i = 500_000; i > 0; i--) {
+                    sorter.add(i);
+                }
+                assertThat(spill.budget().used()).isPositive();
+            }
+            assertThat(spill.budget().used()).isZero();
+            assertThat(spill.spillFiles()).isZero();
+        }
+    }
+
+    @Test
+    void closesRunFilesOfAbandonedMerge() throws Exception {
+        Path openFiles = Path.of("/proc/self/fd");
+        assumeTrue(Files.isDirectory(openFiles));
+        long[] values = new Random(3).longs(300_000).toArray();
+        try (SpillContext spill = SpillContext.create(spillDir, 0)) {
+            long before = count(openFiles);
+            try (ExternalLongSorter sorter = new ExternalLongSorter(spill)) {
+                for (long value : values) {
+                    sorter.add(value);
+                }
+                PrimitiveIterator.OfLong sorted = sorter.sorted();
+                sorted.nextLong();
+                assertThat(count(openFiles)).isGreaterThan(before);
+            }
+            assertThat(count(openFiles)).isEqualTo(before);
+        }
+    }
+
+    private static long count(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static long[] sort(SpillContext spill, long[] values) throws Exception {
+        try (ExternalLongSorter sorter = new ExternalLongSorter(spill)) {
+            for (long value : values) {
+                sorter.add(value);
+            }
+            long[] result = new long[values.length];
+            PrimitiveIterator.OfLong sorted = sorter.sorted();
+            int size = 0;
+            while (sorted.hasNext()) {
+                result[size++] = sorted.nextLong();
+            }
+            assertThat(size).isEqualTo(values.length);
+            return result;
+        }
+    }
+
+    private static long[] sorted(long[] values) {
+        long[] copy = values.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+}
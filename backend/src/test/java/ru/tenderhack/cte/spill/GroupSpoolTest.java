@@ -0,0 +1,41 @@
+package ru.tenderhack.cte.spill;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GroupSpoolTest {
+
+    @TempDir
+    Path spillDir;
+
+    @Test
+    void keepsGroupsWithinBudgetAndSpillsTheRest() throws Exception {
+        try (SpillContext spill = SpillContext.create(spillDir, 1024)) {
+            List<int[]> added = new ArrayList<>();
+            try (GroupSpool spool = new GroupSpool(spill)) {
+                for (int group = 0; group < 100; group++) {
+                    int[] rows = new int[group % 7 + 1];
+                    for (int i = 0; i < rows.length; i++) {
+                        rows[i] = group * 10 + i;
+                    }
+                    spool.add(rows);
+                    added.add(rows);
+                }
+                assertThat(spool.size()).isEqualTo(added.size());
+                assertThat(spill.spillFiles()).isEqualTo(1);
+                assertThat(spill.budget().used()).isPositive().isLessThanOrEqualTo(1024);
+
+                List<int[]> read = new ArrayList<>();
+                spool.forEach(read::add);
+                assertThat(read).containsExactlyElementsOf(added);
+            }
+            assertThat(spill.budget().used()).isZero();
+        }
+    }
+}
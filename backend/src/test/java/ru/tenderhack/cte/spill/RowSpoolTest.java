@@ -0,0 +1,53 @@
+package ru.tenderhack.cte.spill;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RowSpoolTest {
+
+    @TempDir
+    Path spillDir;
+
+    @Test
+    void growsWithinBudgetAndSpillsTheRestInOrder() throws Exception {
+        try (SpillContext spill = SpillContext.create(spillDir, 1024)) {
+            try (RowSpool rows = new RowSpool(spill)) {
+                for (int row = 0; row < 10_000; row++) {
+                    rows.add(row * 3);
+                }
+                assertThat(rows.size()).isEqualTo(10_000);
+                assertThat(rows.first()).isZero();
+                assertThat(spill.spillFiles()).isEqualTo(1);
+                assertThat(spill.spilledBytes()).isPositive();
+                assertThat(spill.budget().used()).isPositive().isLessThanOrEqualTo(1024);
+
+                List<Integer> read = new ArrayList<>();
+                rows.forEach(read::add);
+                assertThat(read).hasSize(10_000);
+                for (int i = 0; i < read.size(); i++) {
+                    assertThat(read.get(i)).isEqualTo(i * 3);
+                }
+            }
+            assertThat(spill.budget().used()).isZero();
+        }
+    }
+
+    @Test
+    void keepsRowsInMemoryWhenBudgetAllows() throws Exception {
+        try (SpillContext spill = SpillContext.create(spillDir, 1 << 20)) {
+            try (RowSpool rows = new RowSpool(spill)) {
+                for (int row = 0; row < 10_000; row++) {
+                    rows.add(row);
+                }
+                assertThat(spill.spillFiles()).isZero();
+            }
+            assertThat(spill.budget().used()).isZero();
+        }
+    }
+}